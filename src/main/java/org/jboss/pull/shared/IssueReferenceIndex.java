@@ -0,0 +1,138 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory reverse index from an issue (Bugzilla bug id or Jira key) to the numbers of the pull requests referencing it
+ * in their descriptions. It lets a change of a single issue be turned into a re-evaluation of only the pull requests
+ * that actually depend on it.
+ */
+public class IssueReferenceIndex {
+
+    private final Map<String, Set<Integer>> pullsByIssue = new HashMap<String, Set<Integer>>();
+    private final Map<Integer, Set<String>> issuesByPull = new HashMap<Integer, Set<String>>();
+
+    /**
+     * Replaces the issues referenced by the given pull request.
+     *
+     * @param pullNumber number of the pull request
+     * @param issueNumbers bug ids and Jira keys currently referenced by its description
+     */
+    public synchronized void update(final int pullNumber, final Collection<String> issueNumbers) {
+        unlink(pullNumber);
+
+        final Set<String> issues = new HashSet<String>();
+        for (String issueNumber : issueNumbers) {
+            final String key = normalize(issueNumber);
+            issues.add(key);
+
+            Set<Integer> pulls = pullsByIssue.get(key);
+            if (pulls == null) {
+                pulls = new HashSet<Integer>();
+                pullsByIssue.put(key, pulls);
+            }
+            pulls.add(pullNumber);
+        }
+        issuesByPull.put(pullNumber, issues);
+    }
+
+    /**
+     * Drops the given pull request from the index, typically because it has been closed.
+     */
+    public synchronized void remove(final int pullNumber) {
+        unlink(pullNumber);
+    }
+
+    /**
+     * Drops every pull request not contained in the given collection.
+     *
+     * @param pullNumbers numbers of the pull requests which are still open
+     */
+    public synchronized void retain(final Collection<Integer> pullNumbers) {
+        for (Integer pullNumber : new HashSet<Integer>(issuesByPull.keySet())) {
+            if (!pullNumbers.contains(pullNumber))
+                unlink(pullNumber);
+        }
+    }
+
+    /**
+     * Returns the numbers of the pull requests referencing the given issue.
+     */
+    public synchronized Set<Integer> getPullRequests(final String issueNumber) {
+        final Set<Integer> pulls = pullsByIssue.get(normalize(issueNumber));
+        return pulls == null ? Collections.<Integer>emptySet() : new HashSet<Integer>(pulls);
+    }
+
+    /**
+     * Returns the numbers of the pull requests referencing at least one of the given issues.
+     */
+    public synchronized Set<Integer> getPullRequests(final Collection<String> issueNumbers) {
+        final Set<Integer> result = new HashSet<Integer>();
+        for (String issueNumber : issueNumbers) {
+            final Set<Integer> pulls = pullsByIssue.get(normalize(issueNumber));
+            if (pulls != null)
+                result.addAll(pulls);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the issues referenced by the given pull request as last seen by the index.
+     */
+    public synchronized Set<String> getIssues(final int pullNumber) {
+        final Set<String> issues = issuesByPull.get(pullNumber);
+        return issues == null ? Collections.<String>emptySet() : new HashSet<String>(issues);
+    }
+
+    /**
+     * Returns all the issues referenced by at least one indexed pull request.
+     */
+    public synchronized Set<String> getIssues() {
+        return new HashSet<String>(pullsByIssue.keySet());
+    }
+
+    private void unlink(final int pullNumber) {
+        final Set<String> previous = issuesByPull.remove(pullNumber);
+        if (previous == null)
+            return;
+
+        for (String issue : previous) {
+            final Set<Integer> pulls = pullsByIssue.get(issue);
+            if (pulls != null) {
+                pulls.remove(pullNumber);
+                if (pulls.isEmpty())
+                    pullsByIssue.remove(issue);
+            }
+        }
+    }
+
+    private static String normalize(final String issueNumber) {
+        return issueNumber.trim().toUpperCase();
+    }
+}
@@ -27,16 +27,34 @@ import org.eclipse.egit.github.core.Milestone;
 import org.eclipse.egit.github.core.PullRequest;
 import org.eclipse.egit.github.core.RepositoryBranch;
 import org.jboss.pull.shared.connectors.IssueHelper;
+import org.jboss.pull.shared.connectors.PullRequestRegistry;
 import org.jboss.pull.shared.connectors.bugzilla.BZHelper;
+import org.jboss.pull.shared.connectors.bugzilla.Bug;
+import org.jboss.pull.shared.connectors.bugzilla.BugChangeFeed;
 import org.jboss.pull.shared.connectors.RedhatPullRequest;
+import org.jboss.pull.shared.connectors.github.GithubEventPoller;
 import org.jboss.pull.shared.connectors.github.GithubHelper;
+import org.jboss.pull.shared.connectors.github.GithubWebhookReceiver;
+import org.jboss.pull.shared.connectors.github.PullRequestChange;
+import org.jboss.pull.shared.connectors.common.Issue;
 import org.jboss.pull.shared.connectors.jira.JiraHelper;
+import org.jboss.pull.shared.connectors.jira.JiraIssue;
 import org.jboss.pull.shared.evaluators.PullEvaluatorFacade;
 import org.jboss.pull.shared.spi.PullEvaluator;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -54,6 +72,12 @@ public class PullHelper {
 
     private final UserList adminList;
 
+    private final IssueReferenceIndex issueIndex = new IssueReferenceIndex();
+    private volatile boolean bugChangeFeedUsed;
+    // pull requests resolved in the current processing cycle
+    private volatile PullRequestRegistry registry;
+    private final PullStateStore stateStore;
+
     // ------- Specific Helpers
     private GithubHelper ghHelper;
     private IssueHelper bzHelper;
@@ -78,6 +102,11 @@ public class PullHelper {
 
             adminList = UserList.loadUserList(Util.require(props, "admin.list.file"));
 
+            final String stateStoreFile = Util.get(props, "pull.state.store.file");
+            stateStore = new PullStateStore(stateStoreFile == null ? null : new File(stateStoreFile.trim()),
+                    Integer.parseInt(Util.get(props, "pull.state.store.compact",
+                            Integer.toString(PullStateStore.DEFAULT_COMPACT_THRESHOLD))));
+
         } catch (Exception e) {
             System.err.printf("Cannot initialize: %s\n", e);
             e.printStackTrace(System.err);
@@ -105,18 +134,311 @@ public class PullHelper {
         List<PullRequest> pullRequests = ghHelper.getPullRequests("open");
 
         List<RedhatPullRequest> redhatPullRequests = new ArrayList<RedhatPullRequest>();
+        List<Integer> openNumbers = new ArrayList<Integer>();
+        final PullRequestRegistry cycle = newCycle();
 
         for (PullRequest pullRequest : pullRequests) {
             LOG.log(Level.INFO, "Found PR #{0,number,#}", pullRequest.getNumber());
-            redhatPullRequests.add(new RedhatPullRequest(pullRequest, bzHelper, jiraHelper, ghHelper));
+            RedhatPullRequest redhatPullRequest = cycle.register(pullRequest);
+            issueIndex.update(redhatPullRequest.getNumber(), redhatPullRequest.getReferencedIssueNumbers());
+            openNumbers.add(redhatPullRequest.getNumber());
+            redhatPullRequests.add(redhatPullRequest);
+        }
+        issueIndex.retain(openNumbers);
+        stateStore.retain(ghHelper.getOrganization(), ghHelper.getRepository(), openNumbers);
+        trackReferencedBugs();
+
+        return redhatPullRequests;
+    }
+
+    /**
+     * Loads the given Bugzilla bugs with a single request.
+     *
+     * @return the bugs found keyed by their id
+     */
+    public Map<String, Bug> loadBugs(final Set<String> ids) {
+        return ((BZHelper) bzHelper).loadIssues(ids);
+    }
+
+    /**
+     * Loads the given Bugzilla bugs with a single request, so that the pull requests referencing them do not fetch them
+     * one by one.
+     */
+    public void prefetchBugs(final Collection<Integer> ids) {
+        ((BZHelper) bzHelper).prefetch(ids);
+    }
+
+    /**
+     * Loads the given Jira issues concurrently, so that the pull requests referencing them do not fetch them one by one.
+     */
+    public void prefetchJiraIssues(final Collection<String> keys) {
+        ((JiraHelper) jiraHelper).prefetch(keys);
+    }
+
+    /**
+     * Returns the time of the last change of a Jira issue loaded by {@link #prefetchJiraIssues(Collection)}, without asking
+     * Jira.
+     *
+     * @return the update time or {@code null} if the issue has not been prefetched
+     */
+    public Date getPrefetchedJiraIssueUpdate(final String key) {
+        final JiraIssue issue = ((JiraHelper) jiraHelper).getPrefetchedIssue(key);
+        return issue == null ? null : issue.getUpdated();
+    }
+
+    /**
+     * Updates the status of several issues at once, e.g. after a wave of merges. The issues are handed over to the helper of
+     * their issue tracking system, which updates them in bulk; hence all of them should be either Bugzilla bugs, with a
+     * {@link Bug.Status}, or Jira issues, with a {@link JiraIssue.IssueStatus}.
+     *
+     * @return the issues which have been updated
+     */
+    public List<Issue> updateStatus(final Collection<? extends Issue> issues, final Enum status) {
+        // keyed by the string, URL.equals() resolves host names
+        final Map<String, Issue> bugs = new LinkedHashMap<String, Issue>();
+        final Map<String, Issue> jiraIssues = new LinkedHashMap<String, Issue>();
+        final List<URL> bugUrls = new ArrayList<URL>();
+        final List<URL> jiraUrls = new ArrayList<URL>();
+        for (Issue issue : issues) {
+            if (bzHelper.accepts(issue.getUrl())) {
+                bugs.put(issue.getUrl().toString(), issue);
+                bugUrls.add(issue.getUrl());
+            } else if (jiraHelper.accepts(issue.getUrl())) {
+                jiraIssues.put(issue.getUrl().toString(), issue);
+                jiraUrls.add(issue.getUrl());
+            } else {
+                throw new IllegalArgumentException("Unknown issue tracking system of " + issue.getUrl());
+            }
+        }
+
+        final List<Issue> updated = new ArrayList<Issue>();
+        if (!bugUrls.isEmpty()) {
+            for (URL url : bzHelper.updateStatus(bugUrls, status)) {
+                updated.add(bugs.get(url.toString()));
+            }
+        }
+        if (!jiraUrls.isEmpty()) {
+            for (URL url : jiraHelper.updateStatus(jiraUrls, status)) {
+                updated.add(jiraIssues.get(url.toString()));
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Returns the Bugzilla change feed. Besides the configured products it watches the bugs referenced by the open pull
+     * requests; the pull requests affected by a change can be re-checked by {@link #checkPullRequestStates(Collection)}.
+     *
+     * @return the Bugzilla change feed
+     */
+    public BugChangeFeed getBugChangeFeed() {
+        final BugChangeFeed feed = ((BZHelper) bzHelper).getChangeFeed();
+        trackReferencedBugs(feed);
+        return feed;
+    }
+
+    /**
+     * Returns the high-water mark of the Bugzilla change feed, which moves whenever a watched bug changes.
+     *
+     * @return the latest change seen by the feed, {@code null} if the feed is not used
+     */
+    public Date getBugChangeHighWaterMark() {
+        return bugChangeFeedUsed ? ((BZHelper) bzHelper).getChangeFeed().getHighWaterMark() : null;
+    }
+
+    private void trackReferencedBugs() {
+        if (bugChangeFeedUsed)
+            trackReferencedBugs(((BZHelper) bzHelper).getChangeFeed());
+    }
+
+    private void trackReferencedBugs(final BugChangeFeed feed) {
+        bugChangeFeedUsed = true;
+        final List<Integer> bugIds = new ArrayList<Integer>();
+        for (String issue : issueIndex.getIssues()) {
+            try {
+                bugIds.add(Integer.valueOf(issue));
+            } catch (NumberFormatException jiraKey) {
+                // not a Bugzilla bug
+            }
+        }
+        feed.setTrackedIds(bugIds);
+    }
+
+    /**
+     * Returns the open pull requests which have changed since the previous call, according to the events of the
+     * repository. If the events cannot tell (the first call, too many events in between or GitHub not responding) all the
+     * open pull requests are returned.
+     *
+     * @return the pull requests which need to be re-checked
+     */
+    public List<RedhatPullRequest> getChangedPullRequests() {
+        final GithubEventPoller poller = ghHelper.getEventPoller();
+        final List<PullRequestChange> changes;
+        try {
+            changes = poller.poll();
+        } catch (IOException e) {
+            System.err.printf("Cannot poll repository events: %s\n", e);
+            return getOpenPullRequests();
+        }
+        if (poller.hasMissedEvents())
+            return getOpenPullRequests();
+
+        final Set<Integer> numbers = new LinkedHashSet<Integer>();
+        for (PullRequestChange change : changes) {
+            numbers.add(change.getNumber());
+        }
+
+        final List<RedhatPullRequest> redhatPullRequests = new ArrayList<RedhatPullRequest>();
+        final PullRequestRegistry cycle = newCycle();
+        for (Integer number : numbers) {
+            final PullRequest pullRequest = ghHelper.getPullRequest(number);
+            if (pullRequest == null || !"open".equals(pullRequest.getState())) {
+                forget(number);
+                continue;
+            }
+            LOG.log(Level.INFO, "Found changed PR #{0,number,#}", number);
+            final RedhatPullRequest redhatPullRequest = cycle.register(pullRequest);
+            issueIndex.update(number, redhatPullRequest.getReferencedIssueNumbers());
+            redhatPullRequests.add(redhatPullRequest);
+        }
+        trackReferencedBugs();
+
+        return redhatPullRequests;
+    }
+
+    /**
+     * Creates a receiver of GitHub webhooks putting the received changes on the given queue. It is configured by the
+     * {@code github.webhook.secret} (required), {@code github.webhook.host} and {@code github.webhook.port} properties.
+     *
+     * @param queue where to put the received changes
+     * @return a receiver which has not been started yet
+     */
+    public GithubWebhookReceiver createWebhookReceiver(final PullRequestWorkQueue queue) {
+        final String host = Util.get(props, "github.webhook.host", "0.0.0.0").trim();
+        final int port = Integer.parseInt(Util.get(props, "github.webhook.port", "8180").trim());
+        return new GithubWebhookReceiver(new InetSocketAddress(host, port), Util.require(props, "github.webhook.secret"),
+                queue);
+    }
+
+    /**
+     * Checks the state of the pull requests put on the queue, one after another, until the thread is interrupted.
+     *
+     * @param queue queue of the changed pull requests, typically fed by a {@link GithubWebhookReceiver}
+     * @param handler receives the state of every checked pull request
+     * @throws InterruptedException when interrupted while waiting for the next change
+     */
+    public void checkPullRequestStates(final PullRequestWorkQueue queue, final PullRequestWorkQueue.Handler handler)
+            throws InterruptedException {
+        while (!Thread.currentThread().isInterrupted()) {
+            final PullRequestChange change = queue.take();
+            try {
+                for (RedhatPullRequest pullRequest : getPullRequests(change)) {
+                    handler.stateChecked(pullRequest, checkPullRequestState(pullRequest));
+                }
+            } catch (RuntimeException e) {
+                System.err.printf("Cannot check the pull request of %s: %s\n", change, e);
+                e.printStackTrace(System.err);
+            }
         }
+        throw new InterruptedException();
+    }
 
+    private List<RedhatPullRequest> getPullRequests(final PullRequestChange change) {
+        final List<RedhatPullRequest> redhatPullRequests = new ArrayList<RedhatPullRequest>();
+        // every change is checked on its own, with fresh data
+        final PullRequestRegistry cycle = new PullRequestRegistry(bzHelper, jiraHelper, ghHelper);
+        if (change.getNumber() >= 0) {
+            final PullRequest pullRequest = ghHelper.getPullRequest(change.getNumber());
+            if (pullRequest != null && "open".equals(pullRequest.getState())) {
+                final RedhatPullRequest redhatPullRequest = cycle.register(pullRequest);
+                issueIndex.update(redhatPullRequest.getNumber(), redhatPullRequest.getReferencedIssueNumbers());
+                redhatPullRequests.add(redhatPullRequest);
+            } else {
+                forget(change.getNumber());
+            }
+        } else if (change.getSha() != null) {
+            // a commit status, the affected pull requests have to be found by their head commit
+            for (PullRequest pullRequest : ghHelper.getPullRequests("open")) {
+                if (change.getSha().equals(pullRequest.getHead().getSha()))
+                    redhatPullRequests.add(cycle.register(pullRequest));
+            }
+        }
         return redhatPullRequests;
     }
 
+    // the pull request is not open any more
+    private void forget(final int number) {
+        issueIndex.remove(number);
+        stateStore.remove(ghHelper.getOrganization(), ghHelper.getRepository(), number);
+    }
+
+    /**
+     * Returns the numbers of the open pull requests which reference the given Bugzilla bug or Jira issue. The index is
+     * refreshed by {@link #getOpenPullRequests()} and {@link #checkPullRequestStates(Collection)}.
+     *
+     * @param issueNumber bug id or Jira key
+     * @return numbers of the referencing pull requests
+     */
+    public Set<Integer> getPullRequestsReferencing(String issueNumber) {
+        return issueIndex.getPullRequests(issueNumber);
+    }
+
+    /**
+     * Re-checks only the open pull requests which reference one of the given changed issues.
+     *
+     * @param changedIssueNumbers bug ids and/or Jira keys which have changed
+     * @return the state of every affected pull request which is still open
+     */
+    public Map<RedhatPullRequest, ProcessorPullState> checkPullRequestStates(Collection<String> changedIssueNumbers) {
+        final Map<RedhatPullRequest, ProcessorPullState> states = new LinkedHashMap<RedhatPullRequest, ProcessorPullState>();
+        final PullRequestRegistry cycle = newCycle();
+
+        for (Integer number : issueIndex.getPullRequests(changedIssueNumbers)) {
+            final PullRequest pullRequest = ghHelper.getPullRequest(number);
+            if (pullRequest == null || !"open".equals(pullRequest.getState())) {
+                forget(number);
+                continue;
+            }
+
+            LOG.log(Level.INFO, "Re-checking PR #{0,number,#} due to an issue change", number);
+            final RedhatPullRequest redhatPullRequest = cycle.register(pullRequest);
+            issueIndex.update(number, redhatPullRequest.getReferencedIssueNumbers());
+            states.put(redhatPullRequest, null);
+        }
+
+        final List<RedhatPullRequest> pullRequests = new ArrayList<RedhatPullRequest>(states.keySet());
+        evaluatorFacade.prefetch(pullRequests);
+        for (RedhatPullRequest redhatPullRequest : pullRequests) {
+            try {
+                states.put(redhatPullRequest, checkPullRequestState(redhatPullRequest));
+            } catch (RuntimeException e) {
+                // do not give up the other pull requests
+                System.err.printf("Cannot check the pull request %d: %s\n", redhatPullRequest.getNumber(), e);
+                e.printStackTrace(System.err);
+                states.put(redhatPullRequest, ProcessorPullState.ERROR);
+            }
+        }
+
+        return states;
+    }
+
+    /**
+     * Returns the pull request, shared with the pull requests of the current cycle which reference it.
+     *
+     * @return the pull request or {@code null} if it cannot be fetched
+     */
     public RedhatPullRequest getPullRequest(String organization, String repository, int id) {
-        PullRequest pullRequest = ghHelper.getPullRequest(organization, repository, id);
-        return new RedhatPullRequest(pullRequest, bzHelper, jiraHelper, ghHelper);
+        PullRequestRegistry cycle = registry;
+        if (cycle == null)
+            cycle = newCycle();
+        return cycle.get(organization, repository, id);
+    }
+
+    /**
+     * Starts a new processing cycle, pull requests resolved from now on are fetched again.
+     */
+    private PullRequestRegistry newCycle() {
+        return registry = new PullRequestRegistry(bzHelper, jiraHelper, ghHelper);
     }
 
     public List<Milestone> getGithubMilestones() {
@@ -128,39 +450,54 @@ public class PullHelper {
     }
 
     /**
-     * Checks the state of the given pull request from the pull-processor perspective.
+     * Checks the state of the given pull request from the pull-processor perspective. What the comments said at the
+     * previous check is remembered (in {@code pull.state.store.file} if configured), so only the comments created since
+     * are fetched. Edits of older comments are not taken into account.
      *
      * @param pullRequest the pull request
      * @return relevant state
      */
     public ProcessorPullState checkPullRequestState(final RedhatPullRequest pullRequest) {
-        ProcessorPullState result = ProcessorPullState.NEW;
-
-        final List<Comment> comments = pullRequest.getGithubComments();
-        for (Comment comment : comments) {
-            if (ghHelper.getGithubLogin().equals(comment.getUser().getLogin())) {
-                if (Constants.PENDING.matcher(comment.getBody()).matches()) {
-                    result = ProcessorPullState.PENDING;
-                    continue;
-                }
-
-                if (Constants.RUNNING.matcher(comment.getBody()).matches()) {
-                    result = ProcessorPullState.RUNNING;
-                    continue;
-                }
-
-                if (Constants.FINISHED.matcher(comment.getBody()).matches()) {
-                    result = ProcessorPullState.FINISHED;
-                    continue;
+        final PullStateStore.Entry previous = stateStore.get(pullRequest.getOrganization(), pullRequest.getRepository(),
+                pullRequest.getNumber());
+
+        ProcessorPullState commentState = null;
+        long lastCommentId = previous == null ? -1 : previous.getLastCommentId();
+        String forceMergedBy = previous == null ? null : previous.getForceMergedBy();
+        boolean checked = true;
+        if (previous != null && previous.isUpToDate(pullRequest.getGithubUpdatedAt())) {
+            // no comment since the last check
+            commentState = previous.getCommentState();
+        } else {
+            // the newest comment setting the state wins, comments older than the last check are not even fetched
+            Comment lastComment = null;
+            try {
+                for (Comment comment : pullRequest.getGithubCommentsNewestFirst()) {
+                    if (comment.getId() <= lastCommentId)
+                        break;
+                    if (lastComment == null)
+                        lastComment = comment;
+                    final ProcessorPullState state = getState(comment);
+                    if (state != null) {
+                        commentState = state;
+                        break;
+                    }
                 }
+            } catch (IllegalStateException e) {
+                System.err.println("Error to get comments for pull request : " + pullRequest.getNumber());
+                e.printStackTrace(System.err);
+                checked = false;
             }
-
-            if (Constants.MERGE.matcher(comment.getBody()).matches()) {
-                result = ProcessorPullState.MERGEABLE;
-                continue;
+            if (commentState == null)
+                commentState = previous == null ? ProcessorPullState.NEW : previous.getCommentState();
+            if (lastComment != null) {
+                lastCommentId = lastComment.getId();
+                forceMergedBy = Constants.FORCE_MERGE.matcher(lastComment.getBody()).matches() ? lastComment.getUser()
+                        .getLogin() : null;
             }
         }
 
+        ProcessorPullState result = commentState;
         if (result == ProcessorPullState.MERGEABLE || result == ProcessorPullState.NEW) {
             // check other conditions, i.e. upstream pull request and bugzilla and jira...
             final PullEvaluator.Result mergeable = evaluatorFacade.isMergeable(pullRequest);
@@ -168,17 +505,39 @@ public class PullHelper {
                 result = ProcessorPullState.INCOMPLETE;
             }
 
-            if (result == ProcessorPullState.INCOMPLETE && !comments.isEmpty()) {
-                Comment lastComment = comments.get(comments.size() - 1);
-                if (Constants.FORCE_MERGE.matcher(lastComment.getBody()).matches()
-                        && isAdminUser(lastComment.getUser().getLogin()))
-                    result = ProcessorPullState.MERGEABLE;
-            }
+            if (result == ProcessorPullState.INCOMPLETE && forceMergedBy != null && isAdminUser(forceMergedBy))
+                result = ProcessorPullState.MERGEABLE;
         }
 
+        if (checked) {
+            stateStore.put(pullRequest.getOrganization(), pullRequest.getRepository(), pullRequest.getNumber(),
+                    new PullStateStore.Entry(result, commentState, lastCommentId, forceMergedBy,
+                            pullRequest.getSourceBranchSha(), pullRequest.getGithubUpdatedAt()));
+        }
         return result;
     }
 
+    /**
+     * Returns the state set by the comment, {@code null} if the comment does not set any.
+     */
+    private ProcessorPullState getState(final Comment comment) {
+        if (ghHelper.getGithubLogin().equals(comment.getUser().getLogin())) {
+            if (Constants.PENDING.matcher(comment.getBody()).matches())
+                return ProcessorPullState.PENDING;
+
+            if (Constants.RUNNING.matcher(comment.getBody()).matches())
+                return ProcessorPullState.RUNNING;
+
+            if (Constants.FINISHED.matcher(comment.getBody()).matches())
+                return ProcessorPullState.FINISHED;
+        }
+
+        if (Constants.MERGE.matcher(comment.getBody()).matches())
+            return ProcessorPullState.MERGEABLE;
+
+        return null;
+    }
+
     public boolean isAdminUser(final String username) {
         return adminList.has(username);
     }
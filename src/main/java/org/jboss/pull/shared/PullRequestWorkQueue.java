@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.pull.shared.connectors.RedhatPullRequest;
+import org.jboss.pull.shared.connectors.github.PullRequestChange;
+
+/**
+ * A queue of pull requests waiting to be re-checked. Changes of a pull request which is already waiting are coalesced, so
+ * a burst of webhooks for the same pull request results in a single check.
+ */
+public class PullRequestWorkQueue {
+
+    /**
+     * Receives the result of a check driven by the queue.
+     */
+    public interface Handler {
+        void stateChecked(RedhatPullRequest pullRequest, ProcessorPullState state);
+    }
+
+    private final Map<String, PullRequestChange> pending = new LinkedHashMap<String, PullRequestChange>();
+
+    /**
+     * Adds a change to the queue unless the same pull request is already waiting.
+     *
+     * @return true if the change has been queued, false if it has been coalesced with a waiting one
+     */
+    public synchronized boolean offer(final PullRequestChange change) {
+        final String key = keyOf(change);
+        if (pending.containsKey(key))
+            return false;
+
+        pending.put(key, change);
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Removes the oldest waiting change, waiting for one if the queue is empty.
+     */
+    public synchronized PullRequestChange take() throws InterruptedException {
+        while (pending.isEmpty()) {
+            wait();
+        }
+        return removeFirst();
+    }
+
+    /**
+     * Removes the oldest waiting change, waiting at most the given time for one.
+     *
+     * @return the change or {@code null} if none has arrived in time
+     */
+    public synchronized PullRequestChange poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toMillis(timeout);
+        final long deadline = System.currentTimeMillis() + remaining;
+        while (pending.isEmpty() && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return pending.isEmpty() ? null : removeFirst();
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    private PullRequestChange removeFirst() {
+        final Iterator<PullRequestChange> it = pending.values().iterator();
+        final PullRequestChange change = it.next();
+        it.remove();
+        return change;
+    }
+
+    private static String keyOf(final PullRequestChange change) {
+        return change.getNumber() >= 0 ? "#" + change.getNumber() : change.getSha();
+    }
+}
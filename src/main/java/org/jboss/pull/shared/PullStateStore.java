@@ -0,0 +1,302 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.pull.shared.internal.PropertiesFile;
+
+/**
+ * Remembers per pull request what {@link PullHelper#checkPullRequestState(org.jboss.pull.shared.connectors.RedhatPullRequest)}
+ * has found in its comments, so that a later check only has to look at the comments created since.
+ * <p>
+ * When a file is given, every update is appended to a log next to it ({@code <file>.log}) and the log is compacted into
+ * the file, a snapshot of all the entries, once it has grown long enough. A restarted processor loads the snapshot,
+ * replays the log and continues where it stopped. Without a file the entries are only kept in memory.
+ */
+public class PullStateStore {
+
+    public static final int DEFAULT_COMPACT_THRESHOLD = 1000;
+
+    private final PropertiesFile snapshot;
+    private final File log;
+    private final int compactThreshold;
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private int logged;
+
+    /**
+     * @param file the snapshot file, or {@code null} to keep the entries in memory only
+     * @param compactThreshold number of logged updates after which the log is compacted into the snapshot
+     */
+    public PullStateStore(final File file, final int compactThreshold) {
+        this.compactThreshold = compactThreshold;
+        if (file == null) {
+            snapshot = null;
+            log = null;
+            return;
+        }
+
+        snapshot = new PropertiesFile(file);
+        log = new File(file.getPath() + ".log");
+        for (String key : snapshot.keys()) {
+            final Entry entry = Entry.parse(snapshot.get(key));
+            if (entry != null)
+                entries.put(key, entry);
+        }
+        replayLog();
+        // start with an empty log
+        if (logged > 0)
+            compact();
+    }
+
+    /**
+     * @return the entry or {@code null} if the pull request has not been checked yet
+     */
+    public synchronized Entry get(final String organization, final String repository, final int number) {
+        return entries.get(key(organization, repository, number));
+    }
+
+    public synchronized void put(final String organization, final String repository, final int number, final Entry entry) {
+        final String key = key(organization, repository, number);
+        if (entry.equals(entries.get(key)))
+            return;
+        entries.put(key, entry);
+        if (log == null)
+            return;
+
+        append(key, entry);
+        if (++logged >= compactThreshold)
+            compact();
+    }
+
+    /**
+     * Forgets the pull request, e.g. once it has been closed.
+     */
+    public synchronized void remove(final String organization, final String repository, final int number) {
+        remove(key(organization, repository, number));
+    }
+
+    /**
+     * Forgets the pull requests of the repository which are not among the given ones, e.g. the open ones.
+     */
+    public synchronized void retain(final String organization, final String repository,
+            final Collection<Integer> numbers) {
+        final String prefix = prefix(organization, repository);
+        final Set<String> retained = new HashSet<String>();
+        for (Integer number : numbers) {
+            retained.add(key(organization, repository, number));
+        }
+        for (String key : new ArrayList<String>(entries.keySet())) {
+            if (key.startsWith(prefix) && !retained.contains(key))
+                remove(key);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes all the entries to the snapshot and empties the log.
+     */
+    public synchronized void compact() {
+        if (snapshot == null)
+            return;
+        for (String key : snapshot.keys()) {
+            if (!entries.containsKey(key))
+                snapshot.remove(key);
+        }
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().toString());
+        }
+        snapshot.store();
+        // replaying the log over the new snapshot would not change anything, so a crash before the deletion is harmless
+        if (log.exists() && !log.delete())
+            throw new IllegalStateException("Cannot delete " + log);
+        logged = 0;
+    }
+
+    private void remove(final String key) {
+        if (entries.remove(key) == null || log == null)
+            return;
+
+        append(key, null);
+        if (++logged >= compactThreshold)
+            compact();
+    }
+
+    private void append(final String key, final Entry entry) {
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(log, true);
+            out.write((key + "\t" + (entry == null ? "" : entry.toString()) + "\n").getBytes("UTF-8"));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot append to " + log, e);
+        } finally {
+            Util.safeClose(out);
+        }
+    }
+
+    private void replayLog() {
+        if (!log.exists())
+            return;
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(log), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int tab = line.indexOf('\t');
+                if (tab <= 0)
+                    continue;
+                final String key = line.substring(0, tab);
+                final String value = line.substring(tab + 1);
+                if (value.length() == 0) {
+                    entries.remove(key);
+                } else {
+                    // the last line may have been cut short by a crash
+                    final Entry entry = Entry.parse(value);
+                    if (entry != null)
+                        entries.put(key, entry);
+                }
+                logged++;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load " + log, e);
+        } finally {
+            Util.safeClose(reader);
+        }
+    }
+
+    private static String key(final String organization, final String repository, final int number) {
+        return prefix(organization, repository) + number;
+    }
+
+    private static String prefix(final String organization, final String repository) {
+        // GitHub names are case insensitive
+        return (organization + "/" + repository).toLowerCase() + "#";
+    }
+
+    /**
+     * What the comments of a pull request said up to a comment, together with the pull request as it was checked.
+     */
+    public static class Entry {
+        private final ProcessorPullState state;
+        private final ProcessorPullState commentState;
+        private final long lastCommentId;
+        private final String forceMergedBy;
+        private final String headSha;
+        private final Date updatedAt;
+
+        /**
+         * @param state the state computed by the last check
+         * @param commentState the state set by the newest comment setting one, {@link ProcessorPullState#NEW} if none has
+         * @param lastCommentId id of the newest comment taken into account, -1 if there was none
+         * @param forceMergedBy who asked for a forced merge if the newest comment does so, {@code null} otherwise
+         * @param headSha head commit of the pull request when checked
+         * @param updatedAt update time of the pull request when checked
+         */
+        public Entry(final ProcessorPullState state, final ProcessorPullState commentState, final long lastCommentId,
+                final String forceMergedBy, final String headSha, final Date updatedAt) {
+            this.state = state;
+            this.commentState = commentState;
+            this.lastCommentId = lastCommentId;
+            this.forceMergedBy = forceMergedBy;
+            this.headSha = headSha;
+            this.updatedAt = updatedAt;
+        }
+
+        public ProcessorPullState getState() {
+            return state;
+        }
+
+        public ProcessorPullState getCommentState() {
+            return commentState;
+        }
+
+        public long getLastCommentId() {
+            return lastCommentId;
+        }
+
+        public String getForceMergedBy() {
+            return forceMergedBy;
+        }
+
+        public String getHeadSha() {
+            return headSha;
+        }
+
+        public Date getUpdatedAt() {
+            return updatedAt;
+        }
+
+        /**
+         * Returns true if the pull request has not been updated since this entry has been recorded, hence no comment has
+         * been created since.
+         */
+        public boolean isUpToDate(final Date pullRequestUpdatedAt) {
+            return updatedAt != null && pullRequestUpdatedAt != null && !pullRequestUpdatedAt.after(updatedAt);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Entry && toString().equals(obj.toString());
+        }
+
+        @Override
+        public int hashCode() {
+            return toString().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return state + "," + commentState + "," + lastCommentId + "," + (forceMergedBy == null ? "" : forceMergedBy)
+                    + "," + (headSha == null ? "" : headSha) + "," + (updatedAt == null ? "" : updatedAt.getTime());
+        }
+
+        static Entry parse(final String value) {
+            final String[] fields = value.split(",", -1);
+            if (fields.length != 6)
+                return null;
+            try {
+                return new Entry(ProcessorPullState.valueOf(fields[0]), ProcessorPullState.valueOf(fields[1]),
+                        Long.parseLong(fields[2]), fields[3].length() == 0 ? null : fields[3],
+                        fields[4].length() == 0 ? null : fields[4],
+                        fields[5].length() == 0 ? null : new Date(Long.parseLong(fields[5])));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+}
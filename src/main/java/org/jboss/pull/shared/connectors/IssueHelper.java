@@ -25,6 +25,8 @@ package org.jboss.pull.shared.connectors;
 import org.jboss.pull.shared.connectors.common.Issue;
 
 import java.net.URL;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * @author navssurtani
@@ -58,4 +60,13 @@ public interface IssueHelper {
      * @return - whether or not the status was updated successfully.
      */
     boolean updateStatus(URL url, Enum status);
+
+    /**
+     * Updates the status of several issues at once, with as few requests as the issue tracking system allows. All the
+     * urls should be accepted by {@link #accepts(java.net.URL)}.
+     * @param urls - the issue URLs
+     * @param status - the status to update to
+     * @return - the URLs of the issues which have been updated successfully.
+     */
+    List<URL> updateStatus(Collection<URL> urls, Enum status);
 }
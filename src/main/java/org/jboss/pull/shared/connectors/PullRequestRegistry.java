@@ -0,0 +1,226 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.jboss.pull.shared.connectors.github.GithubHelper;
+
+/**
+ * Resolves pull requests by organization, repository and number, fetching every pull request at most once. All the
+ * {@link RedhatPullRequest}s resolved by a registry share it, so a pull request referenced by many others (typically an
+ * upstream pull request referenced by its backports) is one instance with its issues loaded once.
+ * <p>
+ * A registry is meant to live for one processing cycle; pull requests change, so a new cycle should use a new registry.
+ */
+public class PullRequestRegistry {
+    private static final Logger LOG = Logger.getLogger(PullRequestRegistry.class.getName());
+
+    /**
+     * Depth of the related pull request graph built by {@link #getRelatedPullRequests(RedhatPullRequest)}.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 3;
+
+    private final IssueHelper bzHelper;
+    private final IssueHelper jiraHelper;
+    private final GithubHelper ghHelper;
+
+    private final ConcurrentMap<String, FutureTask<RedhatPullRequest>> pullRequests = new ConcurrentHashMap<String, FutureTask<RedhatPullRequest>>();
+
+    public PullRequestRegistry(final IssueHelper bzHelper, final IssueHelper jiraHelper, final GithubHelper ghHelper) {
+        this.bzHelper = bzHelper;
+        this.jiraHelper = jiraHelper;
+        this.ghHelper = ghHelper;
+    }
+
+    /**
+     * Returns the pull request, fetching it from GitHub if it has not been resolved by this registry yet.
+     *
+     * @return the pull request or {@code null} if it cannot be fetched
+     */
+    public RedhatPullRequest get(final String organization, final String repository, final int number) {
+        final String key = key(organization, repository, number);
+        FutureTask<RedhatPullRequest> task = pullRequests.get(key);
+        if (task == null) {
+            final FutureTask<RedhatPullRequest> newTask = new FutureTask<RedhatPullRequest>(new Callable<RedhatPullRequest>() {
+                @Override
+                public RedhatPullRequest call() {
+                    final PullRequest pullRequest = ghHelper.getPullRequest(organization, repository, number);
+                    return pullRequest == null ? null : new RedhatPullRequest(pullRequest, PullRequestRegistry.this);
+                }
+            });
+            task = pullRequests.putIfAbsent(key, newTask);
+            if (task == null) {
+                task = newTask;
+                task.run();
+            }
+        }
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            System.err.printf("Cannot get pull request %s: %s\n", key, e.getCause());
+            e.getCause().printStackTrace(System.err);
+            return null;
+        }
+    }
+
+    /**
+     * Wraps a pull request fetched by other means, e.g. when listing the open pull requests, and registers it so that it is
+     * not fetched again when referenced.
+     */
+    public RedhatPullRequest register(final PullRequest pullRequest) {
+        final RedhatPullRequest redhatPullRequest = new RedhatPullRequest(pullRequest, this);
+        final String key = keyOf(redhatPullRequest);
+        if (key == null)
+            return redhatPullRequest;
+
+        final FutureTask<RedhatPullRequest> task = new FutureTask<RedhatPullRequest>(new Callable<RedhatPullRequest>() {
+            @Override
+            public RedhatPullRequest call() {
+                return redhatPullRequest;
+            }
+        });
+        task.run();
+        final FutureTask<RedhatPullRequest> existing = pullRequests.putIfAbsent(key, task);
+        if (existing != null) {
+            // already resolved as a reference of another pull request, keep sharing that instance
+            try {
+                final RedhatPullRequest resolved = existing.get();
+                if (resolved != null)
+                    return resolved;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ignore) {
+            }
+            pullRequests.put(key, task);
+        }
+        return redhatPullRequest;
+    }
+
+    /**
+     * Returns the number of pull requests resolved so far.
+     */
+    public int size() {
+        return pullRequests.size();
+    }
+
+    /**
+     * Returns all the pull requests reachable from the given one by references in descriptions, up to
+     * {@link #DEFAULT_MAX_DEPTH} levels.
+     *
+     * @see #getRelatedPullRequests(RedhatPullRequest, int)
+     */
+    public Set<RedhatPullRequest> getRelatedPullRequests(final RedhatPullRequest root) {
+        return getRelatedPullRequests(root, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Returns all the pull requests reachable from the given one by references in descriptions, breadth first. Every pull
+     * request is visited once, so pull requests referencing each other do not loop.
+     *
+     * @param root where to start
+     * @param maxDepth how many levels of references to follow, 1 returns the directly referenced pull requests only
+     * @return the reachable pull requests without the root, nearest first
+     */
+    public Set<RedhatPullRequest> getRelatedPullRequests(final RedhatPullRequest root, final int maxDepth) {
+        return Collections.unmodifiableSet(buildGraph(root, maxDepth, new HashMap<RedhatPullRequest, List<RedhatPullRequest>>()));
+    }
+
+    /**
+     * Returns the related pull request graph of the given one as adjacency lists, see
+     * {@link #getRelatedPullRequests(RedhatPullRequest, int)}. Pull requests at the maximal depth have no entry.
+     */
+    public Map<RedhatPullRequest, List<RedhatPullRequest>> getRelatedPullRequestGraph(final RedhatPullRequest root,
+            final int maxDepth) {
+        final Map<RedhatPullRequest, List<RedhatPullRequest>> graph = new HashMap<RedhatPullRequest, List<RedhatPullRequest>>();
+        buildGraph(root, maxDepth, graph);
+        return graph;
+    }
+
+    private Set<RedhatPullRequest> buildGraph(final RedhatPullRequest root, final int maxDepth,
+            final Map<RedhatPullRequest, List<RedhatPullRequest>> graph) {
+        // instances are shared, hence identity is enough to recognize an already visited pull request
+        final Set<RedhatPullRequest> visited = new LinkedHashSet<RedhatPullRequest>();
+        visited.add(root);
+
+        List<RedhatPullRequest> level = Collections.singletonList(root);
+        for (int depth = 1; depth <= maxDepth && !level.isEmpty(); depth++) {
+            final List<RedhatPullRequest> next = new ArrayList<RedhatPullRequest>();
+            for (RedhatPullRequest pullRequest : level) {
+                final List<RedhatPullRequest> related = pullRequest.getRelatedPullRequests();
+                graph.put(pullRequest, related);
+                for (RedhatPullRequest relatedPullRequest : related) {
+                    if (visited.add(relatedPullRequest)) {
+                        next.add(relatedPullRequest);
+                    } else {
+                        LOG.log(Level.FINE, "Pull request #{0} is referenced again by #{1}",
+                                new Object[] { relatedPullRequest.getNumber(), pullRequest.getNumber() });
+                    }
+                }
+            }
+            level = next;
+        }
+        visited.remove(root);
+        return visited;
+    }
+
+    IssueHelper getBzHelper() {
+        return bzHelper;
+    }
+
+    IssueHelper getJiraHelper() {
+        return jiraHelper;
+    }
+
+    GithubHelper getGhHelper() {
+        return ghHelper;
+    }
+
+    static String keyOf(final RedhatPullRequest pullRequest) {
+        if (pullRequest.getApiUrl() == null)
+            return null;
+        return key(pullRequest.getOrganization(), pullRequest.getRepository(), pullRequest.getNumber());
+    }
+
+    private static String key(final String organization, final String repository, final int number) {
+        // GitHub names are case insensitive
+        return (organization + "/" + repository).toLowerCase() + "#" + number;
+    }
+}
@@ -26,7 +26,11 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -41,6 +45,7 @@ import org.jboss.pull.shared.connectors.bugzilla.BZHelper;
 import org.jboss.pull.shared.connectors.bugzilla.Bug;
 import org.jboss.pull.shared.connectors.common.Issue;
 import org.jboss.pull.shared.connectors.github.GithubHelper;
+import org.jboss.pull.shared.connectors.github.IssueMutation;
 import org.jboss.pull.shared.connectors.jira.JiraHelper;
 import org.jboss.pull.shared.connectors.jira.JiraIssue;
 
@@ -51,26 +56,38 @@ public class RedhatPullRequest {
     private List<Issue> jiraIssues = null;
     private List<RedhatPullRequest> relatedPullRequests = null;
 
-    private IssueHelper bzHelper;
-    private IssueHelper jiraHelper;
-    private GithubHelper ghHelper;
+    private final IssueHelper bzHelper;
+    private final IssueHelper jiraHelper;
+    private final GithubHelper ghHelper;
+    private final PullRequestRegistry registry;
 
     public RedhatPullRequest(PullRequest pullRequest, IssueHelper bzHelper, IssueHelper jiraHelper, GithubHelper ghHelper) {
+        this(pullRequest, new PullRequestRegistry(bzHelper, jiraHelper, ghHelper));
+    }
+
+    /**
+     * Creates a pull request whose related pull requests are resolved by the given registry. The issues and the related
+     * pull requests are loaded lazily, so pull requests referencing each other do not loop.
+     */
+    RedhatPullRequest(PullRequest pullRequest, PullRequestRegistry registry) {
         this.pullRequest = pullRequest;
-        if (bzHelper instanceof BZHelper && jiraHelper instanceof JiraHelper) {
-            this.bzHelper = bzHelper;
-            this.jiraHelper = jiraHelper;
+        if (registry.getBzHelper() instanceof BZHelper && registry.getJiraHelper() instanceof JiraHelper) {
+            this.bzHelper = registry.getBzHelper();
+            this.jiraHelper = registry.getJiraHelper();
         } else {
             throw new IllegalArgumentException("The first IssueHelper parameter has to be an instance of BZHelper and"
                     + " the second IssueHelper parameter must be an instance of JiraHelper.");
         }
 
-        this.ghHelper = ghHelper;
-
-        this.bugs = getBugsFromDescription();
-        this.jiraIssues = getJiraIssuesFromDescription();
+        this.ghHelper = registry.getGhHelper();
+        this.registry = registry;
+    }
 
-        // Can't call getPRFromDescription here. If two PR's reference each other a loop occurs.
+    /**
+     * Returns the registry resolving the related pull requests of this one.
+     */
+    public PullRequestRegistry getRegistry() {
+        return registry;
     }
 
     /**
@@ -134,6 +151,29 @@ public class RedhatPullRequest {
         return urls;
     }
 
+    /**
+     * Returns the numbers of the Bugzilla bugs and Jira issues referenced in the PR description. Unlike {@link #getIssues()}
+     * the issues are not looked up in their trackers.
+     *
+     * @return bug ids and (upper-cased) Jira keys found in the description
+     */
+    public Set<String> getReferencedIssueNumbers() {
+        final Set<String> numbers = new HashSet<String>();
+        final String description = pullRequest.getBody();
+        if (description == null)
+            return numbers;
+
+        final Matcher bugMatcher = Constants.BUGZILLA_ID_PATTERN.matcher(description);
+        while (bugMatcher.find()) {
+            numbers.add(bugMatcher.group(1));
+        }
+        final Matcher jiraMatcher = Constants.RELATED_JIRA_PATTERN.matcher(description);
+        while (jiraMatcher.find()) {
+            numbers.add(jiraMatcher.group(1).toUpperCase());
+        }
+        return numbers;
+    }
+
     public boolean hasBugLinkInDescription() {
         return (hasBZLinkInDescription() || hasJiraLinkInDescription());
     }
@@ -143,7 +183,11 @@ public class RedhatPullRequest {
      *
      * @return
      */
-    public List<Issue> getIssues() {
+    public synchronized List<Issue> getIssues() {
+        if (bugs == null) {
+            bugs = getBugsFromDescription();
+            jiraIssues = getJiraIssuesFromDescription();
+        }
         List<Issue> toReturn = new ArrayList<Issue>(bugs.size() + jiraIssues.size());
         toReturn.addAll(bugs);
         toReturn.addAll(jiraIssues);
@@ -172,7 +216,7 @@ public class RedhatPullRequest {
         return retVal;
     }
 
-    public List<RedhatPullRequest> getRelatedPullRequests() {
+    public synchronized List<RedhatPullRequest> getRelatedPullRequests() {
         if (relatedPullRequests != null) {
             return relatedPullRequests;
         } else {
@@ -180,6 +224,42 @@ public class RedhatPullRequest {
         }
     }
 
+    /**
+     * Returns what is already known about the merged state of the pull requests referenced in the description, keyed by
+     * {@code organization/repository#number}. Unlike {@link #getRelatedPullRequests()} the pull requests are not looked
+     * up on GitHub.
+     *
+     * @return {@code TRUE} if known to be merged, {@code FALSE} if recently found not merged, {@code null} if unknown
+     */
+    public Map<String, Boolean> getKnownRelatedMergedStates() {
+        final Map<String, Boolean> states = new TreeMap<String, Boolean>();
+        final String description = pullRequest.getBody();
+        if (description == null)
+            return states;
+
+        final Matcher matcher = Constants.RELATED_PR_PATTERN.matcher(description);
+        while (matcher.find()) {
+            putKnownMergedState(states, matcher.group(1), matcher.group(2), Integer.parseInt(matcher.group(3)));
+        }
+        final Matcher abbreviatedMatcher = Constants.ABBREVIATED_RELATED_PR_PATTERN.matcher(description);
+        while (abbreviatedMatcher.find()) {
+            final Matcher externalMatcher = Constants.ABBREVIATED_RELATED_PR_PATTERN_EXTERNAL_REPO.matcher(
+                    abbreviatedMatcher.group());
+            if (externalMatcher.find())
+                putKnownMergedState(states, externalMatcher.group(1), externalMatcher.group(2),
+                        Integer.parseInt(externalMatcher.group(3)));
+            else
+                putKnownMergedState(states, getOrganization(), getRepository(),
+                        Integer.parseInt(abbreviatedMatcher.group(2)));
+        }
+        return states;
+    }
+
+    private void putKnownMergedState(Map<String, Boolean> states, String organization, String repository, int number) {
+        states.put((organization + "/" + repository).toLowerCase() + "#" + number,
+                ghHelper.getKnownMergedState(organization, repository, number));
+    }
+
     public boolean isUpstreamRequired() {
         return !Constants.UPSTREAM_NOT_REQUIRED.matcher(pullRequest.getBody()).find();
     }
@@ -189,11 +269,7 @@ public class RedhatPullRequest {
 
         List<RedhatPullRequest> relatedPullRequests = new ArrayList<RedhatPullRequest>();
         while (matcher.find()) {
-            PullRequest relatedPullRequest = ghHelper.getPullRequest(matcher.group(1), matcher.group(2),
-                    Integer.valueOf(matcher.group(3)));
-            if (relatedPullRequest != null) {
-                relatedPullRequests.add(new RedhatPullRequest(relatedPullRequest, bzHelper, jiraHelper, ghHelper));
-            }
+            addRelated(relatedPullRequests, registry.get(matcher.group(1), matcher.group(2), Integer.valueOf(matcher.group(3))));
         }
 
         Matcher abbreviatedMatcher = Constants.ABBREVIATED_RELATED_PR_PATTERN.matcher(getGithubDescription());
@@ -205,22 +281,22 @@ public class RedhatPullRequest {
 
             if (abbreviatedExternalMatcher.find()) {
                 System.out.println("Attempting External Match: " + match);
-                PullRequest relatedPullRequest = ghHelper.getPullRequest(abbreviatedExternalMatcher.group(1),
+                RedhatPullRequest relatedPullRequest = registry.get(abbreviatedExternalMatcher.group(1),
                         abbreviatedExternalMatcher.group(2), Integer.valueOf(abbreviatedExternalMatcher.group(3)));
                 if (relatedPullRequest != null) {
                     System.out.println("External Match Found: " + match);
-                    relatedPullRequests.add(new RedhatPullRequest(relatedPullRequest, bzHelper, jiraHelper, ghHelper));
+                    addRelated(relatedPullRequests, relatedPullRequest);
                     continue;
                 }
 
             }
 
             System.out.println("Attempting Internal Match: " + match);
-            PullRequest relatedPullRequest = ghHelper.getPullRequest(getOrganization(), getRepository(),
+            RedhatPullRequest relatedPullRequest = registry.get(getOrganization(), getRepository(),
                     Integer.valueOf(abbreviatedMatcher.group(2)));
             if (relatedPullRequest != null) {
                 System.out.println("Internal Match Found: " + match);
-                relatedPullRequests.add(new RedhatPullRequest(relatedPullRequest, bzHelper, jiraHelper, ghHelper));
+                addRelated(relatedPullRequests, relatedPullRequest);
             }
 
         }
@@ -228,6 +304,29 @@ public class RedhatPullRequest {
         return relatedPullRequests;
     }
 
+    private void addRelated(List<RedhatPullRequest> relatedPullRequests, RedhatPullRequest relatedPullRequest) {
+        // the registry shares instances, a pull request mentioned twice or referencing itself is skipped
+        if (relatedPullRequest != null && relatedPullRequest != this && !relatedPullRequests.contains(relatedPullRequest))
+            relatedPullRequests.add(relatedPullRequest);
+    }
+
+    /**
+     * Returns the commits of the given repository referenced in the description by their GitHub URL, e.g.
+     * {@code https://github.com/wildfly/wildfly/commit/5d1fe5e}.
+     *
+     * @return the (possibly abbreviated) commit ids
+     */
+    public List<String> getRelatedCommits(String organization, String repository) {
+        final List<String> commits = new ArrayList<String>();
+        final Matcher matcher = Constants.COMMIT_RELATED_PR_PATTERN.matcher(getGithubDescription());
+        while (matcher.find()) {
+            if (matcher.group(1).equalsIgnoreCase(organization) && matcher.group(2).equalsIgnoreCase(repository)
+                    && !commits.contains(matcher.group(3)))
+                commits.add(matcher.group(3));
+        }
+        return commits;
+    }
+
     public int getNumber() {
         return pullRequest.getNumber();
     }
@@ -241,10 +340,14 @@ public class RedhatPullRequest {
     }
 
     public void setMilestone(Milestone milestone) {
-        org.eclipse.egit.github.core.Issue issue = ghHelper.getIssue(pullRequest);
+        ghHelper.mutate(pullRequest).setMilestone(milestone).apply();
+    }
 
-        issue.setMilestone(milestone);
-        ghHelper.editIssue(issue);
+    /**
+     * Returns a builder of changes of the labels and milestone of this pull request, applied together.
+     */
+    public IssueMutation mutate() {
+        return ghHelper.mutate(pullRequest);
     }
 
     public String getTargetBranchTitle() {
@@ -263,6 +366,15 @@ public class RedhatPullRequest {
         return ghHelper.getComments(pullRequest);
     }
 
+    /**
+     * Returns the comments from the newest to the oldest one, fetched lazily while iterating.
+     *
+     * @see GithubHelper#getCommentsNewestFirst(PullRequest)
+     */
+    public Iterable<Comment> getGithubCommentsNewestFirst() {
+        return ghHelper.getCommentsNewestFirst(pullRequest);
+    }
+
     public void postGithubStatus(String targetUrl, String status) {
         ghHelper.postGithubStatus(pullRequest, targetUrl, status);
     }
@@ -283,6 +395,10 @@ public class RedhatPullRequest {
         return pullRequest.getState();
     }
 
+    String getApiUrl() {
+        return pullRequest.getUrl();
+    }
+
     public String getHtmlUrl() {
         return pullRequest.getHtmlUrl();
     }
@@ -291,18 +407,19 @@ public class RedhatPullRequest {
         return ghHelper.isMerged(pullRequest);
     }
 
+    /**
+     * Returns the outcome of the latest build reported in the comments.
+     */
     public BuildResult getBuildResult() {
-        BuildResult buildResult = BuildResult.UNKNOWN;
-        Comment comment = ghHelper.getLastMatchingComment(pullRequest, Constants.BUILD_OUTCOME);
-
-        if (comment != null) {
-            Matcher matcher = Constants.BUILD_OUTCOME.matcher(comment.getBody());
-            while (matcher.find()) {
-                buildResult = BuildResult.valueOf(matcher.group(2));
-            }
-        }
+        return ghHelper.getBuildOutcomes(pullRequest).getLatest();
+    }
 
-        return buildResult;
+    /**
+     * Returns the outcome of the latest build of the current head commit, {@link BuildResult#UNKNOWN} if it has not been
+     * built yet.
+     */
+    public BuildResult getHeadBuildResult() {
+        return ghHelper.getBuildOutcomes(pullRequest).get(getSourceBranchSha());
     }
 
     public String getOrganization() {
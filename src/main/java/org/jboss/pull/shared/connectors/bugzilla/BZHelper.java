@@ -23,17 +23,29 @@
 package org.jboss.pull.shared.connectors.bugzilla;
 
 
+import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
 
 import org.jboss.pull.shared.Constants;
 import org.jboss.pull.shared.Util;
 import org.jboss.pull.shared.connectors.IssueHelper;
 import org.jboss.pull.shared.connectors.common.AbstractCommonIssueHelper;
+import org.jboss.pull.shared.connectors.common.Flag;
 import org.jboss.pull.shared.connectors.common.Issue;
+import org.jboss.pull.shared.internal.Outbox;
+import org.jboss.pull.shared.internal.PropertiesFile;
 
 public class BZHelper extends AbstractCommonIssueHelper implements IssueHelper {
 
@@ -42,6 +54,21 @@ public class BZHelper extends AbstractCommonIssueHelper implements IssueHelper {
 
     private final Bugzilla bugzillaClient;
 
+    private BugChangeFeed changeFeed;
+
+    // comments and flags are updated in the background when configured
+    private final Outbox outbox;
+    private static final String COMMENT_WRITE = "bugzilla.comment";
+    private static final String FLAG_WRITE = "bugzilla.flag";
+
+    // bug ids per Bug.update request
+    static final int UPDATE_BATCH_SIZE = 100;
+
+    // how long bugs loaded ahead of an evaluation are served instead of fetching them again
+    private static final long PREFETCH_TTL = TimeUnit.MINUTES.toMillis(5);
+    private Map<Integer, Bug> prefetched = new HashMap<Integer, Bug>();
+    private long prefetchedAt;
+
     public BZHelper(final String configurationFileProperty, final String configurationFileDefault) throws Exception {
         super(configurationFileProperty, configurationFileDefault);
         try {
@@ -50,6 +77,25 @@ public class BZHelper extends AbstractCommonIssueHelper implements IssueHelper {
 
             // initialize bugzilla client
             bugzillaClient = new Bugzilla(Constants.BUGZILLA_BASE, BUGZILLA_LOGIN, BUGZILLA_PASSWORD);
+
+            outbox = Outbox.create(fromUtil, "bugzilla");
+            if (outbox != null) {
+                outbox.register(COMMENT_WRITE, new Outbox.Handler() {
+                    @Override
+                    public void apply(List<Outbox.Write> writes) {
+                        final Outbox.Write write = writes.get(0);
+                        bugzillaClient.addComment(Integer.parseInt(write.getArg(0)), write.getArg(1),
+                                CommentVisibility.valueOf(write.getArg(2)), Double.parseDouble(write.getArg(3)));
+                    }
+                });
+                outbox.register(FLAG_WRITE, new Outbox.Handler() {
+                    @Override
+                    public void apply(List<Outbox.Write> writes) {
+                        applyFlagUpdates(writes);
+                    }
+                }, UPDATE_BATCH_SIZE);
+                outbox.start("bugzilla-outbox");
+            }
         } catch (Exception e) {
             System.err.printf("Cannot initialize: %s\n", e);
             e.printStackTrace(System.err);
@@ -59,7 +105,42 @@ public class BZHelper extends AbstractCommonIssueHelper implements IssueHelper {
 
     @Override
     public Issue findIssue(URL url) throws IllegalArgumentException {
-        return bugzillaClient.getBug(cutIdFromURL(url));
+        return getBug(cutIdFromURL(url));
+    }
+
+    /**
+     * Returns the bug, the prefetched one if it has been loaded by {@link #prefetch(Collection)} a moment ago.
+     *
+     * @return the bug or {@code null} if there is no such bug
+     */
+    public Bug getBug(final int id) {
+        synchronized (this) {
+            final Bug bug = prefetched.get(id);
+            if (bug != null && System.currentTimeMillis() - prefetchedAt < PREFETCH_TTL)
+                return bug;
+        }
+        return bugzillaClient.getBug(id);
+    }
+
+    /**
+     * Loads the given bugs with a single request, they are then served by {@link #findIssue(URL)} and
+     * {@link #getBug(int)} for a few minutes. The bugs prefetched before are dropped.
+     */
+    public void prefetch(final Collection<Integer> ids) {
+        final Map<Integer, Bug> bugs = new HashMap<Integer, Bug>();
+        if (!ids.isEmpty()) {
+            final Set<String> keys = new HashSet<String>();
+            for (Integer id : ids) {
+                keys.add(id.toString());
+            }
+            for (Bug bug : bugzillaClient.getBugs(keys).values()) {
+                bugs.put(bug.getId(), bug);
+            }
+        }
+        synchronized (this) {
+            prefetched = bugs;
+            prefetchedAt = System.currentTimeMillis();
+        }
     }
 
     @Override
@@ -67,10 +148,46 @@ public class BZHelper extends AbstractCommonIssueHelper implements IssueHelper {
         return url.getHost().equalsIgnoreCase(Constants.BUGZILLA_HOST);
     }
 
-    // FIXME: This has to be implemented properly.
     @Override
     public boolean updateStatus(URL url, Enum status) {
-        throw new UnsupportedOperationException("This feature is not implemented yet.");
+        return !updateStatus(Collections.singleton(url), status).isEmpty();
+    }
+
+    /**
+     * Updates the status of the bugs with multi-id {@code Bug.update} requests of up to {@value #UPDATE_BATCH_SIZE} bugs.
+     * A failed request is reported and the remaining bugs are updated anyway.
+     */
+    @Override
+    public List<URL> updateStatus(Collection<URL> urls, Enum status) {
+        if (!(status instanceof Bug.Status))
+            throw new IllegalArgumentException("Not a Bugzilla bug status: " + status);
+
+        final Map<Integer, URL> bugs = new LinkedHashMap<Integer, URL>();
+        for (URL url : urls) {
+            bugs.put(cutIdFromURL(url), url);
+        }
+
+        // not a set, URL.equals() resolves host names
+        final List<URL> updated = new ArrayList<URL>();
+        final List<Integer> ids = new ArrayList<Integer>(bugs.keySet());
+        for (int from = 0; from < ids.size(); from += UPDATE_BATCH_SIZE) {
+            final List<Integer> batch = ids.subList(from, Math.min(from + UPDATE_BATCH_SIZE, ids.size()));
+            try {
+                bugzillaClient.updateBugzillaStatus(batch, (Bug.Status) status);
+            } catch (IllegalStateException e) {
+                System.err.printf("Cannot update the status of bugs %s to %s: %s\n", batch, status, e);
+                e.printStackTrace(System.err);
+                continue;
+            }
+            synchronized (this) {
+                // their status has changed
+                prefetched.keySet().removeAll(batch);
+            }
+            for (Integer id : batch) {
+                updated.add(bugs.get(id));
+            }
+        }
+        return updated;
     }
 
     private int cutIdFromURL(URL url) {
@@ -91,7 +208,87 @@ public class BZHelper extends AbstractCommonIssueHelper implements IssueHelper {
         return bugzillaClient.getBugs(bugIds);
     }
 
+    /**
+     * Returns the feed of bug changes. It is configured by the optional {@code bugzilla.feed.products} (comma separated
+     * products to watch) and {@code bugzilla.feed.state.file} (where to keep the high-water mark) properties.
+     *
+     * @return the change feed, never {@code null}
+     */
+    public synchronized BugChangeFeed getChangeFeed() {
+        if (changeFeed == null) {
+            final String stateFile = Util.get(fromUtil, "bugzilla.feed.state.file");
+            changeFeed = new BugChangeFeed(bugzillaClient, stateFile == null ? null : new PropertiesFile(new File(stateFile.trim())));
+
+            final List<String> products = new ArrayList<String>();
+            final StringTokenizer tokenizer = new StringTokenizer(Util.get(fromUtil, "bugzilla.feed.products", ""), ",");
+            while (tokenizer.hasMoreTokens()) {
+                final String product = tokenizer.nextToken().trim();
+                if (product.length() > 0)
+                    products.add(product);
+            }
+            changeFeed.setProducts(products);
+        }
+        return changeFeed;
+    }
+
+    /**
+     * Adds a comment to the bug, in the background if {@code bugzilla.outbox.file} is configured.
+     *
+     * @return true if the comment has been added or queued
+     */
     public boolean addComment(final int id, final String text, CommentVisibility visibility, double worktime) {
+        if (outbox != null) {
+            outbox.enqueue(getWriteTarget(id), COMMENT_WRITE, Integer.toString(id), text, visibility.name(),
+                    Double.toString(worktime));
+            return true;
+        }
         return bugzillaClient.addComment(id, text, visibility, worktime);
     }
+
+    /**
+     * Sets a flag of the bugs, in the background if {@code bugzilla.outbox.file} is configured. Queued updates of the
+     * same flag are sent together with a single {@code Flag.update} request.
+     *
+     * @return true if the flags have been updated or queued
+     */
+    public boolean updateFlag(final Collection<Integer> ids, final String name, final Flag.Status status) {
+        if (outbox != null) {
+            for (Integer id : ids) {
+                outbox.enqueue(getWriteTarget(id), FLAG_WRITE, id.toString(), name, status.name());
+            }
+            return true;
+        }
+        return bugzillaClient.updateBugzillaFlag(ids.toArray(new Integer[ids.size()]), name, status);
+    }
+
+    private void applyFlagUpdates(final List<Outbox.Write> writes) {
+        final Map<String, List<Integer>> idsByUpdate = new LinkedHashMap<String, List<Integer>>();
+        for (Outbox.Write write : writes) {
+            final String update = write.getArg(1) + "\t" + write.getArg(2);
+            List<Integer> ids = idsByUpdate.get(update);
+            if (ids == null) {
+                ids = new ArrayList<Integer>();
+                idsByUpdate.put(update, ids);
+            }
+            ids.add(Integer.valueOf(write.getArg(0)));
+        }
+        // a flag update is idempotent, repeating the successful ones when another one fails is harmless
+        for (Map.Entry<String, List<Integer>> update : idsByUpdate.entrySet()) {
+            final String[] flag = update.getKey().split("\t");
+            final List<Integer> ids = update.getValue();
+            bugzillaClient.updateBugzillaFlag(ids.toArray(new Integer[ids.size()]), flag[0], Flag.Status.valueOf(flag[1]));
+        }
+    }
+
+    // the comments and flag updates of a bug are applied in order
+    private static String getWriteTarget(final int id) {
+        return "bz" + id;
+    }
+
+    /**
+     * Returns the outbox of the comments and flag updates not applied yet, {@code null} if they are applied right away.
+     */
+    public Outbox getOutbox() {
+        return outbox;
+    }
 }
\ No newline at end of file
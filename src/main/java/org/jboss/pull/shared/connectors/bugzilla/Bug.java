@@ -34,6 +34,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.jboss.pull.shared.connectors.common.Flag;
+import org.jboss.pull.shared.connectors.common.FlagBits;
 import org.jboss.pull.shared.connectors.common.Issue;
 
 public class Bug implements Issue {
@@ -67,6 +68,8 @@ public class Bug implements Issue {
     private Status status;
     private String resolution;
     private List<Flag> flags;
+    // computed once, the flags are not expected to change
+    private transient FlagBits positiveFlags;
     private List<String> groups;
     private Set<Integer> dependsOn;
     private Set<Integer> blocks;
@@ -232,6 +235,13 @@ public class Bug implements Issue {
         return flags;
     }
 
+    @Override
+    public FlagBits getPositiveFlags() {
+        if (positiveFlags == null)
+            positiveFlags = FlagBits.positiveOf(flags);
+        return positiveFlags;
+    }
+
     public List<String> getGroups() {
         return groups;
     }
@@ -0,0 +1,245 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.bugzilla;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.pull.shared.internal.PropertiesFile;
+
+/**
+ * Polls Bugzilla for bugs changed since the last poll, using {@code Bug.search} with a {@code last_change_time} lower bound.
+ * The search is restricted to the tracked products and/or bug ids. Every poll reports the changed bugs to the registered
+ * {@link Listener}s, so that caches and evaluators only have to react to what has really changed.
+ * <p>
+ * The high-water mark (the latest {@code last_change_time} seen) is kept in a {@link PropertiesFile} when one is given, so
+ * that a restarted feed continues where it has stopped.
+ */
+public class BugChangeFeed {
+
+    /**
+     * Receives the bugs changed since the previous poll.
+     */
+    public interface Listener {
+        /**
+         * @param changed new snapshots of the changed bugs keyed by their id
+         */
+        void bugsChanged(Map<String, Bug> changed);
+    }
+
+    static final String HIGH_WATER_MARK = "bugzilla.feed.high.water.mark";
+    static final String IDS_AT_MARK = "bugzilla.feed.ids.at.mark";
+
+    private static final long DEFAULT_LOOKBACK = TimeUnit.DAYS.toMillis(1);
+
+    private final BugsClient client;
+    private final PropertiesFile state;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    private Set<String> products = Collections.emptySet();
+    private Set<Integer> ids = Collections.emptySet();
+
+    private Date highWaterMark;
+    // bugs already reported with last_change_time equal to the mark; the lower bound of the search is inclusive
+    private Set<String> idsAtMark = new HashSet<String>();
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param client the Bugzilla client to poll with
+     * @param state where to keep the high-water mark, or {@code null} to keep it in memory only
+     */
+    public BugChangeFeed(final BugsClient client, final PropertiesFile state) {
+        this(client, state, System.currentTimeMillis());
+    }
+
+    /**
+     * @param now current time, the first poll without a stored high-water mark looks back from it
+     */
+    BugChangeFeed(final BugsClient client, final PropertiesFile state, final long now) {
+        this.client = client;
+        this.state = state;
+
+        if (state != null && state.get(HIGH_WATER_MARK) != null) {
+            highWaterMark = new Date(Long.parseLong(state.get(HIGH_WATER_MARK)));
+            final StringTokenizer tokenizer = new StringTokenizer(state.get(IDS_AT_MARK, ""), ", ");
+            while (tokenizer.hasMoreTokens()) {
+                idsAtMark.add(tokenizer.nextToken());
+            }
+        } else {
+            highWaterMark = new Date(now - DEFAULT_LOOKBACK);
+        }
+    }
+
+    public void addListener(final Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(final Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sets the Bugzilla products whose bugs are watched.
+     */
+    public synchronized void setProducts(final Collection<String> products) {
+        this.products = new HashSet<String>(products);
+    }
+
+    /**
+     * Sets the ids of the bugs which are watched regardless of their product, typically the bugs referenced by open pull
+     * requests.
+     */
+    public synchronized void setTrackedIds(final Collection<Integer> ids) {
+        this.ids = new HashSet<Integer>(ids);
+    }
+
+    public synchronized Date getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Fetches the bugs changed since the previous poll and notifies the listeners about them.
+     *
+     * @return the changed bugs keyed by their id, empty if nothing has changed or nothing is tracked
+     */
+    public synchronized Map<String, Bug> poll() {
+        final Map<String, Bug> changed = new HashMap<String, Bug>();
+        if (products.isEmpty() && ids.isEmpty())
+            return changed;
+
+        // Bugzilla ANDs the criteria, hence products and ids have to be searched separately
+        if (!products.isEmpty())
+            changed.putAll(client.searchBugs(highWaterMark, products, null));
+        if (!ids.isEmpty())
+            changed.putAll(client.searchBugs(highWaterMark, null, ids));
+
+        Date newMark = highWaterMark;
+        final Set<String> newIdsAtMark = new HashSet<String>();
+        for (Bug bug : new ArrayList<Bug>(changed.values())) {
+            final Date lastModified = bug.getLastModified();
+            if (lastModified == null)
+                continue;
+
+            final String id = bug.getNumber();
+            if (lastModified.equals(highWaterMark) && idsAtMark.contains(id)) {
+                changed.remove(id);
+                newIdsAtMark.add(id);
+                continue;
+            }
+
+            if (lastModified.after(newMark)) {
+                newMark = lastModified;
+                newIdsAtMark.clear();
+            }
+            if (lastModified.equals(newMark))
+                newIdsAtMark.add(id);
+        }
+
+        if (!newMark.equals(highWaterMark)) {
+            idsAtMark = newIdsAtMark;
+        } else {
+            idsAtMark.addAll(newIdsAtMark);
+        }
+        highWaterMark = newMark;
+        storeState();
+
+        if (!changed.isEmpty()) {
+            final Map<String, Bug> event = Collections.unmodifiableMap(changed);
+            for (Listener listener : listeners) {
+                try {
+                    listener.bugsChanged(event);
+                } catch (RuntimeException e) {
+                    System.err.printf("Bug change listener %s failed: %s\n", listener, e);
+                    e.printStackTrace(System.err);
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Starts polling in a background thread.
+     *
+     * @param period delay between the end of a poll and the start of the next one
+     * @param unit unit of the period
+     */
+    public synchronized void start(final long period, final TimeUnit unit) {
+        if (executor != null)
+            throw new IllegalStateException("Bug change feed has already been started");
+
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "bugzilla-change-feed");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    poll();
+                } catch (RuntimeException e) {
+                    System.err.printf("Cannot poll Bugzilla for changes: %s\n", e);
+                    e.printStackTrace(System.err);
+                }
+            }
+        }, 0, period, unit);
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void storeState() {
+        if (state == null)
+            return;
+
+        final StringBuilder ids = new StringBuilder();
+        for (String id : idsAtMark) {
+            if (ids.length() > 0)
+                ids.append(',');
+            ids.append(id);
+        }
+        state.put(HIGH_WATER_MARK, Long.toString(highWaterMark.getTime()));
+        state.put(IDS_AT_MARK, ids.toString());
+        state.store();
+    }
+}
@@ -5,6 +5,9 @@ import static org.jboss.pull.shared.internal.XMLRPC.Struct;
 import static org.jboss.pull.shared.internal.XMLRPC.cast;
 import static org.jboss.pull.shared.internal.XMLRPC.iterable;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -13,6 +16,7 @@ public class BugsClient extends AbstractBugzillaClient {
 
     private static final String METHOD_BUG_UPDATE = "Bug.update";
     private static final String METHOD_BUG_GET = "Bug.get";
+    private static final String METHOD_BUG_SEARCH = "Bug.search";
 
     public BugsClient(String serverUrl, String login, String password) {
         super(serverUrl, login, password);
@@ -61,10 +65,22 @@ public class BugsClient extends AbstractBugzillaClient {
      * @return true if status changed otherwise false
      */
     public boolean updateBugzillaStatus(Integer bugzillaId, Bug.Status status) {
+        return updateBugzillaStatus(Collections.singleton(bugzillaId), status);
+    }
+
+    /**
+     * Change the status of several Bugzilla bugs with a single request.
+     *
+     * @param bugzillaIds The ids of the bugs that you want to modify
+     * @param status The status you want to change the bugs to
+     * @return true if status changed otherwise false
+     */
+    public boolean updateBugzillaStatus(Collection<Integer> bugzillaIds, Bug.Status status) {
         Map<String, Object> params = getParameterMap();
 
-        params.put("ids", bugzillaId);
-        params.put("status", status);
+        params.put("ids", bugzillaIds.toArray(new Integer[bugzillaIds.size()]));
+        // XML-RPC cannot serialize enums
+        params.put("status", status.toString());
 
         return runCommand(METHOD_BUG_UPDATE, params);
     }
@@ -101,4 +117,42 @@ public class BugsClient extends AbstractBugzillaClient {
         return results;
     }
 
+    /**
+     * Searches for bugs changed at or after the given time. The search has to be restricted to some products and/or bug
+     * ids, Bugzilla would return far too many bugs otherwise.
+     *
+     * @param lastChangeTime lower bound (inclusive) of the bug last change time
+     * @param products products to look in, may be empty
+     * @param ids bug ids to look for, may be empty
+     * @return the changed bugs keyed by their id
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Bug> searchBugs(final Date lastChangeTime, final Collection<String> products,
+            final Collection<Integer> ids) {
+        if (lastChangeTime == null)
+            throw new IllegalArgumentException("Last change time can't be null");
+        if ((products == null || products.isEmpty()) && (ids == null || ids.isEmpty()))
+            throw new IllegalArgumentException("Search has to be restricted to some products or bug ids");
+
+        Map<String, Object> params = getParameterMap();
+        params.put("include_fields", Bug.include_fields);
+        params.put("last_change_time", lastChangeTime);
+        if (products != null && !products.isEmpty())
+            params.put("product", products.toArray(new String[products.size()]));
+        if (ids != null && !ids.isEmpty())
+            params.put("id", ids.toArray(new Integer[ids.size()]));
+
+        Map<String, Bug> results = new HashMap<String, Bug>();
+
+        Map<String, ?> resultMap = fetch(Struct, METHOD_BUG_SEARCH, params);
+        if (resultMap != null && !resultMap.isEmpty()) {
+            final Object[] bugs = cast(Array, resultMap.get("bugs"));
+            for (Map<String, Object> struct : iterable(Struct, bugs)) {
+                Bug bug = new Bug(struct);
+                results.put(Integer.toString(bug.getId()), bug);
+            }
+        }
+        return results;
+    }
+
 }
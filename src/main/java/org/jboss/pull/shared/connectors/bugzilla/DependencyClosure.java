@@ -0,0 +1,143 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.bugzilla;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The root bugs together with all the bugs blocking them, directly or through other bugs, found by walking
+ * {@code depends_on} level by level with bulk {@code Bug.get} requests. The members are kept in a sorted {@code int}
+ * array, so a membership test is a binary search and does not touch Bugzilla.
+ * <p>
+ * The closure is computed again once it is older than the refresh interval. If that fails the previous members are kept
+ * and the next attempt is made after another interval.
+ */
+public abstract class DependencyClosure {
+
+    public static final int DEFAULT_MAX_DEPTH = 5;
+
+    // bug ids per Bug.get request
+    static final int BATCH_SIZE = 500;
+
+    private final Set<Integer> roots;
+    private final int maxDepth;
+    private final long refreshInterval;
+
+    private volatile int[] members = new int[0];
+    private long refreshedAt;
+
+    /**
+     * @param roots ids of the root bugs
+     * @param maxDepth how many levels of blocking bugs to walk
+     * @param refreshInterval minimal delay between two computations, in milliseconds
+     */
+    public DependencyClosure(final Collection<Integer> roots, final int maxDepth, final long refreshInterval) {
+        this.roots = new HashSet<Integer>(roots);
+        this.maxDepth = maxDepth;
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Returns the {@code depends_on} sets of the given bugs.
+     *
+     * @param ids at most {@link #BATCH_SIZE} bug ids
+     * @return the ids of the bugs blocking each of the bugs found, keyed by bug id
+     */
+    protected abstract Map<Integer, Set<Integer>> loadDependencies(Set<Integer> ids);
+
+    /**
+     * Computes the closure unless it has been computed within the refresh interval.
+     */
+    public synchronized void refreshIfStale() {
+        if (refreshedAt != 0 && System.currentTimeMillis() - refreshedAt < refreshInterval)
+            return;
+        refreshedAt = System.currentTimeMillis();
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            System.err.printf("Cannot compute the bugs blocking %s, keeping the previous ones: %s\n", roots, e);
+            e.printStackTrace(System.err);
+        }
+    }
+
+    /**
+     * Computes the closure now.
+     */
+    public synchronized void refresh() {
+        final Set<Integer> closure = new HashSet<Integer>(roots);
+        Set<Integer> level = new HashSet<Integer>(roots);
+        for (int depth = 0; depth < maxDepth && !level.isEmpty(); depth++) {
+            final Set<Integer> next = new HashSet<Integer>();
+            final List<Integer> ids = new ArrayList<Integer>(level);
+            for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+                final Set<Integer> batch = new HashSet<Integer>(ids.subList(from, Math.min(from + BATCH_SIZE, ids.size())));
+                for (Set<Integer> dependencies : loadDependencies(batch).values()) {
+                    for (Integer dependency : dependencies) {
+                        // bug graphs may contain cycles
+                        if (closure.add(dependency))
+                            next.add(dependency);
+                    }
+                }
+            }
+            level = next;
+        }
+
+        final int[] sorted = new int[closure.size()];
+        int i = 0;
+        for (Integer id : closure) {
+            sorted[i++] = id;
+        }
+        Arrays.sort(sorted);
+        members = sorted;
+    }
+
+    /**
+     * Returns true if the bug is a root bug or blocks one, as of the last computation.
+     */
+    public boolean contains(final int id) {
+        return Arrays.binarySearch(members, id) >= 0;
+    }
+
+    /**
+     * Returns true if any of the given bugs is a member of the closure.
+     */
+    public boolean containsAny(final Collection<Integer> ids) {
+        if (ids == null)
+            return false;
+        final int[] current = members;
+        for (Integer id : ids) {
+            if (Arrays.binarySearch(current, id) >= 0)
+                return true;
+        }
+        return false;
+    }
+
+    public int size() {
+        return members.length;
+    }
+}
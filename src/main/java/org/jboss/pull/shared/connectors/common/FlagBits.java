@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable set of flag names stored as a bitmask over the {@link FlagDictionary}. Checking that a set contains all
+ * the flags of another one is a comparison of a few {@code long}s and does not allocate anything.
+ */
+public final class FlagBits {
+
+    public static final FlagBits EMPTY = new FlagBits(new long[0]);
+
+    private final long[] words;
+
+    private FlagBits(final long[] words) {
+        this.words = words;
+    }
+
+    public static FlagBits of(final Collection<String> names) {
+        final FlagDictionary dictionary = FlagDictionary.getInstance();
+        final List<Integer> bits = new ArrayList<Integer>(names.size());
+        for (String name : names) {
+            bits.add(dictionary.bitOf(name));
+        }
+        return fromBits(bits);
+    }
+
+    /**
+     * Returns the names of the flags which have been set to {@link Flag.Status#POSITIVE}.
+     */
+    public static FlagBits positiveOf(final Collection<Flag> flags) {
+        if (flags == null || flags.isEmpty())
+            return EMPTY;
+        final FlagDictionary dictionary = FlagDictionary.getInstance();
+        final List<Integer> bits = new ArrayList<Integer>(flags.size());
+        for (Flag flag : flags) {
+            if (flag.getStatus() == Flag.Status.POSITIVE && flag.getName() != null)
+                bits.add(dictionary.bitOf(flag.getName()));
+        }
+        return fromBits(bits);
+    }
+
+    private static FlagBits fromBits(final List<Integer> bits) {
+        if (bits.isEmpty())
+            return EMPTY;
+        int max = 0;
+        for (Integer bit : bits) {
+            max = Math.max(max, bit);
+        }
+        final long[] words = new long[max / 64 + 1];
+        for (Integer bit : bits) {
+            words[bit / 64] |= 1L << (bit % 64);
+        }
+        return new FlagBits(words);
+    }
+
+    public boolean contains(final String name) {
+        final int bit = FlagDictionary.getInstance().bitOf(name);
+        return bit / 64 < words.length && (words[bit / 64] & (1L << (bit % 64))) != 0;
+    }
+
+    public boolean containsAll(final FlagBits required) {
+        for (int i = 0; i < required.words.length; i++) {
+            final long word = i < words.length ? words[i] : 0;
+            if ((word & required.words[i]) != required.words[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the names of the required flags which are not in this set, in the order they have been interned.
+     */
+    public List<String> getMissing(final FlagBits required) {
+        final FlagDictionary dictionary = FlagDictionary.getInstance();
+        final List<String> missing = new ArrayList<String>();
+        for (int i = 0; i < required.words.length; i++) {
+            long bits = required.words[i] & ~(i < words.length ? words[i] : 0);
+            while (bits != 0) {
+                final int bit = Long.numberOfTrailingZeros(bits);
+                missing.add(dictionary.nameOf(i * 64 + bit));
+                bits &= bits - 1;
+            }
+        }
+        return missing;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0)
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interns flag names, giving every distinct name a small number, its bit in a {@link FlagBits}. Numbers are never reused,
+ * so bits computed at different times can be compared.
+ */
+public final class FlagDictionary {
+
+    private static final FlagDictionary INSTANCE = new FlagDictionary();
+
+    private final ConcurrentMap<String, Integer> bits = new ConcurrentHashMap<String, Integer>();
+    private final List<String> names = new ArrayList<String>();
+
+    private FlagDictionary() {
+    }
+
+    public static FlagDictionary getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the bit of the flag, assigning the next free one to a name seen for the first time.
+     */
+    public int bitOf(final String name) {
+        final Integer bit = bits.get(name);
+        if (bit != null)
+            return bit;
+        synchronized (names) {
+            final Integer assigned = bits.get(name);
+            if (assigned != null)
+                return assigned;
+            names.add(name);
+            bits.put(name, names.size() - 1);
+            return names.size() - 1;
+        }
+    }
+
+    public String nameOf(final int bit) {
+        synchronized (names) {
+            return names.get(bit);
+        }
+    }
+}
@@ -42,6 +42,8 @@ public interface Issue extends Serializable {
     String getStatus();
     /** flags of the issue */
     List<Flag> getFlags();   // our Flag class will be enough for both Bugzilla and Jira hopefully
+    /** names of the flags set to {@link Flag.Status#POSITIVE}, as loaded from the issue tracker */
+    FlagBits getPositiveFlags();
 
     /** Jira Fix Version/s, Bugzilla calls Target Release **/
     Set<String> getFixVersions();
@@ -0,0 +1,193 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.git;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jboss.pull.shared.Util;
+
+/**
+ * A local bare mirror of a GitHub repository, including the {@code refs/pull/*} refs GitHub publishes for pull requests.
+ * It answers whether commits have been merged into a branch without any GitHub API call. The mirror is refreshed by
+ * incremental fetches, at most once per refresh interval.
+ * <p>
+ * The {@code git} command line client has to be on the path.
+ */
+public class GitMirror {
+    private static final Logger LOG = Logger.getLogger(GitMirror.class.getName());
+
+    private static final Map<File, GitMirror> MIRRORS = new HashMap<File, GitMirror>();
+
+    private final File directory;
+    private final String remoteUrl;
+    private final long refreshInterval;
+
+    private long refreshedAt;
+
+    /**
+     * @param directory where to keep the mirror, created by the first refresh
+     * @param remoteUrl URL of the mirrored repository
+     * @param refreshInterval minimal delay between two fetches, in milliseconds
+     */
+    public GitMirror(final File directory, final String remoteUrl, final long refreshInterval) {
+        this.directory = directory;
+        this.remoteUrl = remoteUrl;
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Returns the mirror kept in the given directory, so that evaluators of several branches with the same upstream share
+     * one mirror and do not fetch into the same directory concurrently.
+     */
+    public static GitMirror forDirectory(final File directory, final String remoteUrl, final long refreshInterval) {
+        final File key = directory.getAbsoluteFile();
+        synchronized (MIRRORS) {
+            GitMirror mirror = MIRRORS.get(key);
+            if (mirror == null) {
+                mirror = new GitMirror(key, remoteUrl, refreshInterval);
+                MIRRORS.put(key, mirror);
+            }
+            return mirror;
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Clones the mirror if it does not exist yet, otherwise fetches what has changed since the last refresh.
+     *
+     * @throws IllegalStateException if git fails
+     */
+    public synchronized void refresh() {
+        if (new File(directory, "HEAD").exists()) {
+            git(directory, "fetch", "--prune", "--quiet", "origin");
+        } else {
+            LOG.log(Level.INFO, "Creating mirror of {0} in {1}", new Object[] { remoteUrl, directory });
+            final File parent = directory.getParentFile();
+            if (parent != null && !parent.exists())
+                parent.mkdirs();
+            git(null, "clone", "--mirror", "--quiet", remoteUrl, directory.getPath());
+        }
+        refreshedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Refreshes the mirror unless it has been refreshed within the refresh interval.
+     */
+    public synchronized void refreshIfStale() {
+        if (refreshedAt == 0 || System.currentTimeMillis() - refreshedAt >= refreshInterval)
+            refresh();
+    }
+
+    /**
+     * Returns the head commit of a pull request, or {@code null} if the mirror does not know the pull request.
+     */
+    public synchronized String getPullRequestHead(final int number) {
+        return resolve("refs/pull/" + number + "/head");
+    }
+
+    /**
+     * Returns true if the head commit of the pull request, and hence all its commits, is reachable from the branch. A pull
+     * request merged by a rebase or a squash has different commits on the branch and is not recognized.
+     */
+    public synchronized boolean isPullRequestMerged(final int number, final String branch) {
+        final String head = getPullRequestHead(number);
+        return head != null && isCommitMerged(head, branch);
+    }
+
+    /**
+     * Returns true if the commit is reachable from the branch.
+     */
+    public synchronized boolean isCommitMerged(final String commit, final String branch) {
+        if (resolve(commit + "^{commit}") == null)
+            return false;
+        final Result result = run(directory, "merge-base", "--is-ancestor", commit, "refs/heads/" + branch);
+        if (result.exitCode > 1)
+            throw new IllegalStateException("git merge-base failed in " + directory + ": " + result.output);
+        return result.exitCode == 0;
+    }
+
+    private String resolve(final String revision) {
+        final Result result = run(directory, "rev-parse", "--verify", "--quiet", revision);
+        return result.exitCode == 0 ? result.output.trim() : null;
+    }
+
+    private static void git(final File gitDir, final String... args) {
+        final Result result = run(gitDir, args);
+        if (result.exitCode != 0)
+            throw new IllegalStateException("git " + args[0] + " failed: " + result.output);
+    }
+
+    private static Result run(final File gitDir, final String... args) {
+        final List<String> command = new ArrayList<String>();
+        command.add("git");
+        if (gitDir != null)
+            command.add("--git-dir=" + gitDir.getPath());
+        command.addAll(Arrays.asList(args));
+
+        final ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        try {
+            final Process process = builder.start();
+            final InputStream in = process.getInputStream();
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try {
+                final byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                }
+            } finally {
+                Util.safeClose(in);
+                Util.safeClose(process.getOutputStream());
+            }
+            return new Result(process.waitFor(), output.toString("UTF-8"));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot run " + command, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running " + command, e);
+        }
+    }
+
+    private static class Result {
+        private final int exitCode;
+        private final String output;
+
+        private Result(final int exitCode, final String output) {
+            this.exitCode = exitCode;
+            this.output = output;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+import org.eclipse.egit.github.core.Comment;
+import org.jboss.pull.shared.BuildResult;
+import org.jboss.pull.shared.Constants;
+
+/**
+ * The build outcomes reported in the comments of one pull request, keyed by the commit the build was run on. Comments are
+ * added incrementally; a comment already seen is never parsed again.
+ */
+public class BuildOutcomeIndex {
+
+    private final Map<String, BuildResult> outcomes = new LinkedHashMap<String, BuildResult>();
+    private BuildResult latest = BuildResult.UNKNOWN;
+
+    private long lastCommentId = -1;
+    private Date lastCommentAt;
+    private Date pullRequestUpdatedAt;
+
+    /**
+     * Returns true if the index has seen the comments of the pull request as of the given update time.
+     */
+    public synchronized boolean isUpToDate(final Date updatedAt) {
+        return pullRequestUpdatedAt != null && updatedAt != null && !updatedAt.after(pullRequestUpdatedAt);
+    }
+
+    /**
+     * Returns when the newest indexed comment has been created, {@code null} if none has been indexed yet. Comments
+     * created since then are all that has to be fetched to bring the index up to date.
+     */
+    public synchronized Date getLastCommentAt() {
+        return lastCommentAt;
+    }
+
+    /**
+     * Indexes the comments not seen yet.
+     *
+     * @param comments comments in the order they have been created, already indexed ones are skipped
+     * @param updatedAt update time of the pull request the comments have been fetched at
+     */
+    public synchronized void add(final Collection<Comment> comments, final Date updatedAt) {
+        for (Comment comment : comments) {
+            if (comment.getId() <= lastCommentId)
+                continue;
+            lastCommentId = comment.getId();
+            lastCommentAt = comment.getCreatedAt();
+
+            if (comment.getBody() == null)
+                continue;
+            final Matcher matcher = Constants.BUILD_OUTCOME.matcher(comment.getBody());
+            while (matcher.find()) {
+                latest = BuildResult.valueOf(matcher.group(2).toUpperCase());
+                final String sha = matcher.group(4).toLowerCase();
+                // keeps the outcomes in the order they have been reported
+                outcomes.remove(sha);
+                outcomes.put(sha, latest);
+            }
+        }
+        if (updatedAt != null && (pullRequestUpdatedAt == null || updatedAt.after(pullRequestUpdatedAt)))
+            pullRequestUpdatedAt = updatedAt;
+    }
+
+    /**
+     * Returns the outcome of the latest reported build, whatever commit it was run on.
+     */
+    public synchronized BuildResult getLatest() {
+        return latest;
+    }
+
+    /**
+     * Returns the outcome of the latest build of the given commit.
+     *
+     * @param sha full or abbreviated commit id
+     * @return the outcome or {@link BuildResult#UNKNOWN} if no build of the commit has been reported
+     */
+    public synchronized BuildResult get(final String sha) {
+        if (sha == null)
+            return BuildResult.UNKNOWN;
+
+        final String key = sha.toLowerCase();
+        final BuildResult result = outcomes.get(key);
+        if (result != null)
+            return result;
+
+        // builds usually report an abbreviated commit id: the longest match wins, on a tie the latest reported
+        BuildResult best = BuildResult.UNKNOWN;
+        int bestLength = 0;
+        for (Map.Entry<String, BuildResult> entry : outcomes.entrySet()) {
+            if (!key.startsWith(entry.getKey()) && !entry.getKey().startsWith(key))
+                continue;
+            final int length = Math.min(key.length(), entry.getKey().length());
+            if (length >= bestLength) {
+                best = entry.getValue();
+                bestLength = length;
+            }
+        }
+        return best;
+    }
+}
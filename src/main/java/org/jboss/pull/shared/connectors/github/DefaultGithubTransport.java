@@ -0,0 +1,86 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.jboss.pull.shared.Util;
+
+/**
+ * Sends the requests through {@link HttpURLConnection}, asking for gzip compressed responses. Connections are kept
+ * alive and reused by the connection cache of the JVM, sized by the {@code http.maxConnections} system property, as long
+ * as the responses are read to their end.
+ * <p>
+ * The timeouts are configured in seconds with {@code github.transport.connect.timeout} and
+ * {@code github.transport.read.timeout}.
+ */
+public class DefaultGithubTransport implements GithubTransport {
+
+    private static final long DEFAULT_CONNECT_TIMEOUT = 30;
+    private static final long DEFAULT_READ_TIMEOUT = 60;
+
+    private int connectTimeout = (int) TimeUnit.SECONDS.toMillis(DEFAULT_CONNECT_TIMEOUT);
+    private int readTimeout = (int) TimeUnit.SECONDS.toMillis(DEFAULT_READ_TIMEOUT);
+
+    @Override
+    public void init(final Properties configuration) {
+        connectTimeout = timeout(configuration, "github.transport.connect.timeout", DEFAULT_CONNECT_TIMEOUT);
+        readTimeout = timeout(configuration, "github.transport.read.timeout", DEFAULT_READ_TIMEOUT);
+    }
+
+    @Override
+    public HttpURLConnection openConnection(final URL url, final String method) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        return connection;
+    }
+
+    @Override
+    public InputStream getResponseStream(final HttpURLConnection connection, final InputStream stream)
+            throws IOException {
+        if (stream == null || !"gzip".equalsIgnoreCase(connection.getContentEncoding()))
+            return stream;
+
+        // a response without a body, e.g. 204, has no gzip header to read
+        final PushbackInputStream body = new PushbackInputStream(stream);
+        final int first = body.read();
+        if (first == -1)
+            return body;
+        body.unread(first);
+        return new GZIPInputStream(body);
+    }
+
+    private static int timeout(final Properties configuration, final String name, final long defaultSeconds) {
+        final String seconds = Util.get(configuration, name, Long.toString(defaultSeconds));
+        return (int) TimeUnit.SECONDS.toMillis(Long.parseLong(seconds.trim()));
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+
+/**
+ * Polls the events of a GitHub repository and turns them into {@link PullRequestChange}s. The events are requested
+ * through the {@link ScheduledGitHubClient} of the helper, so they share its token pool and rate limits. The poller sends
+ * the {@code ETag} of the previous response, so an unchanged repository costs a {@code 304 Not Modified} which does not
+ * count against the rate limit, and it never polls more often than GitHub asks for by {@code X-Poll-Interval}.
+ */
+public class GithubEventPoller {
+    private static final Logger LOG = Logger.getLogger(GithubEventPoller.class.getName());
+
+    private static final int DEFAULT_POLL_INTERVAL = 60;
+    private static final int PAGE_SIZE = 100;
+
+    private final ScheduledGitHubClient client;
+    private final String eventsUri;
+
+    private String etag;
+    private boolean polled;
+    private String lastEventId;
+    private long nextPollAt;
+    private boolean missedEvents = true;
+
+    public GithubEventPoller(final ScheduledGitHubClient client, final String organization, final String repository) {
+        this.client = client;
+        this.eventsUri = "/repos/" + organization + "/" + repository + "/events?per_page=" + PAGE_SIZE;
+    }
+
+    /**
+     * Returns the pull request changes which happened since the previous poll. If GitHub asked for a longer poll interval
+     * and it has not elapsed yet, nothing is requested and an empty list is returned.
+     *
+     * @return changes in the order they happened
+     * @throws IOException if the events cannot be fetched
+     */
+    public synchronized List<PullRequestChange> poll() throws IOException {
+        final List<PullRequestChange> changes = new ArrayList<PullRequestChange>();
+        if (currentTimeMillis() < nextPollAt) {
+            missedEvents = false;
+            return changes;
+        }
+
+        final GitHubRequest request = new GitHubRequest().setUri(eventsUri).setType(JsonArray.class);
+        final GitHubResponse response = client.getIfModified(request, etag);
+        nextPollAt = currentTimeMillis() + 1000L * pollInterval(response.getHeader("X-Poll-Interval"));
+
+        final JsonArray events = (JsonArray) response.getBody();
+        if (events == null) {
+            // not modified
+            missedEvents = false;
+            return changes;
+        }
+        etag = response.getHeader("ETag");
+
+        // events come newest first, stop at the newest one seen by the previous poll
+        final boolean firstPoll = !polled;
+        boolean reachedPrevious = false;
+        final List<PullRequestChange> newestFirst = new ArrayList<PullRequestChange>();
+        for (JsonElement element : events) {
+            final JsonObject event = element.getAsJsonObject();
+            final String id = string(event, "id");
+            if (id != null && id.equals(lastEventId)) {
+                reachedPrevious = true;
+                break;
+            }
+            final PullRequestChange change = toChange(string(event, "type"), event.getAsJsonObject("payload"),
+                    parseDate(string(event, "created_at")));
+            if (change != null)
+                newestFirst.add(change);
+        }
+
+        if (firstPoll)
+            missedEvents = true;
+        else if (lastEventId != null)
+            missedEvents = !reachedPrevious;
+        else
+            // every event is new since an empty first poll, unless there were more than fit in a page
+            missedEvents = events.size() >= PAGE_SIZE;
+        // an empty list of a quiet repository is a baseline too
+        polled = true;
+        if (events.size() > 0)
+            lastEventId = string(events.get(0).getAsJsonObject(), "id");
+        if (missedEvents)
+            LOG.log(Level.INFO, "Some repository events might have been missed, a full re-check is needed");
+        // the first poll only establishes where to continue from
+        if (firstPoll)
+            return changes;
+
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            changes.add(newestFirst.get(i));
+        }
+        return changes;
+    }
+
+    /**
+     * Returns true if the last {@link #poll()} could not see all the events since the previous one, either because it was
+     * the first poll or because more events happened than GitHub returns at once. All the open pull requests should be
+     * re-checked in such a case.
+     */
+    public synchronized boolean hasMissedEvents() {
+        return missedEvents;
+    }
+
+    /**
+     * Translates an event of the given type into a pull request change.
+     *
+     * @param type event type, either as reported by the events API ({@code PullRequestEvent}) or by a webhook
+     *        ({@code pull_request})
+     * @param payload the event payload
+     * @param createdAt when the event happened, may be {@code null}
+     * @return the change, or {@code null} if the event is not related to a pull request
+     */
+    static PullRequestChange toChange(final String type, final JsonObject payload, final Date createdAt) {
+        if (type == null || payload == null)
+            return null;
+
+        final String action = string(payload, "action");
+        if ("PullRequestEvent".equals(type) || "pull_request".equals(type)) {
+            int number = integer(payload, "number");
+            if (number < 0 && payload.has("pull_request"))
+                number = integer(payload.getAsJsonObject("pull_request"), "number");
+            return number < 0 ? null : new PullRequestChange(number, PullRequestChange.typeOf(action), createdAt);
+        }
+
+        if ("IssueCommentEvent".equals(type) || "issue_comment".equals(type) || "IssuesEvent".equals(type)
+                || "issues".equals(type)) {
+            final JsonObject issue = payload.has("issue") ? payload.getAsJsonObject("issue") : null;
+            // plain issues do not carry the pull_request link
+            if (issue == null || !issue.has("pull_request") || issue.get("pull_request").isJsonNull())
+                return null;
+            final int number = integer(issue, "number");
+            return number < 0 ? null : new PullRequestChange(number, PullRequestChange.typeOf(action), createdAt);
+        }
+
+        if ("PullRequestReviewCommentEvent".equals(type) || "pull_request_review_comment".equals(type)) {
+            final JsonObject pull = payload.has("pull_request") ? payload.getAsJsonObject("pull_request") : null;
+            final int number = pull == null ? -1 : integer(pull, "number");
+            return number < 0 ? null : new PullRequestChange(number, PullRequestChange.Type.COMMENTED, createdAt);
+        }
+
+        return null;
+    }
+
+    static String string(final JsonObject object, final String member) {
+        final JsonElement element = object.get(member);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+
+    static int integer(final JsonObject object, final String member) {
+        final JsonElement element = object.get(member);
+        return element == null || element.isJsonNull() ? -1 : element.getAsInt();
+    }
+
+    private static Date parseDate(final String value) {
+        if (value == null)
+            return null;
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try {
+            return format.parse(value);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private static int pollInterval(final String header) {
+        if (header != null) {
+            try {
+                return Integer.parseInt(header.trim());
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        return DEFAULT_POLL_INTERVAL;
+    }
+}
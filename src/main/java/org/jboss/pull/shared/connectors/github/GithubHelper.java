@@ -22,15 +22,27 @@
 
 package org.jboss.pull.shared.connectors.github;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.google.gson.reflect.TypeToken;
+
 import org.eclipse.egit.github.core.Comment;
 import org.eclipse.egit.github.core.CommitStatus;
 import org.eclipse.egit.github.core.IRepositoryIdProvider;
@@ -39,7 +51,11 @@ import org.eclipse.egit.github.core.Milestone;
 import org.eclipse.egit.github.core.PullRequest;
 import org.eclipse.egit.github.core.RepositoryBranch;
 import org.eclipse.egit.github.core.RepositoryId;
-import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.User;
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+import org.eclipse.egit.github.core.client.IGitHubConstants;
+import org.eclipse.egit.github.core.client.RequestException;
 import org.eclipse.egit.github.core.service.CommitService;
 import org.eclipse.egit.github.core.service.IssueService;
 import org.eclipse.egit.github.core.service.LabelService;
@@ -48,17 +64,42 @@ import org.eclipse.egit.github.core.service.PullRequestService;
 import org.eclipse.egit.github.core.service.RepositoryService;
 import org.eclipse.egit.github.core.Issue;
 import org.jboss.pull.shared.Util;
-
+import org.jboss.pull.shared.internal.Outbox;
+import org.jboss.pull.shared.internal.PropertiesFile;
+
+/**
+ * Access to the GitHub repository the processor works on.
+ * <p>
+ * A helper is shared by all the {@link org.jboss.pull.shared.connectors.RedhatPullRequest}s and is safe for use by
+ * concurrent threads:
+ * <ul>
+ * <li>the services share one {@link ScheduledGitHubClient}, which keeps the token of a request in a thread local and
+ * whose {@link GithubRequestScheduler}s are synchronized; connections are opened by a {@link GithubTransport}, by
+ * default reused through the keep-alive cache of {@code HttpURLConnection}</li>
+ * <li>branches, milestones and labels are served from the {@link RepositoryMetadataCache}, which loads each of them in
+ * one thread at a time</li>
+ * <li>the merged states, write cache, outbox and build outcomes guard their own state; the event poller is created
+ * once, under the lock of the helper</li>
+ * <li>the cached issues are copies which are never changed once published, and the changes of the same issue are
+ * applied one after the other</li>
+ * </ul>
+ */
 public class GithubHelper {
-    private static final Logger LOG = Logger.getLogger(GithubHelper.class.getName());
-
     private final String GITHUB_ORGANIZATION;
     private final String GITHUB_REPO;
     private final String GITHUB_LOGIN;
-    private final String GITHUB_TOKEN;
 
     private final IRepositoryIdProvider repository;
 
+    private final ScheduledGitHubClient client;
+    private final MergedStateStore mergedStates;
+    // comments and statuses are posted in the background when configured
+    private final Outbox outbox;
+    private static final String COMMENT_WRITE = "github.comment";
+    private static final String STATUS_WRITE = "github.status";
+    private final GithubWriteCache writeCache;
+    private final RepositoryMetadataCache metadata;
+
     private final CommitService commitService;
     private final IssueService issueService;
     private final PullRequestService pullRequestService;
@@ -74,11 +115,34 @@ public class GithubHelper {
             GITHUB_REPO = Util.require(props, "github.repo");
 
             GITHUB_LOGIN = Util.require(props, "github.login");
-            GITHUB_TOKEN = Util.get(props, "github.token");
+            // a comma separated list of tokens makes a pool
+            final List<String> tokens = GithubTokenPool.split(Util.get(props, "github.token"));
+
+            final GithubTokenPool pool = new GithubTokenPool(tokens,
+                    Integer.parseInt(Util.get(props, "github.scheduler.write.reserve",
+                            Integer.toString(GithubRequestScheduler.DEFAULT_WRITE_RESERVE))),
+                    Long.parseLong(Util.get(props, "github.scheduler.write.interval",
+                            Long.toString(GithubRequestScheduler.DEFAULT_WRITE_INTERVAL))));
+
+            final GithubTransport transport;
+            final String transportClassName = Util.get(props, "github.transport.factory");
+            if (transportClassName == null) {
+                transport = new DefaultGithubTransport();
+            } else {
+                try {
+                    transport = (GithubTransport) Class.forName(transportClassName.trim()).getConstructor().newInstance();
+                } catch (Exception e) {
+                    throw new IllegalStateException("Cannot create GitHub transport " + transportClassName, e);
+                }
+            }
+            transport.init(props);
+            client = new ScheduledGitHubClient(pool, transport);
+
+            final String mergedStoreFile = Util.get(props, "github.merged.store.file");
+            final long negativeTtl = Long.parseLong(Util.get(props, "github.merged.negative.ttl", "600").trim());
+            mergedStates = new MergedStateStore(mergedStoreFile == null ? null : new PropertiesFile(new File(
+                    mergedStoreFile.trim())), TimeUnit.SECONDS.toMillis(negativeTtl));
 
-            GitHubClient client = new GitHubClient();
-            if (GITHUB_TOKEN != null && GITHUB_TOKEN.length() > 0)
-                client.setOAuth2Token(GITHUB_TOKEN);
             repository = RepositoryId.create(GITHUB_ORGANIZATION, GITHUB_REPO);
             commitService = new CommitService(client);
             issueService = new IssueService(client);
@@ -87,6 +151,61 @@ public class GithubHelper {
             repositoryService = new RepositoryService(client);
             labelService = new LabelService(client);
 
+            final String writeCacheFile = Util.get(props, "github.write.cache.file");
+            writeCache = new GithubWriteCache(writeCacheFile == null ? null : new PropertiesFile(new File(
+                    writeCacheFile.trim())));
+            if (writeCacheFile != null) {
+                // the file is written periodically, the latest entries when the process ends
+                Runtime.getRuntime().addShutdownHook(new Thread("github-write-cache") {
+                    @Override
+                    public void run() {
+                        writeCache.flush();
+                    }
+                });
+            }
+
+            final long metadataTtl = Long.parseLong(Util.get(props, "github.metadata.ttl",
+                    Long.toString(TimeUnit.MILLISECONDS.toSeconds(RepositoryMetadataCache.DEFAULT_TTL))).trim());
+            metadata = new RepositoryMetadataCache(TimeUnit.SECONDS.toMillis(metadataTtl)) {
+                @Override
+                protected List<RepositoryBranch> loadBranches() throws IOException {
+                    return repositoryService.getBranches(repository);
+                }
+
+                @Override
+                protected List<Milestone> loadMilestones() throws IOException {
+                    final List<Milestone> milestones = new ArrayList<Milestone>(milestoneService.getMilestones(
+                            repository, "open"));
+                    milestones.addAll(milestoneService.getMilestones(repository, "closed"));
+                    return milestones;
+                }
+
+                @Override
+                protected List<Label> loadLabels() throws IOException {
+                    return labelService.getLabels(repository);
+                }
+            };
+
+            outbox = Outbox.create(props, "github");
+            if (outbox != null) {
+                outbox.register(COMMENT_WRITE, new Outbox.Handler() {
+                    @Override
+                    public void apply(List<Outbox.Write> writes) throws IOException {
+                        final Outbox.Write write = writes.get(0);
+                        createComment(Integer.parseInt(write.getArg(0)), write.getArg(1));
+                    }
+                });
+                outbox.register(STATUS_WRITE, new Outbox.Handler() {
+                    @Override
+                    public void apply(List<Outbox.Write> writes) throws IOException {
+                        final Outbox.Write write = writes.get(0);
+                        createStatus(write.getArg(0), write.getArg(1).length() == 0 ? null : write.getArg(1),
+                                write.getArg(2));
+                    }
+                });
+                outbox.start("github-outbox");
+            }
+
         } catch (Exception e) {
             System.err.printf("Cannot initialize: %s\n", e);
             e.printStackTrace(System.err);
@@ -94,19 +213,15 @@ public class GithubHelper {
         }
     }
 
-    List<RepositoryBranch> branches = null;
-
     public List<RepositoryBranch> getBranches() {
-        if (branches == null) {
-            branches = new ArrayList<RepositoryBranch>();
-            try {
-                branches = repositoryService.getBranches(repository);
-            } catch (IOException e) {
-                System.err.println("Error retrieving branches from repository");
-                e.printStackTrace();
-            }
-        }
-        return branches;
+        return metadata.getBranches();
+    }
+
+    /**
+     * Returns the cache of the branches, milestones and labels of the repository.
+     */
+    public RepositoryMetadataCache getMetadata() {
+        return metadata;
     }
 
     public PullRequest getPullRequest(int id) {
@@ -133,6 +248,8 @@ public class GithubHelper {
         List<PullRequest> result;
         try {
             result = pullRequestService.getPullRequests(repository, state);
+            if ("open".equals(state))
+                retainOpen(result);
         } catch (IOException e) {
             System.err.printf("Couldn't get pull requests in state %s of repository %s due to %s.\n", state, repository, e);
             result = new ArrayList<PullRequest>();
@@ -140,41 +257,121 @@ public class GithubHelper {
         return result;
     }
 
+    /**
+     * Posts the commit status, in the background if {@code github.outbox.file} is configured. Nothing is posted if the
+     * latest status of the commit is this very one, posted by this helper.
+     */
     public void postGithubStatus(PullRequest pull, String targetUrl, String status) {
+        if (outbox != null) {
+            outbox.enqueue(getWriteTarget(pull), STATUS_WRITE, pull.getHead().getSha(), targetUrl == null ? "" : targetUrl,
+                    status);
+            return;
+        }
         try {
-            CommitStatus commitStatus = new CommitStatus();
-            commitStatus.setTargetUrl(targetUrl);
-            commitStatus.setState(status);
-            commitService.createStatus(repository, pull.getHead().getSha(), commitStatus);
+            createStatus(pull.getHead().getSha(), targetUrl, status);
         } catch (Exception e) {
             System.err.printf("Problem posting a status build for sha: %s\n", pull.getHead().getSha());
             e.printStackTrace(System.err);
         }
     }
 
+    private void createStatus(String sha, String targetUrl, String status) throws IOException {
+        final String repositoryId = repository.generateId();
+        // checked when the status is about to be posted, a status queued in between may have replaced it; somebody else
+        // may have posted one since, so GitHub has the last word
+        if (writeCache.isStatusPosted(repositoryId, sha, GithubWriteCache.DEFAULT_CONTEXT, status, targetUrl)
+                && isLatestStatus(sha, targetUrl, status))
+            return;
+        CommitStatus commitStatus = new CommitStatus();
+        commitStatus.setTargetUrl(targetUrl);
+        commitStatus.setState(status);
+        commitService.createStatus(repository, sha, commitStatus);
+        writeCache.statusPosted(repositoryId, sha, GithubWriteCache.DEFAULT_CONTEXT, status, targetUrl);
+    }
+
+    /**
+     * Posts the comment, in the background if {@code github.outbox.file} is configured. Nothing is posted if the newest
+     * comment of the pull request is this very one, posted by this helper.
+     */
     public void postGithubComment(PullRequest pull, String comment) {
+        if (outbox != null) {
+            outbox.enqueue(getWriteTarget(pull), COMMENT_WRITE, Integer.toString(pull.getNumber()), comment);
+            return;
+        }
         try {
-            issueService.createComment(repository, pull.getNumber(), comment);
+            createComment(pull.getNumber(), comment);
         } catch (IOException e) {
             System.err.printf("Problem posting a comment build for pull: %d\n", pull.getNumber());
             e.printStackTrace(System.err);
         }
     }
 
-    private List<Milestone> milestones = null;
+    private void createComment(int number, String comment) throws IOException {
+        final String repositoryId = repository.generateId();
+        // somebody else may have commented since, so GitHub has the last word
+        if (writeCache.isCommentPosted(repositoryId, number, comment) && isNewestComment(number, comment))
+            return;
+        issueService.createComment(repository, number, comment);
+        writeCache.commentPosted(repositoryId, number, comment);
+    }
 
-    public List<Milestone> getMilestones() {
-        if (milestones == null) {
-            milestones = new ArrayList<Milestone>();
-            try {
-                milestones = milestoneService.getMilestones(repository, "open");
-                milestones.addAll(milestoneService.getMilestones(repository, "closed"));
-            } catch (IOException e) {
-                System.err.printf("Problem getting milestones");
-                e.printStackTrace(System.err);
-            }
+    /**
+     * Returns true if the newest status of the commit, whatever its context, has been posted by this helper with the
+     * given state and target URL.
+     */
+    private boolean isLatestStatus(String sha, String targetUrl, String status) throws IOException {
+        final Map<String, String> params = new HashMap<String, String>();
+        params.put("per_page", "1");
+        final GitHubRequest request = new GitHubRequest()
+                .setUri("/repos/" + repository.generateId() + "/commits/" + sha + "/statuses").setParams(params)
+                .setType(new TypeToken<List<CommitStatus>>() {
+                }.getType());
+        @SuppressWarnings("unchecked")
+        final List<CommitStatus> statuses = (List<CommitStatus>) client.get(request).getBody();
+        if (statuses == null || statuses.isEmpty())
+            return false;
+        final CommitStatus latest = statuses.get(0);
+        return status.equals(latest.getState())
+                && (targetUrl == null ? latest.getTargetUrl() == null : targetUrl.equals(latest.getTargetUrl()))
+                && isOwnUser(latest.getCreator());
+    }
+
+    /**
+     * Returns true if the newest comment of the pull request has been posted by this helper with the given text.
+     */
+    private boolean isNewestComment(int number, String comment) throws IOException {
+        final Iterator<Comment> comments = getCommentsNewestFirst(new PullRequest().setNumber(number)).iterator();
+        try {
+            if (!comments.hasNext())
+                return false;
+            final Comment newest = comments.next();
+            return comment.equals(newest.getBody()) && isOwnUser(newest.getUser());
+        } catch (IllegalStateException e) {
+            // the comments cannot be fetched, the iterator wraps the cause
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw e;
         }
-        return milestones;
+    }
+
+    private boolean isOwnUser(User user) {
+        return user != null && GITHUB_LOGIN.equalsIgnoreCase(user.getLogin());
+    }
+
+    // the comments and statuses of a pull request are posted in order
+    private String getWriteTarget(PullRequest pull) {
+        return repository.generateId() + "#" + pull.getNumber();
+    }
+
+    /**
+     * Returns the outbox of the comments and statuses not posted yet, {@code null} if they are posted right away.
+     */
+    public Outbox getOutbox() {
+        return outbox;
+    }
+
+    public List<Milestone> getMilestones() {
+        return metadata.getMilestones();
     }
 
     public Milestone createMilestone(String title) {
@@ -186,6 +383,9 @@ public class GithubHelper {
         } catch (IOException e) {
             System.err.printf("Problem creating new milestone. title: " + title);
             e.printStackTrace(System.err);
+        } finally {
+            // even a failed request may have created it
+            metadata.invalidateMilestones();
         }
         return returnMilestone;
     }
@@ -195,6 +395,7 @@ public class GithubHelper {
         Issue issue = null;
         try {
             issue = issueService.getIssue(repository, id);
+            cacheIssue(id, issue, issue.getLabels());
         } catch (IOException e) {
             System.err.printf("Problem getting issue. id: " + id);
             e.printStackTrace(System.err);
@@ -202,6 +403,159 @@ public class GithubHelper {
         return issue;
     }
 
+    // issue number -> the labels, milestone and update time of the issue as last loaded or changed by this helper;
+    // never modified once cached, so that it can be read outside of the lock
+    private final Map<Integer, Issue> issues = new HashMap<Integer, Issue>();
+    // changes of the same issue are applied one after the other
+    private final Object[] issueLocks = new Object[64];
+    {
+        for (int i = 0; i < issueLocks.length; i++) {
+            issueLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns the issue of the pull request as last seen by this helper, loading it again if the pull request has been
+     * updated since, e.g. by somebody else changing its labels.
+     */
+    private Issue getCachedIssue(PullRequest pullRequest) {
+        final int id = getIssueIdFromIssueURL(pullRequest.getIssueUrl());
+        final Issue issue;
+        synchronized (issues) {
+            issue = issues.get(id);
+        }
+        if (issue != null && issue.getUpdatedAt() != null && pullRequest.getUpdatedAt() != null
+                && !pullRequest.getUpdatedAt().after(issue.getUpdatedAt()))
+            return issue;
+        return getIssue(pullRequest);
+    }
+
+    /**
+     * Caches a copy of the issue with the given labels, the issue itself may be changed by the caller.
+     */
+    private void cacheIssue(int id, Issue issue, List<Label> labels) {
+        final Issue copy = issue == null ? null : copyOf(issue, labels);
+        synchronized (issues) {
+            if (copy == null)
+                issues.remove(id);
+            else
+                issues.put(id, copy);
+        }
+    }
+
+    private static Issue copyOf(Issue issue, List<Label> labels) {
+        final Issue copy = new Issue();
+        copy.setNumber(issue.getNumber());
+        copy.setMilestone(issue.getMilestone());
+        copy.setUpdatedAt(issue.getUpdatedAt());
+        copy.setLabels(labels == null ? new ArrayList<Label>() : new ArrayList<Label>(labels));
+        return copy;
+    }
+
+    /**
+     * Returns a builder of changes of the labels and milestone of the pull request, applied by
+     * {@link IssueMutation#apply()}.
+     */
+    public IssueMutation mutate(PullRequest pullRequest) {
+        return new IssueMutation(this, pullRequest);
+    }
+
+    /**
+     * Applies the changes which are not in effect already, according to the cached issue of the pull request. The added
+     * labels are sent with a single request to the labels of the issue, each removed label with a request of its own; the
+     * milestone is changed by an edit of the issue which sends the milestone only. Unlike {@link #editIssue(Issue)}, none
+     * of these replaces the labels, so the changes made by somebody else in the meantime are kept.
+     *
+     * @return the number, labels, milestone and update time of the issue after the changes, {@code null} if it cannot be
+     *         loaded or changed
+     */
+    Issue apply(IssueMutation mutation) {
+        final PullRequest pullRequest = mutation.getPullRequest();
+        final int id = getIssueIdFromIssueURL(pullRequest.getIssueUrl());
+        synchronized (issueLocks[id & (issueLocks.length - 1)]) {
+            final Issue cached = getCachedIssue(pullRequest);
+            if (cached == null)
+                return null;
+
+            final String issueUri = "/repos/" + repository.generateId() + "/issues/" + id;
+            Issue issue = cached;
+            List<Label> labels = cached.getLabels();
+            try {
+                final List<String> labelsToAdd = mutation.getLabelsToAdd(cached);
+                if (!labelsToAdd.isEmpty()) {
+                    labels = client.post(issueUri + "/labels", labelsToAdd, new TypeToken<List<Label>>() {
+                    }.getType());
+                    // GitHub creates the labels the repository does not have yet
+                    for (String name : labelsToAdd) {
+                        if (metadata.getLabel(name) == null)
+                            metadata.invalidateLabels();
+                    }
+                }
+
+                for (String name : mutation.getLabelsToRemove(cached)) {
+                    try {
+                        client.delete(issueUri + "/labels/" + encodePathSegment(name));
+                    } catch (RequestException e) {
+                        // removed by somebody else meanwhile
+                        if (e.getStatus() != 404)
+                            throw e;
+                    }
+                    final List<Label> remaining = new ArrayList<Label>();
+                    for (Label label : labels) {
+                        if (!label.getName().equals(name))
+                            remaining.add(label);
+                    }
+                    labels = remaining;
+                }
+
+                if (mutation.isMilestoneChanged(cached)) {
+                    final Map<String, Object> params = new HashMap<String, Object>();
+                    params.put("milestone", mutation.getMilestone() == null ? null : mutation.getMilestone().getNumber());
+                    issue = client.post(issueUri, params, Issue.class);
+                    labels = issue.getLabels();
+                }
+            } catch (IOException e) {
+                System.err.printf("Problem changing labels or milestone of issue %d: %s\n", id, e);
+                e.printStackTrace(System.err);
+                // what has been applied is unknown
+                cacheIssue(id, null, null);
+                return null;
+            }
+            cacheIssue(id, issue, labels);
+            return copyOf(issue, labels);
+        }
+    }
+
+    /**
+     * Encodes a label name as a segment of a request path, so that names with characters such as {@code /}, {@code #},
+     * {@code ?}, {@code %} or non-ASCII ones address the label.
+     */
+    static String encodePathSegment(String name) {
+        try {
+            return URLEncoder.encode(name, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Drops the build outcomes and cached issues of the pull requests which are no longer open.
+     *
+     * @param openPullRequests all the open pull requests of the repository
+     */
+    private void retainOpen(List<PullRequest> openPullRequests) {
+        final Set<Integer> numbers = new HashSet<Integer>();
+        for (PullRequest pullRequest : openPullRequests) {
+            numbers.add(pullRequest.getNumber());
+        }
+        synchronized (buildOutcomes) {
+            buildOutcomes.keySet().retainAll(numbers);
+        }
+        synchronized (issues) {
+            issues.keySet().retainAll(numbers);
+        }
+    }
+
     private int getIssueIdFromIssueURL(String issueURL) {
         return Integer.valueOf(issueURL.substring(issueURL.lastIndexOf("/") + 1));
     }
@@ -217,10 +571,47 @@ public class GithubHelper {
         return returnIssue;
     }
 
+    /**
+     * Returns the organization of the configured repository.
+     */
+    public String getOrganization() {
+        return GITHUB_ORGANIZATION;
+    }
+
+    /**
+     * Returns the name of the configured repository.
+     */
+    public String getRepository() {
+        return GITHUB_REPO;
+    }
+
+    private GithubEventPoller eventPoller;
+
+    /**
+     * Returns the poller of the events of the configured repository.
+     */
+    public synchronized GithubEventPoller getEventPoller() {
+        if (eventPoller == null)
+            eventPoller = new GithubEventPoller(client, GITHUB_ORGANIZATION, GITHUB_REPO);
+        return eventPoller;
+    }
+
+    /**
+     * Returns the pool of tokens all the requests of this helper are sent with.
+     */
+    public GithubTokenPool getTokenPool() {
+        return client.getTokenPool();
+    }
+
     public String getGithubLogin() {
         return GITHUB_LOGIN;
     }
 
+    /**
+     * Returns true if the pull request has been merged, either by GitHub or by a comment saying so. Merged pull requests
+     * are remembered forever (in {@code github.merged.store.file} if configured), pull requests found not merged are
+     * checked again after {@code github.merged.negative.ttl} seconds.
+     */
     public boolean isMerged(PullRequest pullRequest) {
         if (pullRequest == null) {
             return false;
@@ -230,6 +621,32 @@ public class GithubHelper {
             return false;
         }
 
+        final String repositoryId = pullRequest.getBase().getRepo().generateId();
+        final Boolean known = mergedStates.get(repositoryId, pullRequest.getNumber());
+        if (known != null) {
+            return known;
+        }
+
+        final boolean merged = isMergedUncached(pullRequest);
+        mergedStates.put(repositoryId, pullRequest.getNumber(), merged);
+        return merged;
+    }
+
+    /**
+     * Returns what is already known about the merged state of the pull request, without asking GitHub.
+     *
+     * @return {@code TRUE} if known to be merged, {@code FALSE} if recently found not merged, {@code null} if unknown
+     */
+    public Boolean getKnownMergedState(String organization, String repository, int number) {
+        return mergedStates.get(organization + "/" + repository, number);
+    }
+
+    private boolean isMergedUncached(PullRequest pullRequest) {
+        // a fetched pull request already tells
+        if (pullRequest.isMerged() || pullRequest.getMergedAt() != null) {
+            return true;
+        }
+
         try {
             if (pullRequestService.isMerged(pullRequest.getBase().getRepo(), pullRequest.getNumber())) {
                 return true;
@@ -255,17 +672,83 @@ public class GithubHelper {
     }
 
     public Comment getLastMatchingComment(PullRequest pullRequest, Pattern pattern) {
-        Comment lastComment = null;
-        List<Comment> comments = getComments(pullRequest);
-
-        for (Comment comment : comments) {
-            Matcher matcher = pattern.matcher(comment.getBody());
-            if (matcher.find()) {
-                lastComment = comment;
+        try {
+            for (Comment comment : getCommentsNewestFirst(pullRequest)) {
+                Matcher matcher = pattern.matcher(comment.getBody());
+                if (matcher.find()) {
+                    return comment;
+                }
             }
+        } catch (IllegalStateException e) {
+            System.err.println("Error to get comments for pull request : " + pullRequest.getNumber());
+            e.printStackTrace(System.err);
         }
 
-        return lastComment;
+        return null;
+    }
+
+    /**
+     * Returns the comments of the pull request from the newest to the oldest one. The pages of comments are fetched from
+     * the last one backwards while iterating, so a caller looking for the latest comment of some kind should stop at the
+     * first match.
+     *
+     * @see NewestFirstComments
+     */
+    public Iterable<Comment> getCommentsNewestFirst(final PullRequest pullRequest) {
+        final int number = pullRequest.getNumber();
+        return new NewestFirstComments(IGitHubConstants.PAGE_SIZE) {
+            private List<Comment> firstPage;
+
+            @Override
+            protected int getLastPage() throws IOException {
+                // only set on pull requests fetched one by one, not on the ones listed
+                if (pullRequest.getComments() > 0)
+                    return (pullRequest.getComments() + IGitHubConstants.PAGE_SIZE - 1) / IGitHubConstants.PAGE_SIZE;
+
+                final GitHubResponse response = getCommentsPage(number, 1);
+                final int lastPage = pageOf(response.getLast());
+                if (lastPage > 1)
+                    return lastPage;
+                firstPage = commentsOf(response);
+                return firstPage.isEmpty() ? 0 : 1;
+            }
+
+            @Override
+            protected List<Comment> fetchPage(int page) throws IOException {
+                if (page == 1 && firstPage != null)
+                    return firstPage;
+                return commentsOf(getCommentsPage(number, page));
+            }
+        };
+    }
+
+    private GitHubResponse getCommentsPage(int number, int page) throws IOException {
+        final Map<String, String> params = new HashMap<String, String>();
+        params.put("per_page", Integer.toString(IGitHubConstants.PAGE_SIZE));
+        params.put("page", Integer.toString(page));
+        final GitHubRequest request = new GitHubRequest()
+                .setUri("/repos/" + repository.generateId() + "/issues/" + number + "/comments")
+                .setParams(params).setType(new TypeToken<List<Comment>>() {
+                }.getType());
+        return client.get(request);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Comment> commentsOf(GitHubResponse response) {
+        final List<Comment> comments = (List<Comment>) response.getBody();
+        return comments != null ? comments : new ArrayList<Comment>();
+    }
+
+    private static final Pattern PAGE_PARAMETER = Pattern.compile("[?&]page=(\\d+)");
+
+    /**
+     * Returns the page number of a link, 0 if there is none.
+     */
+    static int pageOf(String link) {
+        if (link == null)
+            return 0;
+        final Matcher matcher = PAGE_PARAMETER.matcher(link);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
     }
 
     public List<Comment> getComments(PullRequest pullRequest) {
@@ -279,51 +762,85 @@ public class GithubHelper {
         return new ArrayList<Comment>();
     }
 
+    /**
+     * Returns the comments of the pull request created or updated since the given time.
+     *
+     * @param since lower bound, {@code null} for all the comments
+     */
+    public List<Comment> getComments(PullRequest pullRequest, Date since) {
+        if (since == null)
+            return getComments(pullRequest);
+
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        final List<Comment> comments = new ArrayList<Comment>();
+        try {
+            for (int page = 1;; page++) {
+                final Map<String, String> params = new HashMap<String, String>();
+                params.put("since", format.format(since));
+                params.put("per_page", Integer.toString(IGitHubConstants.PAGE_SIZE));
+                params.put("page", Integer.toString(page));
+                final GitHubRequest request = new GitHubRequest()
+                        .setUri("/repos/" + repository.generateId() + "/issues/" + pullRequest.getNumber() + "/comments")
+                        .setParams(params).setType(new TypeToken<List<Comment>>() {
+                        }.getType());
+                @SuppressWarnings("unchecked")
+                final List<Comment> pageOfComments = (List<Comment>) client.get(request).getBody();
+                comments.addAll(pageOfComments);
+                if (pageOfComments.size() < IGitHubConstants.PAGE_SIZE)
+                    break;
+            }
+        } catch (IOException e) {
+            System.err.println("Error to get comments for pull request : " + pullRequest.getNumber());
+            e.printStackTrace(System.err);
+            return getComments(pullRequest);
+        }
+        return comments;
+    }
+
+    private final Map<Integer, BuildOutcomeIndex> buildOutcomes = new HashMap<Integer, BuildOutcomeIndex>();
+
+    /**
+     * Returns the build outcomes reported in the comments of the pull request. Only the comments created since the
+     * previous call are fetched, and nothing at all if the pull request has not been updated since.
+     */
+    public BuildOutcomeIndex getBuildOutcomes(PullRequest pullRequest) {
+        // the index of a closed pull request is not kept, it is not checked again
+        final boolean open = !"closed".equals(pullRequest.getState());
+        BuildOutcomeIndex index;
+        synchronized (buildOutcomes) {
+            index = open ? buildOutcomes.get(pullRequest.getNumber()) : buildOutcomes.remove(pullRequest.getNumber());
+            if (index == null) {
+                index = new BuildOutcomeIndex();
+                if (open)
+                    buildOutcomes.put(pullRequest.getNumber(), index);
+            }
+        }
+
+        synchronized (index) {
+            if (!index.isUpToDate(pullRequest.getUpdatedAt()))
+                index.add(getComments(pullRequest, index.getLastCommentAt()), pullRequest.getUpdatedAt());
+        }
+        return index;
+    }
+
     public List<Label> getLabels(PullRequest pullRequest) {
-        Issue issue = getIssue(pullRequest);
+        Issue issue = getCachedIssue(pullRequest);
         if (issue != null) {
-            return issue.getLabels();
+            return new ArrayList<Label>(issue.getLabels());
         }
         return new ArrayList<Label>();
     }
 
     public Label getLabel(final String title) {
-        try {
-            final String label = title.replace(" ", "%20");
-            return labelService.getLabel(repository, label);
-        } catch (IOException e) {
-            LOG.log(Level.WARNING, "Error trying to get label '" + title + "'", e);
-            System.err.println("Error trying to get label '" + title + "'");
-        }
-        return null;
+        return metadata.getLabel(title);
     }
 
     public void addLabel(PullRequest pullRequest, Label label) {
-
-        Issue issue = getIssue(pullRequest);
-
-        List<Label> labels = issue.getLabels();
-        labels.add(label);
-        issue.setLabels(labels);
-
-        editIssue(issue);
-
+        mutate(pullRequest).addLabel(label).apply();
     }
 
     public void removeLabel(PullRequest pullRequest, Label newLabel) {
-
-        Issue issue = getIssue(pullRequest);
-
-        List<Label> labels = issue.getLabels();
-        for( Label label : issue.getLabels() ){
-            if( label.getName().equals(newLabel.getName())){
-                labels.remove(label);
-                break;
-            }
-        }
-        issue.setLabels(labels);
-
-        editIssue(issue);
-
+        mutate(pullRequest).removeLabel(newLabel).apply();
     }
 }
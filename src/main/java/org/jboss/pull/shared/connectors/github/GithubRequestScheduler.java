@@ -0,0 +1,181 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Paces GitHub API requests by the rate limit reported in the responses.
+ * <ul>
+ * <li>While more than half of the quota is left, requests are not delayed at all.</li>
+ * <li>Below that, reads are spread evenly over the rest of the rate limit window, so that a cycle slows down instead of
+ * failing halfway through it.</li>
+ * <li>The last {@code writeReserve} requests of the window are kept for writes (statuses, comments, labels); waiting writes
+ * are always let through before waiting reads.</li>
+ * <li>When GitHub reports a secondary rate limit, all requests wait for the requested time.</li>
+ * </ul>
+ */
+public class GithubRequestScheduler {
+    private static final Logger LOG = Logger.getLogger(GithubRequestScheduler.class.getName());
+
+    public static final int DEFAULT_WRITE_RESERVE = 50;
+    public static final long DEFAULT_WRITE_INTERVAL = 1000;
+
+    // how long a reader sleeps at most before checking again
+    private static final long MAX_WAIT = TimeUnit.SECONDS.toMillis(1);
+
+    private final int writeReserve;
+    private final long writeInterval;
+
+    // -1 until the first response tells us
+    private int limit = -1;
+    private int remaining = -1;
+    private long resetAt;
+    private long blockedUntil;
+    private long nextReadAt;
+    private long nextWriteAt;
+    private int waitingWrites;
+
+    public GithubRequestScheduler() {
+        this(DEFAULT_WRITE_RESERVE, DEFAULT_WRITE_INTERVAL);
+    }
+
+    /**
+     * @param writeReserve number of requests at the end of a window which are only available to writes
+     * @param writeInterval minimal delay between two writes in milliseconds, GitHub asks for at least a second to avoid
+     *        secondary rate limits
+     */
+    public GithubRequestScheduler(final int writeReserve, final long writeInterval) {
+        this.writeReserve = writeReserve;
+        this.writeInterval = writeInterval;
+    }
+
+    /**
+     * Waits until a request may be sent and books it.
+     *
+     * @param write true for requests changing something (POST, PATCH, PUT, DELETE)
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void acquire(final boolean write) throws InterruptedException {
+        if (write)
+            waitingWrites++;
+        try {
+            long delay;
+            while ((delay = delay(write, currentTimeMillis())) > 0) {
+                wait(write ? delay : Math.min(delay, MAX_WAIT));
+            }
+            reserve(write, currentTimeMillis());
+        } finally {
+            if (write) {
+                waitingWrites--;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Updates the quota by the {@code X-RateLimit-*} headers of a response.
+     *
+     * @param remaining requests remaining in the current window
+     * @param limit requests allowed in a window
+     * @param reset when the current window ends, in seconds since the epoch
+     */
+    public synchronized void update(final int remaining, final int limit, final long reset) {
+        if (remaining < 0 || reset <= 0)
+            return;
+
+        final long resetAt = TimeUnit.SECONDS.toMillis(reset);
+        // responses of concurrent requests arrive in any order, within a window the lowest count is the most recent
+        if (resetAt == this.resetAt && this.remaining >= 0)
+            this.remaining = Math.min(this.remaining, remaining);
+        else if (resetAt >= this.resetAt)
+            this.remaining = remaining;
+        else
+            return;
+        this.resetAt = resetAt;
+        this.limit = limit;
+        notifyAll();
+    }
+
+    /**
+     * Stops all requests for the given time, as asked for by a secondary rate limit response.
+     */
+    public synchronized void backOff(final long millis) {
+        final long until = currentTimeMillis() + millis;
+        if (until > blockedUntil) {
+            blockedUntil = until;
+            LOG.log(Level.WARNING, "GitHub secondary rate limit hit, backing off for {0} ms", millis);
+        }
+    }
+
+    public synchronized int getRemaining() {
+        return isWindowKnown(currentTimeMillis()) ? remaining : -1;
+    }
+
+    /**
+     * Returns how long a request has to wait at the given time, 0 if it may be sent right away.
+     */
+    synchronized long delay(final boolean write, final long now) {
+        if (now < blockedUntil)
+            return blockedUntil - now;
+        if (!write && waitingWrites > 0)
+            return MAX_WAIT;
+
+        if (write) {
+            if (isWindowKnown(now) && remaining <= 0)
+                return resetAt - now;
+            return Math.max(0, nextWriteAt - now);
+        }
+
+        if (!isWindowKnown(now))
+            return 0;
+        if (remaining <= writeReserve)
+            return resetAt - now;
+        return Math.max(0, nextReadAt - now);
+    }
+
+    /**
+     * Books a request sent at the given time.
+     */
+    synchronized void reserve(final boolean write, final long now) {
+        final boolean known = isWindowKnown(now);
+        if (known && remaining > 0)
+            remaining--;
+
+        if (write) {
+            nextWriteAt = now + writeInterval;
+        } else if (known && remaining < limit / 2) {
+            final int available = Math.max(1, remaining - writeReserve);
+            nextReadAt = now + (resetAt - now) / available;
+        }
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private boolean isWindowKnown(final long now) {
+        return remaining >= 0 && now < resetAt;
+    }
+}
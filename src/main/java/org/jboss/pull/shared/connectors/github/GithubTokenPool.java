@@ -0,0 +1,144 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A pool of GitHub OAuth tokens, each with its own rate limit. Every request is sent with the token which has the most
+ * remaining quota; revoked tokens are taken out of the pool.
+ */
+public class GithubTokenPool {
+    private static final Logger LOG = Logger.getLogger(GithubTokenPool.class.getName());
+
+    /**
+     * A token together with the scheduler pacing the requests made with it.
+     */
+    public static class Token {
+        private final String value;
+        private final GithubRequestScheduler scheduler;
+        private volatile boolean revoked;
+
+        Token(final String value, final GithubRequestScheduler scheduler) {
+            this.value = value;
+            this.scheduler = scheduler;
+        }
+
+        /** the token, {@code null} for anonymous requests */
+        public String getValue() {
+            return value;
+        }
+
+        public GithubRequestScheduler getScheduler() {
+            return scheduler;
+        }
+
+        public boolean isRevoked() {
+            return revoked;
+        }
+
+        @Override
+        public String toString() {
+            // never log the whole token
+            return value == null ? "anonymous" : "token " + value.substring(0, Math.min(4, value.length())) + "...";
+        }
+    }
+
+    private final List<Token> tokens;
+
+    /**
+     * @param tokens the tokens, an empty collection makes anonymous requests
+     * @param writeReserve see {@link GithubRequestScheduler#GithubRequestScheduler(int, long)}
+     * @param writeInterval see {@link GithubRequestScheduler#GithubRequestScheduler(int, long)}
+     */
+    public GithubTokenPool(final Collection<String> tokens, final int writeReserve, final long writeInterval) {
+        final List<Token> list = new ArrayList<Token>();
+        for (String token : tokens) {
+            list.add(new Token(token, new GithubRequestScheduler(writeReserve, writeInterval)));
+        }
+        if (list.isEmpty())
+            list.add(new Token(null, new GithubRequestScheduler(writeReserve, writeInterval)));
+        this.tokens = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Splits a comma separated list of tokens, as configured by {@code github.token}.
+     */
+    public static List<String> split(final String tokens) {
+        final List<String> result = new ArrayList<String>();
+        if (tokens != null) {
+            final StringTokenizer tokenizer = new StringTokenizer(tokens, ", ");
+            while (tokenizer.hasMoreTokens()) {
+                result.add(tokenizer.nextToken());
+            }
+        }
+        return result;
+    }
+
+    public List<Token> getTokens() {
+        return tokens;
+    }
+
+    public int size() {
+        return tokens.size();
+    }
+
+    /**
+     * Returns the token with the most remaining quota. A token whose quota is not known yet is preferred, it has most
+     * likely not been used in the current window.
+     *
+     * @throws IllegalStateException if all the tokens have been revoked
+     */
+    public Token select() {
+        Token best = null;
+        long bestRemaining = -1;
+        for (Token token : tokens) {
+            if (token.isRevoked())
+                continue;
+            final int remaining = token.getScheduler().getRemaining();
+            final long score = remaining < 0 ? Long.MAX_VALUE : remaining;
+            if (best == null || score > bestRemaining) {
+                best = token;
+                bestRemaining = score;
+            }
+        }
+        if (best == null)
+            throw new IllegalStateException("All the GitHub tokens have been revoked");
+        return best;
+    }
+
+    /**
+     * Takes a token GitHub does not accept any more out of the pool.
+     */
+    public void revoke(final Token token) {
+        if (!token.revoked) {
+            token.revoked = true;
+            LOG.log(Level.SEVERE, "GitHub rejected {0}, it is not used any more", token);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Properties;
+
+/**
+ * Opens the connections of the requests sent by a {@link ScheduledGitHubClient} and decodes their responses. The client
+ * still configures the requests, reads the rate limits and parses the responses into the egit model objects.
+ * <p>
+ * An implementation is chosen with the {@code github.transport.factory} property, the name of a class with a public no
+ * argument constructor. It is shared by all the threads using the client.
+ */
+public interface GithubTransport {
+
+    void init(Properties configuration);
+
+    /**
+     * Opens an unconnected connection to the given URL.
+     */
+    HttpURLConnection openConnection(URL url, String method) throws IOException;
+
+    /**
+     * Returns the stream to read the body of the response from.
+     *
+     * @param stream the body as received, input or error stream of the connection
+     */
+    InputStream getResponseStream(HttpURLConnection connection, InputStream stream) throws IOException;
+}
@@ -0,0 +1,230 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.commons.codec.binary.Hex;
+import org.jboss.pull.shared.PullRequestWorkQueue;
+import org.jboss.pull.shared.Util;
+
+/**
+ * A lightweight embedded HTTP endpoint receiving GitHub {@code pull_request}, {@code issue_comment} and {@code status}
+ * webhooks. Every delivery has to be signed by the shared secret; accepted deliveries are put on a
+ * {@link PullRequestWorkQueue} as {@link PullRequestChange}s.
+ */
+public class GithubWebhookReceiver {
+    private static final Logger LOG = Logger.getLogger(GithubWebhookReceiver.class.getName());
+
+    public static final String CONTEXT_PATH = "/github";
+
+    // GitHub caps webhook payloads at 25 MB
+    public static final int MAX_BODY_SIZE = 25 * 1024 * 1024;
+
+    private final InetSocketAddress address;
+    private final byte[] secret;
+    private final PullRequestWorkQueue queue;
+    private final int maxBodySize;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param address where to listen, port 0 picks any free port
+     * @param secret the secret configured for the webhook on GitHub
+     * @param queue where to put the received changes
+     */
+    public GithubWebhookReceiver(final InetSocketAddress address, final String secret, final PullRequestWorkQueue queue) {
+        this(address, secret, queue, MAX_BODY_SIZE);
+    }
+
+    GithubWebhookReceiver(final InetSocketAddress address, final String secret, final PullRequestWorkQueue queue,
+            final int maxBodySize) {
+        if (secret == null || secret.length() == 0)
+            throw new IllegalArgumentException("Webhook secret must be specified");
+
+        this.address = address;
+        this.queue = queue;
+        this.maxBodySize = maxBodySize;
+        try {
+            this.secret = secret.getBytes("UTF-8");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null)
+            throw new IllegalStateException("Webhook receiver has already been started");
+
+        server = HttpServer.create(address, 0);
+        server.createContext(CONTEXT_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    exchange.sendResponseHeaders(receive(exchange), -1);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        executor = Executors.newFixedThreadPool(2);
+        server.setExecutor(executor);
+        server.start();
+        LOG.log(Level.INFO, "Listening for GitHub webhooks on {0}", server.getAddress());
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+            executor = null;
+        }
+    }
+
+    /**
+     * Returns the port the receiver listens on, useful when started on port 0.
+     */
+    public synchronized int getPort() {
+        if (server == null)
+            throw new IllegalStateException("Webhook receiver is not running");
+        return server.getAddress().getPort();
+    }
+
+    private int receive(final HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod()))
+            return 405;
+
+        // the body is only read, up to the limit, when it can be signed at all
+        final String sha256Signature = exchange.getRequestHeaders().getFirst("X-Hub-Signature-256");
+        final String sha1Signature = exchange.getRequestHeaders().getFirst("X-Hub-Signature");
+        if (sha256Signature == null && sha1Signature == null)
+            return 401;
+        final String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength != null) {
+            try {
+                if (Long.parseLong(contentLength.trim()) > maxBodySize)
+                    return 413;
+            } catch (NumberFormatException e) {
+                return 400;
+            }
+        }
+        final byte[] body = readFully(exchange.getRequestBody(), maxBodySize);
+        if (body == null)
+            return 413;
+
+        if (!isSignatureValid(body, sha256Signature, sha1Signature)) {
+            LOG.log(Level.WARNING, "Rejecting webhook delivery {0} with an invalid signature",
+                    exchange.getRequestHeaders().getFirst("X-GitHub-Delivery"));
+            return 401;
+        }
+
+        final String event = exchange.getRequestHeaders().getFirst("X-GitHub-Event");
+        final JsonObject payload;
+        try {
+            payload = new JsonParser().parse(new String(body, "UTF-8")).getAsJsonObject();
+        } catch (JsonParseException e) {
+            return 400;
+        } catch (IllegalStateException notAnObject) {
+            return 400;
+        }
+
+        final PullRequestChange change;
+        if ("status".equals(event)) {
+            final String sha = GithubEventPoller.string(payload, "sha");
+            change = sha == null ? null : new PullRequestChange(sha, PullRequestChange.Type.STATUS, new Date());
+        } else {
+            change = GithubEventPoller.toChange(event, payload, new Date());
+        }
+
+        if (change == null)
+            return 204;
+
+        LOG.log(Level.FINE, "Received {0}", change);
+        queue.offer(change);
+        return 202;
+    }
+
+    boolean isSignatureValid(final byte[] body, final String sha256Signature, final String sha1Signature) {
+        try {
+            if (sha256Signature != null)
+                return matches(sha256Signature, "sha256=", "HmacSHA256", body);
+            if (sha1Signature != null)
+                return matches(sha1Signature, "sha1=", "HmacSHA1", body);
+        } catch (GeneralSecurityException e) {
+            LOG.log(Level.WARNING, "Cannot verify webhook signature", e);
+        }
+        return false;
+    }
+
+    private boolean matches(final String signature, final String prefix, final String algorithm, final byte[] body)
+            throws GeneralSecurityException {
+        if (!signature.startsWith(prefix))
+            return false;
+
+        final Mac mac = Mac.getInstance(algorithm);
+        mac.init(new SecretKeySpec(secret, algorithm));
+        final String expected = prefix + Hex.encodeHexString(mac.doFinal(body));
+        // constant time comparison
+        return MessageDigest.isEqual(expected.getBytes(), signature.toLowerCase().getBytes());
+    }
+
+    /**
+     * @return the content of the stream, {@code null} if it is longer than the limit
+     */
+    private static byte[] readFully(final InputStream in, final int limit) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (out.size() + read > limit)
+                    return null;
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            Util.safeClose(in);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.jboss.pull.shared.internal.PropertiesFile;
+
+/**
+ * Remembers the last commit status posted per commit and context, and a hash of the last comment posted per pull
+ * request, so that writes which would not change anything can be skipped. Only the last comment is compared: a comment
+ * repeating an older one, e.g. a pull request becoming mergeable again, reports a change. The entries only know what
+ * has been posted through this cache; somebody else may have commented or posted a status since, so a hit is to be
+ * confirmed with GitHub before a write is skipped.
+ * <p>
+ * The entries are kept in a {@link PropertiesFile} when one is given, so they survive a restart. The file is written at
+ * most once per {@link #FLUSH_INTERVAL}, by the write which finds it due, or by {@link #flush()}; entries not written
+ * yet when the process ends only cause a write to be sent once more. Entries older than {@link #MAX_AGE} are dropped when
+ * the file is loaded and written.
+ */
+public class GithubWriteCache {
+
+    // GitHub's context of the statuses posted without one
+    public static final String DEFAULT_CONTEXT = "default";
+
+    static final long MAX_AGE = TimeUnit.DAYS.toMillis(30);
+    static final long FLUSH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private final PropertiesFile file;
+    private final long flushInterval;
+    // key -> time,hash
+    private final Map<String, String> entries = new HashMap<String, String>();
+    // whether entries have been changed since the file has been written
+    private boolean dirty;
+    private long flushedAt;
+
+    /**
+     * @param file where to keep the entries, or {@code null} to keep them in memory only
+     */
+    public GithubWriteCache(final PropertiesFile file) {
+        this(file, FLUSH_INTERVAL);
+    }
+
+    GithubWriteCache(final PropertiesFile file, final long flushInterval) {
+        this.file = file;
+        this.flushInterval = flushInterval;
+        this.flushedAt = System.currentTimeMillis();
+        if (file == null)
+            return;
+
+        for (String key : file.keys()) {
+            entries.put(key, file.get(key));
+        }
+        if (prune())
+            file.store();
+    }
+
+    /**
+     * @param repository repository id as {@code organization/repository}
+     * @return true if this very status is the last one posted to the commit in the context
+     */
+    public boolean isStatusPosted(final String repository, final String sha, final String context, final String state,
+            final String targetUrl) {
+        return isPosted(statusKey(repository, sha, context), statusHash(state, targetUrl));
+    }
+
+    public void statusPosted(final String repository, final String sha, final String context, final String state,
+            final String targetUrl) {
+        posted(statusKey(repository, sha, context), statusHash(state, targetUrl));
+    }
+
+    /**
+     * @param repository repository id as {@code organization/repository}
+     * @return true if the last comment posted to the pull request has the same text
+     */
+    public boolean isCommentPosted(final String repository, final int number, final String comment) {
+        return isPosted(commentKey(repository, number), DigestUtils.sha1Hex(comment));
+    }
+
+    public void commentPosted(final String repository, final int number, final String comment) {
+        posted(commentKey(repository, number), DigestUtils.sha1Hex(comment));
+    }
+
+    private synchronized boolean isPosted(final String key, final String hash) {
+        final String value = entries.get(key);
+        return value != null && value.substring(value.indexOf(',') + 1).equals(hash);
+    }
+
+    private void posted(final String key, final String hash) {
+        final boolean due;
+        synchronized (this) {
+            final String value = System.currentTimeMillis() + "," + hash;
+            entries.put(key, value);
+            if (file == null)
+                return;
+            file.put(key, value);
+            dirty = true;
+            due = System.currentTimeMillis() - flushedAt >= flushInterval;
+        }
+        if (due)
+            flush();
+    }
+
+    /**
+     * Writes the entries changed since the last write to the file, dropping the expired ones.
+     */
+    public void flush() {
+        synchronized (this) {
+            if (file == null || !dirty)
+                return;
+            prune();
+            dirty = false;
+            flushedAt = System.currentTimeMillis();
+        }
+        // outside of the lock of the cache, the file guards its own content
+        try {
+            file.store();
+        } catch (IllegalStateException e) {
+            System.err.printf("Cannot store the GitHub write cache: %s\n", e);
+            e.printStackTrace(System.err);
+            synchronized (this) {
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Drops the entries older than {@link #MAX_AGE}.
+     *
+     * @return true if any has been dropped
+     */
+    private synchronized boolean prune() {
+        boolean pruned = false;
+        for (Iterator<Map.Entry<String, String>> i = entries.entrySet().iterator(); i.hasNext();) {
+            final Map.Entry<String, String> entry = i.next();
+            if (System.currentTimeMillis() - getTime(entry.getValue()) >= MAX_AGE) {
+                i.remove();
+                file.remove(entry.getKey());
+                pruned = true;
+            }
+        }
+        return pruned;
+    }
+
+    private static long getTime(final String value) {
+        try {
+            return Long.parseLong(value.substring(0, value.indexOf(',')));
+        } catch (RuntimeException e) {
+            // not an entry of this cache, let it expire
+            return 0;
+        }
+    }
+
+    private static String statusHash(final String state, final String targetUrl) {
+        return DigestUtils.sha1Hex(state + "\n" + (targetUrl == null ? "" : targetUrl));
+    }
+
+    private static String statusKey(final String repository, final String sha, final String context) {
+        // GitHub names are case insensitive
+        return "status." + repository.toLowerCase() + "@" + sha + "/" + context;
+    }
+
+    private static String commentKey(final String repository, final int number) {
+        return "comment." + repository.toLowerCase() + "#" + number;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.egit.github.core.Issue;
+import org.eclipse.egit.github.core.Label;
+import org.eclipse.egit.github.core.Milestone;
+import org.eclipse.egit.github.core.PullRequest;
+
+/**
+ * Collects changes of the labels and the milestone of a pull request and applies them together, see
+ * {@link GithubHelper#apply(IssueMutation)}. Obtained from {@link GithubHelper#mutate(PullRequest)}.
+ */
+public class IssueMutation {
+    private final GithubHelper helper;
+    private final PullRequest pullRequest;
+
+    private final Set<String> labelsToAdd = new LinkedHashSet<String>();
+    private final Set<String> labelsToRemove = new LinkedHashSet<String>();
+    private boolean milestoneChanged;
+    private Milestone milestone;
+
+    IssueMutation(final GithubHelper helper, final PullRequest pullRequest) {
+        this.helper = helper;
+        this.pullRequest = pullRequest;
+    }
+
+    public IssueMutation addLabel(final Label label) {
+        return addLabel(label.getName());
+    }
+
+    public IssueMutation addLabel(final String name) {
+        labelsToRemove.remove(name);
+        labelsToAdd.add(name);
+        return this;
+    }
+
+    public IssueMutation removeLabel(final Label label) {
+        return removeLabel(label.getName());
+    }
+
+    public IssueMutation removeLabel(final String name) {
+        labelsToAdd.remove(name);
+        labelsToRemove.add(name);
+        return this;
+    }
+
+    /**
+     * @param milestone the new milestone, {@code null} to clear it
+     */
+    public IssueMutation setMilestone(final Milestone milestone) {
+        this.milestoneChanged = true;
+        this.milestone = milestone;
+        return this;
+    }
+
+    /**
+     * Applies the changes which are not in effect already.
+     *
+     * @return the number, labels, milestone and update time of the issue after the changes, {@code null} if it cannot be
+     *         loaded or changed
+     */
+    public Issue apply() {
+        return helper.apply(this);
+    }
+
+    PullRequest getPullRequest() {
+        return pullRequest;
+    }
+
+    /**
+     * Returns the labels to add which the issue does not have yet.
+     */
+    List<String> getLabelsToAdd(final Issue current) {
+        final List<String> labels = new ArrayList<String>(labelsToAdd);
+        labels.removeAll(getLabelNames(current));
+        return labels;
+    }
+
+    /**
+     * Returns the labels to remove which the issue still has.
+     */
+    List<String> getLabelsToRemove(final Issue current) {
+        final List<String> labels = new ArrayList<String>(labelsToRemove);
+        labels.retainAll(getLabelNames(current));
+        return labels;
+    }
+
+    /**
+     * Returns true if the milestone is to be changed and the issue has another one.
+     */
+    boolean isMilestoneChanged(final Issue current) {
+        if (!milestoneChanged)
+            return false;
+        final Milestone currentMilestone = current.getMilestone();
+        if (milestone == null || currentMilestone == null)
+            return milestone != currentMilestone;
+        return milestone.getNumber() != currentMilestone.getNumber();
+    }
+
+    Milestone getMilestone() {
+        return milestone;
+    }
+
+    private static Set<String> getLabelNames(final Issue issue) {
+        final Set<String> names = new HashSet<String>();
+        if (issue.getLabels() != null) {
+            for (Label label : issue.getLabels()) {
+                names.add(label.getName());
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.pull.shared.internal.PropertiesFile;
+
+/**
+ * Remembers whether pull requests have been merged. A merged pull request stays merged, so positive answers are kept
+ * forever, in a {@link PropertiesFile} when one is given. Negative answers are only kept in memory for a short time.
+ */
+public class MergedStateStore {
+
+    private final PropertiesFile merged;
+    // used when there is no file
+    private final Set<String> mergedInMemory = new HashSet<String>();
+    private final long negativeTtl;
+    // key -> when the pull request has been found not merged
+    private final Map<String, Long> notMerged = new HashMap<String, Long>();
+
+    /**
+     * @param merged where to keep the merged pull requests, or {@code null} to keep them in memory only
+     * @param negativeTtl how long to trust that a pull request has not been merged, in milliseconds
+     */
+    public MergedStateStore(final PropertiesFile merged, final long negativeTtl) {
+        this.merged = merged;
+        this.negativeTtl = negativeTtl;
+    }
+
+    /**
+     * @param repository repository id as {@code organization/repository}
+     * @param number pull request number
+     * @return {@code TRUE} if known to be merged, {@code FALSE} if recently found not merged, {@code null} if unknown
+     */
+    public synchronized Boolean get(final String repository, final int number) {
+        final String key = key(repository, number);
+        if (merged != null ? merged.get(key) != null : mergedInMemory.contains(key))
+            return Boolean.TRUE;
+
+        final Long checkedAt = notMerged.get(key);
+        if (checkedAt != null) {
+            if (System.currentTimeMillis() - checkedAt < negativeTtl)
+                return Boolean.FALSE;
+            notMerged.remove(key);
+        }
+        return null;
+    }
+
+    public synchronized void put(final String repository, final int number, final boolean isMerged) {
+        final String key = key(repository, number);
+        if (!isMerged) {
+            notMerged.put(key, System.currentTimeMillis());
+            return;
+        }
+
+        notMerged.remove(key);
+        if (merged != null) {
+            if (merged.get(key) == null) {
+                merged.put(key, Long.toString(System.currentTimeMillis()));
+                merged.store();
+            }
+        } else {
+            mergedInMemory.add(key);
+        }
+    }
+
+    private static String key(final String repository, final int number) {
+        // GitHub names are case insensitive
+        return repository.toLowerCase() + "#" + number;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.eclipse.egit.github.core.Comment;
+
+/**
+ * Iterates the comments of a pull request from the newest to the oldest one, fetching the pages of comments lazily from
+ * the last one backwards. A caller looking for the latest comment of some kind stops iterating at the first match, so
+ * usually only the last page is fetched however long the discussion is.
+ * <p>
+ * Comments are appended to the last page, hence a comment never moves to another page; if more comments have arrived
+ * since the number of pages was computed, the pages after the expected last one are fetched first.
+ */
+public abstract class NewestFirstComments implements Iterable<Comment> {
+
+    private final int pageSize;
+
+    /**
+     * @param pageSize number of comments on a page
+     */
+    protected NewestFirstComments(final int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Returns the number of the last page as far as it is known, 0 if there are no comments.
+     */
+    protected abstract int getLastPage() throws IOException;
+
+    /**
+     * Fetches a page of comments, oldest first as GitHub returns them.
+     *
+     * @param page page number starting with 1
+     */
+    protected abstract List<Comment> fetchPage(int page) throws IOException;
+
+    /**
+     * @throws IllegalStateException wrapping an {@link IOException} if a page cannot be fetched while iterating
+     */
+    @Override
+    public Iterator<Comment> iterator() {
+        return new Iterator<Comment>() {
+            private final LinkedList<Comment> buffer = new LinkedList<Comment>();
+            private final Set<Long> seen = new HashSet<Long>();
+            private boolean started;
+            private int nextPage;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    if (!started) {
+                        started = true;
+                        fetchNewestPages();
+                    }
+                    while (buffer.isEmpty() && nextPage >= 1) {
+                        addNewestFirst(fetchPage(nextPage--));
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Cannot fetch comments", e);
+                }
+                return !buffer.isEmpty();
+            }
+
+            @Override
+            public Comment next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return buffer.removeFirst();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            private void fetchNewestPages() throws IOException {
+                final int lastPage = getLastPage();
+                nextPage = lastPage - 1;
+                if (lastPage < 1)
+                    return;
+
+                // while the page is full, newer comments might be on the next one
+                final List<List<Comment>> pages = new ArrayList<List<Comment>>();
+                int page = lastPage;
+                List<Comment> comments = fetchPage(page);
+                pages.add(comments);
+                while (comments.size() >= pageSize) {
+                    comments = fetchPage(++page);
+                    if (comments.isEmpty())
+                        break;
+                    pages.add(comments);
+                }
+                for (int i = pages.size() - 1; i >= 0; i--) {
+                    addNewestFirst(pages.get(i));
+                }
+            }
+
+            private void addNewestFirst(final List<Comment> page) {
+                for (int i = page.size() - 1; i >= 0; i--) {
+                    // deleted comments shift the pages, do not report a comment twice
+                    if (seen.add(page.get(i).getId()))
+                        buffer.add(page.get(i));
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.util.Date;
+
+/**
+ * A change of a single pull request as reported by GitHub, either by the repository events or by a webhook.
+ */
+public class PullRequestChange {
+
+    public enum Type {
+        OPENED, CLOSED, REOPENED, SYNCHRONIZED, EDITED, COMMENTED, LABELED, UNLABELED, ASSIGNED, STATUS, OTHER
+    }
+
+    private final int number;
+    private final String sha;
+    private final Type type;
+    private final Date createdAt;
+
+    public PullRequestChange(final int number, final Type type, final Date createdAt) {
+        this(number, null, type, createdAt);
+    }
+
+    /**
+     * Creates a change known by the commit only, e.g. a commit status change. The pull request has to be looked up by its
+     * head commit.
+     */
+    public PullRequestChange(final String sha, final Type type, final Date createdAt) {
+        this(-1, sha, type, createdAt);
+    }
+
+    private PullRequestChange(final int number, final String sha, final Type type, final Date createdAt) {
+        this.number = number;
+        this.sha = sha;
+        this.type = type;
+        this.createdAt = createdAt;
+    }
+
+    /** number of the changed pull request, -1 if only the commit is known */
+    public int getNumber() {
+        return number;
+    }
+
+    /** head commit of the changed pull request if the number is not known, {@code null} otherwise */
+    public String getSha() {
+        return sha;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /** when the change happened, may be {@code null} if unknown */
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Translates a GitHub {@code action} of a pull request, issue or issue comment event.
+     */
+    public static Type typeOf(final String action) {
+        if (action == null)
+            return Type.OTHER;
+        if ("opened".equals(action))
+            return Type.OPENED;
+        if ("closed".equals(action))
+            return Type.CLOSED;
+        if ("reopened".equals(action))
+            return Type.REOPENED;
+        if ("synchronize".equals(action))
+            return Type.SYNCHRONIZED;
+        if ("edited".equals(action))
+            return Type.EDITED;
+        if ("created".equals(action))
+            return Type.COMMENTED;
+        if ("labeled".equals(action))
+            return Type.LABELED;
+        if ("unlabeled".equals(action))
+            return Type.UNLABELED;
+        if ("assigned".equals(action) || "unassigned".equals(action))
+            return Type.ASSIGNED;
+        return Type.OTHER;
+    }
+
+    @Override
+    public String toString() {
+        return "PullRequestChange [number=" + number + ", sha=" + sha + ", type=" + type + ", createdAt=" + createdAt + "]";
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.egit.github.core.Label;
+import org.eclipse.egit.github.core.Milestone;
+import org.eclipse.egit.github.core.RepositoryBranch;
+
+/**
+ * Holds the branches, milestones and labels of a repository, each loaded again once older than the time to live or
+ * invalidated after a write. Reads of a fresh snapshot take no lock; a stale one is loaded again by one thread while the
+ * others wait for it. If loading fails the previous snapshot, if any, is served until the next attempt.
+ */
+public abstract class RepositoryMetadataCache {
+
+    public static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(10);
+
+    private final long ttl;
+
+    private final Entry<List<RepositoryBranch>> branches = new Entry<List<RepositoryBranch>>("branches",
+            Collections.<RepositoryBranch> emptyList()) {
+        @Override
+        List<RepositoryBranch> load() throws IOException {
+            return Collections.unmodifiableList(loadBranches());
+        }
+    };
+
+    private final Entry<List<Milestone>> milestones = new Entry<List<Milestone>>("milestones",
+            Collections.<Milestone> emptyList()) {
+        @Override
+        List<Milestone> load() throws IOException {
+            return Collections.unmodifiableList(loadMilestones());
+        }
+    };
+
+    // lower case name -> label
+    private final Entry<Map<String, Label>> labels = new Entry<Map<String, Label>>("labels",
+            Collections.<String, Label> emptyMap()) {
+        @Override
+        Map<String, Label> load() throws IOException {
+            final Map<String, Label> labels = new HashMap<String, Label>();
+            for (Label label : loadLabels()) {
+                labels.put(label.getName().toLowerCase(), label);
+            }
+            return labels;
+        }
+    };
+
+    /**
+     * @param ttl how long a snapshot is served in milliseconds
+     */
+    protected RepositoryMetadataCache(final long ttl) {
+        this.ttl = ttl;
+    }
+
+    public List<RepositoryBranch> getBranches() {
+        return branches.get();
+    }
+
+    /**
+     * @return the open and the closed milestones
+     */
+    public List<Milestone> getMilestones() {
+        return milestones.get();
+    }
+
+    /**
+     * @return the label of the given name, ignoring case as GitHub does, or {@code null} if there is none
+     */
+    public Label getLabel(final String name) {
+        return labels.get().get(name.toLowerCase());
+    }
+
+    public void invalidateBranches() {
+        branches.invalidate();
+    }
+
+    public void invalidateMilestones() {
+        milestones.invalidate();
+    }
+
+    public void invalidateLabels() {
+        labels.invalidate();
+    }
+
+    protected abstract List<RepositoryBranch> loadBranches() throws IOException;
+
+    protected abstract List<Milestone> loadMilestones() throws IOException;
+
+    protected abstract List<Label> loadLabels() throws IOException;
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private static class Snapshot<T> {
+        private final T value;
+        private final long loadedAt;
+        private final int generation;
+
+        private Snapshot(final T value, final long loadedAt, final int generation) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+            this.generation = generation;
+        }
+    }
+
+    private abstract class Entry<T> {
+        private final String name;
+        private final T empty;
+        // bumped by invalidate(), so that a load which was running meanwhile does not count as fresh
+        private final AtomicInteger generation = new AtomicInteger();
+        private volatile Snapshot<T> snapshot;
+
+        private Entry(final String name, final T empty) {
+            this.name = name;
+            this.empty = empty;
+        }
+
+        abstract T load() throws IOException;
+
+        T get() {
+            Snapshot<T> current = snapshot;
+            if (isFresh(current))
+                return current.value;
+            synchronized (this) {
+                current = snapshot;
+                if (isFresh(current))
+                    return current.value;
+                final int loading = generation.get();
+                try {
+                    final T value = load();
+                    snapshot = new Snapshot<T>(value, currentTimeMillis(), loading);
+                    return value;
+                } catch (IOException e) {
+                    System.err.printf("Problem getting %s: %s\n", name, e);
+                    e.printStackTrace(System.err);
+                    return current != null ? current.value : empty;
+                }
+            }
+        }
+
+        void invalidate() {
+            generation.incrementAndGet();
+        }
+
+        private boolean isFresh(final Snapshot<T> snapshot) {
+            return snapshot != null && snapshot.generation == generation.get()
+                    && currentTimeMillis() - snapshot.loadedAt < ttl;
+        }
+    }
+}
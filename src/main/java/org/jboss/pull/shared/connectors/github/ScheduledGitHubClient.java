@@ -0,0 +1,245 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+import org.eclipse.egit.github.core.client.RequestException;
+
+/**
+ * A {@link GitHubClient} sending every request with a token of a {@link GithubTokenPool}, paced by the
+ * {@link GithubRequestScheduler} of that token. The scheduler is fed with the rate limit headers of the responses.
+ * <p>
+ * A request is sent once more, possibly with another token, when it has been rejected by a secondary rate limit, because
+ * the token has been revoked ({@code 401}) or because its quota has been exhausted.
+ * <p>
+ * The connections are opened and the responses decoded by a {@link GithubTransport}.
+ */
+public class ScheduledGitHubClient extends GitHubClient {
+
+    // GitHub asks to wait at least a minute when a secondary limit response has no Retry-After
+    private static final long DEFAULT_BACK_OFF = TimeUnit.MINUTES.toMillis(1);
+
+    private final GithubTokenPool pool;
+    private final GithubTransport transport;
+    private final ThreadLocal<GithubTokenPool.Token> currentToken = new ThreadLocal<GithubTokenPool.Token>();
+    private final ThreadLocal<Boolean> retry = new ThreadLocal<Boolean>();
+    private final ThreadLocal<String> ifNoneMatch = new ThreadLocal<String>();
+
+    public ScheduledGitHubClient(final GithubTokenPool pool) {
+        this(pool, new DefaultGithubTransport());
+    }
+
+    public ScheduledGitHubClient(final GithubTokenPool pool, final GithubTransport transport) {
+        this.pool = pool;
+        this.transport = transport;
+    }
+
+    public GithubTokenPool getTokenPool() {
+        return pool;
+    }
+
+    @Override
+    protected HttpURLConnection createConnection(final String uri, final String method) throws IOException {
+        final GithubTokenPool.Token token;
+        try {
+            token = pool.select();
+        } catch (IllegalStateException e) {
+            throw new IOException(e.getMessage());
+        }
+        try {
+            token.getScheduler().acquire(!METHOD_GET.equals(method));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for GitHub rate limit");
+        }
+        currentToken.set(token);
+        // sets the headers of egit and the token, as GitHubClient.createConnection would
+        return configureRequest(transport.openConnection(new URL(createUri(uri)), method));
+    }
+
+    @Override
+    protected InputStream getStream(final HttpURLConnection request) throws IOException {
+        return transport.getResponseStream(request, super.getStream(request));
+    }
+
+    @Override
+    protected HttpURLConnection configureRequest(final HttpURLConnection request) {
+        super.configureRequest(request);
+        final GithubTokenPool.Token token = currentToken.get();
+        if (token != null && token.getValue() != null)
+            request.setRequestProperty("Authorization", "token " + token.getValue());
+        final String etag = ifNoneMatch.get();
+        if (etag != null)
+            request.setRequestProperty("If-None-Match", etag);
+        return request;
+    }
+
+    @Override
+    protected boolean isEmpty(final int code) {
+        return super.isEmpty(code) || (code == HttpURLConnection.HTTP_NOT_MODIFIED && ifNoneMatch.get() != null);
+    }
+
+    @Override
+    protected GitHubClient updateRateLimits(final HttpURLConnection request) {
+        super.updateRateLimits(request);
+        final GithubTokenPool.Token token = currentToken.get();
+        if (token == null)
+            return this;
+
+        final int remaining = header(request, "X-RateLimit-Remaining");
+        token.getScheduler().update(remaining, header(request, "X-RateLimit-Limit"), header(request, "X-RateLimit-Reset"));
+
+        final int code;
+        try {
+            code = request.getResponseCode();
+        } catch (IOException e) {
+            return this;
+        }
+        // a 403 asking to retry later is a secondary limit, an exhausted quota is worth a retry with another token; a
+        // secondary limit without Retry-After is only recognized by the message of the body, see shouldRetry
+        final int retryAfter = header(request, "Retry-After");
+        if (code == 429 || (code == 403 && retryAfter >= 0)) {
+            token.getScheduler().backOff(retryAfter >= 0 ? TimeUnit.SECONDS.toMillis(retryAfter) : DEFAULT_BACK_OFF);
+            retry.set(Boolean.TRUE);
+        } else if (code == 403 && remaining == 0 && pool.size() > 1) {
+            retry.set(Boolean.TRUE);
+        } else if (code == 401 && token.getValue() != null && pool.size() > 1) {
+            pool.revoke(token);
+            retry.set(Boolean.TRUE);
+        }
+        return this;
+    }
+
+    @Override
+    public GitHubResponse get(final GitHubRequest request) throws IOException {
+        for (int attempt = 0;; attempt++) {
+            retry.remove();
+            try {
+                return super.get(request);
+            } catch (RequestException e) {
+                if (!shouldRetry(attempt, e))
+                    throw e;
+            }
+        }
+    }
+
+    /**
+     * Sends the request unless the resource still has the given entity tag. A {@code 304 Not Modified} response does not
+     * count against the rate limit.
+     *
+     * @param etag the {@code ETag} of a previous response, may be {@code null}
+     * @return the response, with a {@code null} body if the resource has not been modified
+     */
+    public GitHubResponse getIfModified(final GitHubRequest request, final String etag) throws IOException {
+        ifNoneMatch.set(etag);
+        try {
+            return get(request);
+        } finally {
+            ifNoneMatch.remove();
+        }
+    }
+
+    @Override
+    public <V> V post(final String uri, final Object params, final Type type) throws IOException {
+        for (int attempt = 0;; attempt++) {
+            retry.remove();
+            try {
+                return super.<V> post(uri, params, type);
+            } catch (RequestException e) {
+                if (!shouldRetry(attempt, e))
+                    throw e;
+            }
+        }
+    }
+
+    @Override
+    public <V> V put(final String uri, final Object params, final Type type) throws IOException {
+        for (int attempt = 0;; attempt++) {
+            retry.remove();
+            try {
+                return super.<V> put(uri, params, type);
+            } catch (RequestException e) {
+                if (!shouldRetry(attempt, e))
+                    throw e;
+            }
+        }
+    }
+
+    @Override
+    public void delete(final String uri, final Object params) throws IOException {
+        for (int attempt = 0;; attempt++) {
+            retry.remove();
+            try {
+                super.delete(uri, params);
+                return;
+            } catch (RequestException e) {
+                if (!shouldRetry(attempt, e))
+                    throw e;
+            }
+        }
+    }
+
+    private boolean shouldRetry(final int attempt, final RequestException e) {
+        if (e.getStatus() == HttpURLConnection.HTTP_FORBIDDEN && !Boolean.TRUE.equals(retry.get())
+                && isSecondaryLimit(e)) {
+            final GithubTokenPool.Token token = currentToken.get();
+            if (token != null)
+                token.getScheduler().backOff(DEFAULT_BACK_OFF);
+            retry.set(Boolean.TRUE);
+        }
+        final boolean requested = Boolean.TRUE.equals(retry.get());
+        retry.remove();
+        // every token gets a chance, but never loop forever
+        return requested && attempt < pool.size();
+    }
+
+    private static boolean isSecondaryLimit(final RequestException e) {
+        final String message = e.getError() == null ? null : e.getError().getMessage();
+        if (message == null)
+            return false;
+        final String lowerCase = message.toLowerCase(Locale.ENGLISH);
+        // older responses speak of abuse detection
+        return lowerCase.contains("secondary rate limit") || lowerCase.contains("abuse detection");
+    }
+
+    private static int header(final HttpURLConnection request, final String name) {
+        final String value = request.getHeaderField(name);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        return -1;
+    }
+}
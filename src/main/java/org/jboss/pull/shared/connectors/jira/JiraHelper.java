@@ -24,6 +24,8 @@ package org.jboss.pull.shared.connectors.jira;
 
 import com.atlassian.jira.rest.client.JiraRestClient;
 import com.atlassian.jira.rest.client.NullProgressMonitor;
+import com.atlassian.jira.rest.client.domain.Transition;
+import com.atlassian.jira.rest.client.domain.input.TransitionInput;
 import com.atlassian.jira.rest.client.internal.jersey.JerseyJiraRestClientFactory;
 
 import org.jboss.pull.shared.Constants;
@@ -35,6 +37,22 @@ import org.jboss.pull.shared.connectors.common.Issue;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author navssurtani
@@ -46,12 +64,34 @@ public class JiraHelper extends AbstractCommonIssueHelper implements IssueHelper
 
     private JiraRestClient restClient;
 
+    // the REST API has no bulk lookup of issues, they are fetched by this many concurrent requests instead
+    private int threads;
+
+    private JiraTransitions transitions;
+
+    // how long issues loaded ahead of an evaluation are served instead of fetching them again
+    private static final long PREFETCH_TTL = TimeUnit.MINUTES.toMillis(5);
+    private Map<String, JiraIssue> prefetched = new HashMap<String, JiraIssue>();
+    private long prefetchedAt;
+
     public JiraHelper(final String configurationFileProperty, final String configurationFileDefault) throws Exception {
         super(configurationFileProperty, configurationFileDefault);
         try {
             JIRA_LOGIN = Util.require(fromUtil, "jira.login");
             JIRA_PASSWORD = Util.require(fromUtil, "jira.password");
+            threads = Integer.parseInt(Util.get(fromUtil, "jira.threads", "4").trim());
             restClient = buildJiraRestClient();
+            transitions = new JiraTransitions(fromUtil) {
+                @Override
+                protected Map<String, Integer> loadTransitions(JiraIssue issue) {
+                    final Map<String, Integer> available = new HashMap<String, Integer>();
+                    for (Transition transition : restClient.getIssueClient().getTransitions(
+                            getTransitionsUri(issue.getNumber()), new NullProgressMonitor())) {
+                        available.put(transition.getName(), transition.getId());
+                    }
+                    return available;
+                }
+            };
         } catch (Exception e) {
             System.err.printf("Cannot initialize: %s\n", e);
             e.printStackTrace(System.err);
@@ -61,14 +101,101 @@ public class JiraHelper extends AbstractCommonIssueHelper implements IssueHelper
 
     @Override
     public Issue findIssue(URL url) throws IllegalArgumentException {
+        return getIssue(cutKeyFromURL(url));
+    }
+
+    /**
+     * Returns the issue, the prefetched one if it has been loaded by {@link #prefetch(Collection)} a moment ago.
+     */
+    public JiraIssue getIssue(final String key) {
+        final String upperCaseKey = key.toUpperCase();
+        synchronized (this) {
+            final JiraIssue issue = prefetched.get(upperCaseKey);
+            if (issue != null && System.currentTimeMillis() - prefetchedAt < PREFETCH_TTL)
+                return issue;
+        }
+        return fetchIssue(upperCaseKey);
+    }
+
+    /**
+     * Returns the issue if it has been loaded by {@link #prefetch(Collection)} a moment ago, without asking Jira.
+     *
+     * @return the prefetched issue or {@code null}
+     */
+    public synchronized JiraIssue getPrefetchedIssue(final String key) {
+        final JiraIssue issue = prefetched.get(key.toUpperCase());
+        return issue != null && System.currentTimeMillis() - prefetchedAt < PREFETCH_TTL ? issue : null;
+    }
+
+    /**
+     * Loads the given issues, they are then served by {@link #findIssue(URL)} and {@link #getIssue(String)} for a few
+     * minutes. The issues prefetched before are dropped.
+     */
+    public void prefetch(final Collection<String> keys) {
+        final Map<String, JiraIssue> issues = loadIssues(new HashSet<String>(keys));
+        synchronized (this) {
+            prefetched = issues;
+            prefetchedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Loads the given issues using up to {@code jira.threads} (4 by default) concurrent requests. The issues which cannot
+     * be loaded are left out.
+     *
+     * @return the issues found keyed by their upper-cased key
+     */
+    public Map<String, JiraIssue> loadIssues(final Set<String> keys) {
+        final Map<String, JiraIssue> issues = new HashMap<String, JiraIssue>();
+        if (keys.isEmpty())
+            return issues;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, keys.size())),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        final Thread thread = new Thread(r, "jira-loader-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        try {
+            final List<Future<JiraIssue>> futures = new ArrayList<Future<JiraIssue>>(keys.size());
+            for (final String key : keys) {
+                futures.add(executor.submit(new Callable<JiraIssue>() {
+                    @Override
+                    public JiraIssue call() {
+                        return fetchIssue(key.toUpperCase());
+                    }
+                }));
+            }
+            for (Future<JiraIssue> future : futures) {
+                try {
+                    final JiraIssue issue = future.get();
+                    issues.put(issue.getNumber().toUpperCase(), issue);
+                } catch (ExecutionException e) {
+                    System.err.printf("Cannot load a Jira issue: %s\n", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading Jira issues " + keys, e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return issues;
+    }
+
+    private JiraIssue fetchIssue(final String key) {
         try {
-            String key = cutKeyFromURL(url);
             com.atlassian.jira.rest.client.domain.Issue fromServer = restClient.getIssueClient()
                     .getIssue(key, new NullProgressMonitor());
             return new JiraIssue(fromServer);
         } catch (RuntimeException e) {
             // Atlassian is very poor in reporting proper context
-            throw new RuntimeException("Failed to find issue " + url, e);
+            throw new RuntimeException("Failed to find issue " + key, e);
         }
     }
 
@@ -78,9 +205,68 @@ public class JiraHelper extends AbstractCommonIssueHelper implements IssueHelper
     }
 
     @Override
-    // FIXME: This has to be implemented properly.
     public boolean updateStatus(URL url, Enum status) {
-        throw new UnsupportedOperationException("This feature is not supported or tested yet.");
+        return !updateStatus(Collections.singleton(url), status).isEmpty();
+    }
+
+    /**
+     * Moves the issues to the status through the workflow transitions leading there. The transition ids are remembered
+     * per workflow and current status (see {@link JiraTransitions}), so an update is usually a single request. An issue
+     * which cannot be moved is reported and the remaining ones are updated anyway.
+     */
+    @Override
+    public List<URL> updateStatus(Collection<URL> urls, Enum status) {
+        if (!(status instanceof JiraIssue.IssueStatus))
+            throw new IllegalArgumentException("Not a Jira issue status: " + status);
+        final JiraIssue.IssueStatus target = (JiraIssue.IssueStatus) status;
+
+        // not a set, URL.equals() resolves host names
+        final List<URL> updated = new ArrayList<URL>();
+        for (URL url : urls) {
+            final String key = cutKeyFromURL(url).toUpperCase();
+            try {
+                final JiraIssue issue = getIssue(key);
+                if (!target.toString().equals(issue.getStatus()) && !transition(issue, target))
+                    continue;
+                updated.add(url);
+            } catch (RuntimeException e) {
+                System.err.printf("Cannot update the status of issue %s to %s: %s\n", key, target, e);
+                e.printStackTrace(System.err);
+            }
+            synchronized (this) {
+                prefetched.remove(key);
+            }
+        }
+        return updated;
+    }
+
+    private boolean transition(final JiraIssue issue, final JiraIssue.IssueStatus target) {
+        final URI transitionsUri = getTransitionsUri(issue.getNumber());
+        final Integer id = transitions.getTransitionId(issue, target);
+        if (id == null) {
+            System.err.printf("Issue %s cannot be moved from %s to %s, there is no transition %s\n", issue.getNumber(),
+                    issue.getStatus(), target, transitions.getTransitionName(target));
+            return false;
+        }
+        try {
+            restClient.getIssueClient().transition(transitionsUri, new TransitionInput(id), new NullProgressMonitor());
+        } catch (RuntimeException e) {
+            // the workflow might have changed since the id has been found, look it up again
+            transitions.invalidate(issue, target);
+            final Integer currentId = transitions.getTransitionId(issue, target);
+            if (currentId == null || currentId.equals(id))
+                throw e;
+            restClient.getIssueClient().transition(transitionsUri, new TransitionInput(currentId), new NullProgressMonitor());
+        }
+        return true;
+    }
+
+    private URI getTransitionsUri(final String key) {
+        try {
+            return new URI(Constants.JIRA_BASE + "/rest/api/2/issue/" + key + "/transitions");
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid issue key " + key, e);
+        }
     }
 
     private JiraRestClient buildJiraRestClient() throws URISyntaxException {
@@ -24,6 +24,7 @@ package org.jboss.pull.shared.connectors.jira;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
@@ -34,6 +35,7 @@ import com.atlassian.jira.rest.client.domain.Version;
 
 import org.jboss.pull.shared.Constants;
 import org.jboss.pull.shared.connectors.common.Flag;
+import org.jboss.pull.shared.connectors.common.FlagBits;
 import org.jboss.pull.shared.connectors.common.Issue;
 
 /**
@@ -44,6 +46,9 @@ import org.jboss.pull.shared.connectors.common.Issue;
  */
 public class JiraIssue implements Issue {
 
+    // prefix of the names of the Jira fields holding the Bugzilla-like flags
+    static final String FLAG_FIELD_PREFIX = "CDW ";
+
     private URL url;
 
     public enum IssueStatus {
@@ -53,23 +58,29 @@ public class JiraIssue implements Issue {
 
     private static final long serialVersionUID = 7228344342017879011L;
     private String id;
+    private String type;
     private IssueStatus status;
     private String resolution;
     // Sometimes there will be a target release as well as fix versions.
     private String targetRelease;
+    private Date updated;
 
     // Collections - i.e. flags, fixVersions etc.
     private List<Flag> flags;
+    // computed once, the flags are not expected to change
+    private transient FlagBits positiveFlags;
     private Set<String> fixVersions;
 
     // Constructor.
     public JiraIssue(com.atlassian.jira.rest.client.domain.Issue issue) {
 
         this.id = issue.getKey();
+        this.type = issue.getIssueType() != null ? issue.getIssueType().getName() : null;
         String statusString = issue.getStatus().getName().toUpperCase();
         statusString = statusString.replace(" ", "_");
         this.status = IssueStatus.valueOf(statusString);
         this.resolution = issue.getResolution() != null ? issue.getResolution().getName().toUpperCase() : "UNRESOLVED";
+        this.updated = issue.getUpdateDate() != null ? issue.getUpdateDate().toDate() : null;
 
         // The target release part. Quite buggy at the minute.
         Field releaseField = issue.getFieldByName("Target Release");
@@ -85,12 +96,12 @@ public class JiraIssue implements Issue {
         this.flags = new ArrayList<Flag>(6);
 
         // The field id's are constant from JIRA.
-        flags.add(buildFlagFromField(issue.getFieldByName("CDW release")));
-        flags.add(buildFlagFromField(issue.getFieldByName("CDW pm_ack")));
-        flags.add(buildFlagFromField(issue.getFieldByName("CDW devel_ack")));
-        flags.add(buildFlagFromField(issue.getFieldByName("CDW qa_ack")));
-        flags.add(buildFlagFromField(issue.getFieldByName("CDW blocker")));
-        flags.add(buildFlagFromField(issue.getFieldByName("CDW exception")));
+        flags.add(buildFlagFromField(issue, FLAG_FIELD_PREFIX + "release"));
+        flags.add(buildFlagFromField(issue, FLAG_FIELD_PREFIX + "pm_ack"));
+        flags.add(buildFlagFromField(issue, FLAG_FIELD_PREFIX + "devel_ack"));
+        flags.add(buildFlagFromField(issue, FLAG_FIELD_PREFIX + "qa_ack"));
+        flags.add(buildFlagFromField(issue, FLAG_FIELD_PREFIX + "blocker"));
+        flags.add(buildFlagFromField(issue, FLAG_FIELD_PREFIX + "exception"));
 
         // Now something similar for the fix versions. We just have to get the
         this.fixVersions = findFixVersions(issue.getFixVersions());
@@ -121,11 +132,35 @@ public class JiraIssue implements Issue {
         return flags;
     }
 
+    /**
+     * Returns the flags set to {@link Flag.Status#POSITIVE} named as in Bugzilla, i.e. {@code pm_ack} for the
+     * {@code CDW pm_ack} field, so that the same flag requirements apply to bugs and Jira issues.
+     */
+    @Override
+    public FlagBits getPositiveFlags() {
+        if (positiveFlags == null) {
+            final List<String> names = new ArrayList<String>(flags.size());
+            for (Flag flag : flags) {
+                if (flag.getStatus() == Flag.Status.POSITIVE)
+                    names.add(toBugzillaFlagName(flag.getName()));
+            }
+            positiveFlags = FlagBits.of(names);
+        }
+        return positiveFlags;
+    }
+
     @Override
     public Set<String> getFixVersions() {
         return fixVersions;
     }
 
+    /**
+     * Returns the issue type, e.g. {@code Bug}, which together with the project determines the workflow.
+     */
+    public String getType() {
+        return this.type;
+    }
+
     public String getResolution() {
         return this.resolution;
     }
@@ -134,6 +169,13 @@ public class JiraIssue implements Issue {
         return this.targetRelease;
     }
 
+    /**
+     * Returns the time of the last change of the issue, {@code null} if Jira did not tell.
+     */
+    public Date getUpdated() {
+        return this.updated;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -167,9 +209,14 @@ public class JiraIssue implements Issue {
         return builder.toString();
     }
 
-    private Flag buildFlagFromField(Field field) {
-        String name = field.getName();
-        String statusValue = (String) field.getValue();
+    static String toBugzillaFlagName(String name) {
+        return name.startsWith(FLAG_FIELD_PREFIX) ? name.substring(FLAG_FIELD_PREFIX.length()) : name;
+    }
+
+    private Flag buildFlagFromField(com.atlassian.jira.rest.client.domain.Issue issue, String name) {
+        Field field = issue.getFieldByName(name);
+        // the field is missing in projects which do not use it
+        String statusValue = field != null && field.getValue() != null ? field.getValue().toString() : null;
         Flag.Status status;
         if(statusValue == null) {
             status = Flag.Status.UNKNOWN;
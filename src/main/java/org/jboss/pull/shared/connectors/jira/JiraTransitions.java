@@ -0,0 +1,108 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.jira;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.jboss.pull.shared.Util;
+
+/**
+ * Resolves the id of the workflow transition which moves an issue to a given status. The transitions available depend on
+ * the workflow, which Jira assigns by project and issue type, and on the current status of the issue, the ids found are
+ * therefore remembered under these and an update of an issue is a single request once another issue of the same kind has
+ * been updated.
+ * <p>
+ * Transitions are named after the action rather than the target status. The name of the transition to a status can be
+ * configured by {@code jira.transition.<status>}, e.g. {@code jira.transition.resolved=Resolve Issue}; the status itself
+ * in words is the default, the usual names of the default Jira workflow are known.
+ */
+public abstract class JiraTransitions {
+
+    public static final String TRANSITION_PROPERTY_PREFIX = "jira.transition.";
+
+    private static final Map<JiraIssue.IssueStatus, String> DEFAULT_NAMES = new HashMap<JiraIssue.IssueStatus, String>();
+    static {
+        DEFAULT_NAMES.put(JiraIssue.IssueStatus.RESOLVED, "Resolve Issue");
+        DEFAULT_NAMES.put(JiraIssue.IssueStatus.CLOSED, "Close Issue");
+        DEFAULT_NAMES.put(JiraIssue.IssueStatus.REOPENED, "Reopen Issue");
+        DEFAULT_NAMES.put(JiraIssue.IssueStatus.CODING_IN_PROGRESS, "Start Progress");
+    }
+
+    private final Properties configuration;
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+    public JiraTransitions(final Properties configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Returns the transitions currently available for the issue.
+     *
+     * @return the transition ids keyed by the transition name
+     */
+    protected abstract Map<String, Integer> loadTransitions(JiraIssue issue);
+
+    /**
+     * @return the id of the transition or {@code null} if the issue cannot be moved to the status from its current one
+     */
+    public Integer getTransitionId(final JiraIssue issue, final JiraIssue.IssueStatus target) {
+        final String key = key(issue, target);
+        synchronized (this) {
+            final Integer id = ids.get(key);
+            if (id != null)
+                return id;
+        }
+
+        final String name = getTransitionName(target);
+        for (Map.Entry<String, Integer> transition : loadTransitions(issue).entrySet()) {
+            if (name.equalsIgnoreCase(transition.getKey().trim())) {
+                synchronized (this) {
+                    ids.put(key, transition.getValue());
+                }
+                return transition.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Forgets the transition id, e.g. after it has been rejected because the workflow has changed.
+     */
+    public synchronized void invalidate(final JiraIssue issue, final JiraIssue.IssueStatus target) {
+        ids.remove(key(issue, target));
+    }
+
+    String getTransitionName(final JiraIssue.IssueStatus target) {
+        final String defaultName = DEFAULT_NAMES.containsKey(target) ? DEFAULT_NAMES.get(target) : target.name()
+                .replace('_', ' ');
+        return Util.get(configuration, TRANSITION_PROPERTY_PREFIX + target.name().toLowerCase(), defaultName).trim();
+    }
+
+    private static String key(final JiraIssue issue, final JiraIssue.IssueStatus target) {
+        final String number = issue.getNumber();
+        final int dash = number.lastIndexOf('-');
+        final String project = dash < 0 ? number : number.substring(0, dash);
+        return project + "|" + issue.getType() + "|" + issue.getStatus() + "|" + target;
+    }
+}
@@ -22,26 +22,28 @@
 package org.jboss.pull.shared.evaluators;
 
 import org.eclipse.egit.github.core.Comment;
-import org.eclipse.egit.github.core.PullRequest;
 import org.jboss.pull.shared.Constants;
 import org.jboss.pull.shared.PullHelper;
 import org.jboss.pull.shared.Util;
 import org.jboss.pull.shared.connectors.bugzilla.Bug;
 import org.jboss.pull.shared.connectors.common.Issue;
 import org.jboss.pull.shared.connectors.RedhatPullRequest;
+import org.jboss.pull.shared.connectors.git.GitMirror;
 import org.jboss.pull.shared.connectors.jira.JiraIssue;
-import org.jboss.pull.shared.spi.PullEvaluator;
+import org.jboss.pull.shared.spi.BatchAwarePullEvaluator;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An abstract base evaluator which holds the target github branch.
  *
  * @author <a href="mailto:istudens@redhat.com">Ivo Studensky</a>
  */
-public abstract class BasePullEvaluator implements PullEvaluator {
+public abstract class BasePullEvaluator implements BatchAwarePullEvaluator {
 
     public static final String EVALUATOR_PROPERTY = "evaluator";
     public static final String GITHUB_BRANCH_PROPERTY = "github.branch";
@@ -49,6 +51,9 @@ public abstract class BasePullEvaluator implements PullEvaluator {
     public static final String GITHUB_REPOSITORY_UPSTREAM = "github.repo.upstream";
     public static final String GITHUB_BRANCH_UPSTREAM = "github.branch.upstream";
     public static final String ISSUE_FIX_VERSION = "issue.fix.version";
+    public static final String GITHUB_MIRROR_DIR = "github.mirror.dir";
+    public static final String GITHUB_MIRROR_URL = "github.mirror.url";
+    public static final String GITHUB_MIRROR_REFRESH = "github.mirror.refresh";
 
     private static final String NOT_REVIEWED_TAG = "Pull request has not been reviewed yet";
 
@@ -59,6 +64,8 @@ public abstract class BasePullEvaluator implements PullEvaluator {
     protected String upstreamOrganization;
     protected String upstreamRepository;
     protected String upstreamBranch;
+    // optional local mirror of the upstream repository
+    protected GitMirror upstreamMirror;
 
     @Override
     public void init(final PullHelper helper, final Properties configuration, final String version) {
@@ -70,6 +77,14 @@ public abstract class BasePullEvaluator implements PullEvaluator {
         this.upstreamRepository = Util.require(configuration, version + "." + GITHUB_REPOSITORY_UPSTREAM);
         this.upstreamBranch = Util.require(configuration, version + "." + GITHUB_BRANCH_UPSTREAM);
 
+        final String mirrorDir = Util.get(configuration, version + "." + GITHUB_MIRROR_DIR);
+        if (mirrorDir != null) {
+            final String mirrorUrl = Util.get(configuration, version + "." + GITHUB_MIRROR_URL, "https://github.com/"
+                    + upstreamOrganization + "/" + upstreamRepository + ".git");
+            final long refresh = Long.parseLong(Util.get(configuration, version + "." + GITHUB_MIRROR_REFRESH, "300").trim());
+            this.upstreamMirror = GitMirror.forDirectory(new File(mirrorDir.trim()), mirrorUrl.trim(),
+                    TimeUnit.SECONDS.toMillis(refresh));
+        }
     }
 
     @Override
@@ -130,12 +145,20 @@ public abstract class BasePullEvaluator implements PullEvaluator {
         if (issue instanceof Bug) {
             return pull.updateStatus(issue, Bug.Status.MODIFIED);
         } else if (issue instanceof JiraIssue) {
-            return updateJiraAsMerged((JiraIssue) issue);
+            return updateJiraAsMerged(pull, (JiraIssue) issue);
         } else {
             throw new IllegalStateException("unsupported type of an issue: " + issue.getClass().getName());
         }
     }
 
+    /**
+     * Needs the referenced issues and the upstream pull requests, which every evaluator based on this one checks.
+     */
+    @Override
+    public DataNeeds getDataNeeds(final List<RedhatPullRequest> pulls) {
+        return new DataNeeds().need(DataNeeds.Kind.ISSUES, DataNeeds.Kind.UPSTREAM_PULL_REQUESTS);
+    }
+
     @Override
     public List<? extends Issue> getIssue(final RedhatPullRequest pull) {
         return getBugsThatMatchFixVersion(pull); // default implementation at the moment
@@ -162,20 +185,38 @@ public abstract class BasePullEvaluator implements PullEvaluator {
 
         try {
             final List<RedhatPullRequest> upstreamPulls = getUpstreamPullRequest(pull);
-            if (upstreamPulls.isEmpty()) {
+            // commit references can only be verified with the mirror
+            final List<String> upstreamCommits = upstreamMirror == null ? new ArrayList<String>() : pull.getRelatedCommits(
+                    upstreamOrganization, upstreamRepository);
+            if (upstreamPulls.isEmpty() && upstreamCommits.isEmpty()) {
                 mergeable.setMergeable(false);
                 mergeable.addDescription("- Missing any upstream pull request");
                 return mergeable;
             }
 
+            if (upstreamMirror != null) {
+                try {
+                    upstreamMirror.refreshIfStale();
+                } catch (IllegalStateException e) {
+                    System.err.printf("Cannot refresh the upstream mirror, it might be outdated: %s\n", e);
+                }
+            }
+
             for (RedhatPullRequest pullRequest : upstreamPulls) {
-                if (!pullRequest.isMerged()) {
+                if (!isUpstreamMerged(pullRequest)) {
                     mergeable.setMergeable(false);
                     mergeable
                             .addDescription("- Upstream pull request #" + pullRequest.getNumber() + " has not been merged yet");
                 }
             }
 
+            for (String commit : upstreamCommits) {
+                if (!upstreamMirror.isCommitMerged(commit, upstreamBranch)) {
+                    mergeable.setMergeable(false);
+                    mergeable.addDescription("- Upstream commit " + commit + " has not been merged yet");
+                }
+            }
+
             if (mergeable.isMergeable()) {
                 mergeable.addDescription("+ Upstream pull request is OK");
             }
@@ -192,6 +233,19 @@ public abstract class BasePullEvaluator implements PullEvaluator {
         return mergeable;
     }
 
+    private boolean isUpstreamMerged(final RedhatPullRequest pullRequest) {
+        // the mirror does not recognize rebased or squashed merges, GitHub has the final word then
+        if (upstreamMirror != null) {
+            try {
+                if (upstreamMirror.isPullRequestMerged(pullRequest.getNumber(), upstreamBranch))
+                    return true;
+            } catch (IllegalStateException e) {
+                System.err.printf("Cannot check upstream pull request %d in the mirror: %s\n", pullRequest.getNumber(), e);
+            }
+        }
+        return pullRequest.isMerged();
+    }
+
     protected List<Bug> getBugsThatMatchFixVersion(RedhatPullRequest pullRequest) {
         List<Issue> issues = pullRequest.getIssues();
 
@@ -211,14 +265,25 @@ public abstract class BasePullEvaluator implements PullEvaluator {
         return returnBugs;
     }
 
-    private boolean updateJiraAsMerged(final JiraIssue issue) {
-        // TODO
-        throw new IllegalStateException("jira has not been implemented yet");
+    private boolean updateJiraAsMerged(final RedhatPullRequest pull, final JiraIssue issue) {
+        return pull.updateStatus(issue, JiraIssue.IssueStatus.RESOLVED);
     }
 
-    protected List<JiraIssue> getJiraIssue(PullRequest pull) {
-        // TODO
-        throw new IllegalStateException("jira has not been implemented yet");
+    /**
+     * Returns the Jira issues referenced by the pull request which are to be fixed in the configured fix version, either
+     * as one of their fix versions or as their target release.
+     */
+    protected List<JiraIssue> getJiraIssue(RedhatPullRequest pullRequest) {
+        final List<JiraIssue> returnIssues = new ArrayList<JiraIssue>();
+        for (Issue i : pullRequest.getIssues()) {
+            if (i instanceof JiraIssue) {
+                final JiraIssue issue = (JiraIssue) i;
+                if ((issue.getFixVersions() != null && issue.getFixVersions().contains(issueFixVersion))
+                        || issueFixVersion.equals(issue.getTargetRelease()))
+                    returnIssues.add(issue);
+            }
+        }
+        return returnIssues;
     }
 
 }
@@ -21,98 +21,52 @@
  */
 package org.jboss.pull.shared.evaluators;
 
-import org.jboss.pull.shared.PullHelper;
-import org.jboss.pull.shared.Util;
 import org.jboss.pull.shared.connectors.RedhatPullRequest;
-import org.jboss.pull.shared.connectors.bugzilla.Bug;
-import org.jboss.pull.shared.connectors.common.Flag;
+import org.jboss.pull.shared.connectors.common.Issue;
 
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Properties;
-import java.util.Set;
-import java.util.StringTokenizer;
 
 /**
- * An evaluator based on Bugzilla or Jira flags resolution.
- * TODO
+ * An evaluator based on Bugzilla or Jira flags resolution. It shares the flag requirements with
+ * {@link BugFlagBasedPullEvaluator}, but does not require the pull request to be marked for merge. The flags of Jira
+ * issues are held by the {@code CDW} fields and are matched by their Bugzilla names, i.e. {@code pm_ack} for
+ * {@code CDW pm_ack}. Both bugs and Jira issues have to match the configured fix version.
  *
  * @author <a href="mailto:istudens@redhat.com">Ivo Studensky</a>
  */
-public class BugAndJiraFlagBasedPullEvaluator extends BasePullEvaluator {
-    public static final String REQUIRED_FLAGS_PROPERTY = "required.flags";
-
-    public static final String PM_ACK = "pm_ack";
-    public static final String QA_ACK = "qa_ack";
-    public static final String DEVEL_ACK = "devel_ack";
-
-    protected final Set<String> REQUIRED_FLAGS = new HashSet<String>();
-
-    @Override
-    public void init(final PullHelper helper, final Properties configuration, final String version) {
-        super.init(helper, configuration, version);
-
-        REQUIRED_FLAGS.add(PM_ACK);
-        REQUIRED_FLAGS.add(DEVEL_ACK);
-        REQUIRED_FLAGS.add(QA_ACK);
-
-        final String requiredFlags = Util.require(configuration, version + "." + REQUIRED_FLAGS_PROPERTY);
-        final StringTokenizer tokenizer = new StringTokenizer(requiredFlags, ", ");
-        while (tokenizer.hasMoreTokens()) {
-            final String requiredFlag = tokenizer.nextToken();
-            REQUIRED_FLAGS.add(requiredFlag);
-        }
-    }
+public class BugAndJiraFlagBasedPullEvaluator extends BugFlagBasedPullEvaluator {
 
     @Override
     public Result isMergeable(final RedhatPullRequest pull) {
         final Result mergeable;
         mergeable = isMergeableByUpstream(pull);
-        mergeable.and(isMergeableByBugzilla(pull));
+        mergeable.and(isMergeableByIssues(pull));
         return mergeable;
     }
 
-    protected Result isMergeableByBugzilla(final RedhatPullRequest pull) {
-        final Result mergeable = new Result(true);
+    @Override
+    public List<? extends Issue> getIssue(final RedhatPullRequest pull) {
+        final List<Issue> issues = new ArrayList<Issue>();
+        issues.addAll(getBugsThatMatchFixVersion(pull));
+        issues.addAll(getJiraIssue(pull));
+        return issues;
+    }
 
-        final List<Bug> bugs = (List<Bug>) getIssue(pull);
-        if (bugs.isEmpty()) {
-            mergeable.setMergeable(false);
-            mergeable.addDescription("- Missing any bugzilla bug");
+    protected Result isMergeableByIssues(final RedhatPullRequest pull) {
+        final List<? extends Issue> issues = getIssue(pull);
+        if (issues.isEmpty()) {
+            final Result mergeable = new Result(false);
+            mergeable.addDescription("- Missing any bugzilla bug or jira issue");
             return mergeable;
         }
 
-        for (Bug bug : bugs) {
-            final Set<String> flagsToCheck = new HashSet<String>(this.REQUIRED_FLAGS);
-
-            final List<Flag> flags = bug.getFlags();
-            for (Flag flag : flags) {
-                if (flag.getStatus() == Flag.Status.POSITIVE) {
-                    flagsToCheck.remove(flag.getName());
-                }
-            }
-            if (! flagsToCheck.isEmpty()) {
-                mergeable.setMergeable(false);
-                mergeable.addDescription(missingFlagsDescription(bug, flagsToCheck));
-            }
-        }
-
+        final Result mergeable = hasRequiredFlags(issues);
         if (mergeable.isMergeable()) {
-            mergeable.addDescription("+ Bugzilla is OK");
+            mergeable.addDescription("+ Bugzilla and Jira are OK");
         }
 
         return mergeable;
     }
 
-    private String missingFlagsDescription(Bug bug, Set<String> missingFlags) {
-        final StringBuilder description = new StringBuilder("- Bug bz").append(bug.getNumber()).append(" is missing flags");
-
-        String delim = " ";
-        for (String missingFlag : missingFlags) {
-            description.append(delim).append(missingFlag);
-            delim = ", ";
-        }
-        return description.toString();
-    }
-
 }
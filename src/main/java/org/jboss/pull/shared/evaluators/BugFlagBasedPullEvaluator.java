@@ -25,7 +25,8 @@ import org.jboss.pull.shared.PullHelper;
 import org.jboss.pull.shared.Util;
 import org.jboss.pull.shared.connectors.RedhatPullRequest;
 import org.jboss.pull.shared.connectors.bugzilla.Bug;
-import org.jboss.pull.shared.connectors.common.Flag;
+import org.jboss.pull.shared.connectors.common.FlagBits;
+import org.jboss.pull.shared.connectors.common.Issue;
 
 import java.util.HashSet;
 import java.util.List;
@@ -35,7 +36,8 @@ import java.util.StringTokenizer;
 
 /**
  * An evaluator based on Bugzilla flags resolution. It can be configured to which flags are needed in order to merge a pull
- * request.
+ * request. The required flags are compiled into {@link FlagBits} at init, so checking an issue does not allocate anything
+ * unless flags are missing.
  *
  * @author <a href="mailto:istudens@redhat.com">Ivo Studensky</a>
  */
@@ -47,6 +49,8 @@ public class BugFlagBasedPullEvaluator extends BasePullEvaluator {
     public static final String DEVEL_ACK = "devel_ack";
 
     protected final Set<String> REQUIRED_FLAGS = new HashSet<String>();
+    // REQUIRED_FLAGS compiled at init
+    protected FlagBits requiredFlags = FlagBits.EMPTY;
 
     @Override
     public void init(final PullHelper helper, final Properties configuration, final String version) {
@@ -62,6 +66,7 @@ public class BugFlagBasedPullEvaluator extends BasePullEvaluator {
             final String requiredFlag = tokenizer.nextToken();
             REQUIRED_FLAGS.add(requiredFlag);
         }
+        this.requiredFlags = FlagBits.of(REQUIRED_FLAGS);
     }
 
     @Override
@@ -73,30 +78,14 @@ public class BugFlagBasedPullEvaluator extends BasePullEvaluator {
     }
 
     protected Result isMergeableByBugzilla(final RedhatPullRequest pull) {
-        final Result mergeable = new Result(true);
-
-        final List<Bug> bugs = (List<Bug>) getIssue(pull);
+        final List<? extends Issue> bugs = getIssue(pull);
         if (bugs.isEmpty()) {
-            mergeable.setMergeable(false);
+            final Result mergeable = new Result(false);
             mergeable.addDescription("- Missing any bugzilla bug");
             return mergeable;
         }
 
-        for (Bug bug : bugs) {
-            final Set<String> flagsToCheck = new HashSet<String>(this.REQUIRED_FLAGS);
-
-            final List<Flag> flags = bug.getFlags();
-            for (Flag flag : flags) {
-                if (flag.getStatus() == Flag.Status.POSITIVE) {
-                    flagsToCheck.remove(flag.getName());
-                }
-            }
-            if (!flagsToCheck.isEmpty()) {
-                mergeable.setMergeable(false);
-                mergeable.addDescription(missingFlagsDescription(bug, flagsToCheck));
-            }
-        }
-
+        final Result mergeable = hasRequiredFlags(bugs);
         if (mergeable.isMergeable()) {
             mergeable.addDescription("+ Bugzilla is OK");
         }
@@ -104,8 +93,27 @@ public class BugFlagBasedPullEvaluator extends BasePullEvaluator {
         return mergeable;
     }
 
-    private String missingFlagsDescription(Bug bug, Set<String> missingFlags) {
-        final StringBuilder description = new StringBuilder("- Bug bz").append(bug.getNumber()).append(" is missing flags");
+    /**
+     * Checks that all the issues, Bugzilla bugs or Jira issues, have all the required flags.
+     */
+    protected Result hasRequiredFlags(final List<? extends Issue> issues) {
+        final Result mergeable = new Result(true);
+        for (Issue issue : issues) {
+            if (!issue.getPositiveFlags().containsAll(requiredFlags)) {
+                mergeable.setMergeable(false);
+                mergeable.addDescription(missingFlagsDescription(issue, issue.getPositiveFlags().getMissing(requiredFlags)));
+            }
+        }
+        return mergeable;
+    }
+
+    private String missingFlagsDescription(Issue issue, List<String> missingFlags) {
+        final StringBuilder description = new StringBuilder();
+        if (issue instanceof Bug)
+            description.append("- Bug bz").append(issue.getNumber());
+        else
+            description.append("- Issue ").append(issue.getNumber());
+        description.append(" is missing flags");
 
         String delim = " ";
         for (String missingFlag : missingFlags) {
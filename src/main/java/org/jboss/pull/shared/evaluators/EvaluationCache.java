@@ -0,0 +1,110 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.evaluators;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jboss.pull.shared.spi.PullEvaluator.Result;
+
+/**
+ * Remembers the results of the evaluation of pull requests together with a fingerprint of the inputs they have been
+ * computed from. A result is reused as long as the fingerprint of the pull request has not changed and the result is not
+ * older than the time to live, which bounds how long changes of inputs not covered by the fingerprint go unnoticed.
+ * <p>
+ * {@link Result} is mutable, hence copies are stored and handed out.
+ */
+public class EvaluationCache {
+
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    private final long ttl;
+    private final Map<String, CachedResult> entries;
+
+    /**
+     * @param ttl how long a result can be reused, in milliseconds
+     * @param capacity maximal number of results kept, the least recently used are dropped first
+     */
+    public EvaluationCache(final long ttl, final int capacity) {
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param key identifies the pull request
+     * @param fingerprint fingerprint of the current inputs of the evaluation
+     * @return a copy of the result or {@code null} if the inputs have changed or the result is too old
+     */
+    public synchronized Result get(final String key, final String fingerprint) {
+        final CachedResult entry = entries.get(key);
+        if (entry == null)
+            return null;
+        if (!entry.fingerprint.equals(fingerprint) || currentTimeMillis() - entry.createdAt >= ttl) {
+            entries.remove(key);
+            return null;
+        }
+        return copy(entry.result);
+    }
+
+    public synchronized void put(final String key, final String fingerprint, final Result result) {
+        entries.put(key, new CachedResult(fingerprint, copy(result), currentTimeMillis()));
+    }
+
+    public synchronized void invalidate(final String key) {
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    static Result copy(final Result result) {
+        final Result copy = new Result(result.isMergeable());
+        copy.addDescription(result.getDescription());
+        return copy;
+    }
+
+    private static class CachedResult {
+        private final String fingerprint;
+        private final Result result;
+        private final long createdAt;
+
+        private CachedResult(final String fingerprint, final Result result, final long createdAt) {
+            this.fingerprint = fingerprint;
+            this.result = result;
+            this.createdAt = createdAt;
+        }
+    }
+}
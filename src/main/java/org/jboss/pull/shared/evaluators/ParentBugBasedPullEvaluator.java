@@ -25,22 +25,33 @@ import org.jboss.pull.shared.PullHelper;
 import org.jboss.pull.shared.Util;
 import org.jboss.pull.shared.connectors.RedhatPullRequest;
 import org.jboss.pull.shared.connectors.bugzilla.Bug;
+import org.jboss.pull.shared.connectors.bugzilla.DependencyClosure;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
 
 /**
- * An evaluator based on a parent Bugzilla bug resolution.
+ * An evaluator based on a parent Bugzilla bug resolution. A referenced bug has to block one of the required parent bugs,
+ * either directly or through other bugs, e.g. an intermediate tracker. The bugs blocking the parents are computed up
+ * front (see {@link DependencyClosure}), walking at most {@code <version>.parent.bug.depth} levels (5 by default) and
+ * refreshed every {@code <version>.parent.bug.refresh} seconds (5 minutes by default).
  *
  * @author <a href="mailto:istudens@redhat.com">Ivo Studensky</a>
  */
 public class ParentBugBasedPullEvaluator extends BasePullEvaluator {
     public static final String PARENT_BUGS_PROPERTY = "parent.bug";
+    public static final String PARENT_BUGS_DEPTH_PROPERTY = "parent.bug.depth";
+    public static final String PARENT_BUGS_REFRESH_PROPERTY = "parent.bug.refresh";
 
     protected final Set<Integer> REQUIRED_PARENTS = new HashSet<Integer>();
+    // the required parents and the bugs blocking them
+    protected DependencyClosure parentClosure;
 
     @Override
     public void init(final PullHelper helper, final Properties configuration, final String version) {
@@ -52,6 +63,25 @@ public class ParentBugBasedPullEvaluator extends BasePullEvaluator {
             final String parentBug = tokenizer.nextToken();
             REQUIRED_PARENTS.add(Integer.valueOf(parentBug));
         }
+
+        final int depth = Integer.parseInt(Util.get(configuration, version + "." + PARENT_BUGS_DEPTH_PROPERTY,
+                Integer.toString(DependencyClosure.DEFAULT_MAX_DEPTH)).trim());
+        final long refresh = Long.parseLong(Util.get(configuration, version + "." + PARENT_BUGS_REFRESH_PROPERTY, "300").trim());
+        parentClosure = new DependencyClosure(REQUIRED_PARENTS, depth, TimeUnit.SECONDS.toMillis(refresh)) {
+            @Override
+            protected Map<Integer, Set<Integer>> loadDependencies(Set<Integer> ids) {
+                final Set<String> keys = new HashSet<String>();
+                for (Integer id : ids) {
+                    keys.add(id.toString());
+                }
+                final Map<Integer, Set<Integer>> dependencies = new HashMap<Integer, Set<Integer>>();
+                for (Bug bug : helper.loadBugs(keys).values()) {
+                    if (bug.getDependsOn() != null)
+                        dependencies.put(bug.getId(), bug.getDependsOn());
+                }
+                return dependencies;
+            }
+        };
     }
 
     @Override
@@ -71,14 +101,16 @@ public class ParentBugBasedPullEvaluator extends BasePullEvaluator {
             return mergeable;
         }
 
+        parentClosure.refreshIfStale();
+
         // any referenced (blocked) bug has to...
         for (Bug bug : bugs) {
             final Set<Integer> blocks = bug.getBlocks();
             if (blocks == null || blocks.isEmpty())
                 continue;
 
-            // ...contain at least one of the required parent bugs
-            boolean hit = false;
+            // ...block at least one of the required parent bugs, or a bug blocking one of them
+            boolean hit = parentClosure.containsAny(blocks);
             for (Integer parentBug : REQUIRED_PARENTS) {
                 if (blocks.contains(parentBug))
                     hit = true;
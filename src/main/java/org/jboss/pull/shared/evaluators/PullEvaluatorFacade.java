@@ -21,20 +21,37 @@
  */
 package org.jboss.pull.shared.evaluators;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.jboss.pull.shared.PullHelper;
 import org.jboss.pull.shared.Util;
 import org.jboss.pull.shared.connectors.RedhatPullRequest;
 import org.jboss.pull.shared.connectors.common.Issue;
+import org.jboss.pull.shared.spi.BatchAwarePullEvaluator;
+import org.jboss.pull.shared.spi.BatchAwarePullEvaluator.DataNeeds;
 import org.jboss.pull.shared.spi.PullEvaluator;
 
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Collects all {@code PullEvaluator} services and redirects to them
@@ -45,9 +62,20 @@ import java.util.StringTokenizer;
  */
 public class PullEvaluatorFacade {
 
+    private final PullHelper helper;
     private final Map<String, PullEvaluator> evaluators = new HashMap<String, PullEvaluator>();
+    // null if disabled
+    private final EvaluationCache cache;
+    // maximal number of pull requests evaluated in parallel
+    private final int threads;
 
     public PullEvaluatorFacade(final PullHelper helper, final Properties configuration) {
+        this.helper = helper;
+        final long cacheTtl = Long.parseLong(Util.get(configuration, "evaluator.cache.ttl", "600").trim());
+        cache = cacheTtl > 0 ? new EvaluationCache(TimeUnit.SECONDS.toMillis(cacheTtl),
+                EvaluationCache.DEFAULT_CAPACITY) : null;
+        threads = Math.max(1, Integer.parseInt(Util.get(configuration, "evaluator.threads", "4").trim()));
+
         final String versions = Util.get(configuration, "versions");
 
         final StringTokenizer tokenizer = new StringTokenizer(versions, ", ");
@@ -73,9 +101,254 @@ public class PullEvaluatorFacade {
         }
     }
 
+    /**
+     * Fetches in bulk the data the evaluators declare they will need to evaluate the given pull requests (see
+     * {@link BatchAwarePullEvaluator#getDataNeeds(List)}; other evaluators need nothing up front): the referenced and
+     * parent Bugzilla bugs with a single request, the referenced Jira issues with concurrent requests, and the upstream
+     * pull requests with their merged state, shared by the pull requests of the same cycle. Failures are only reported,
+     * the evaluation fetches whatever is missing.
+     *
+     * @param pulls pull requests about to be evaluated
+     */
+    public void prefetch(final Collection<RedhatPullRequest> pulls) {
+        final Map<PullEvaluator, List<RedhatPullRequest>> batches = groupByEvaluator(pulls);
+
+        final Set<Integer> bugIds = new TreeSet<Integer>();
+        final Set<String> jiraKeys = new TreeSet<String>();
+        final Map<PullEvaluator, List<RedhatPullRequest>> upstreamBatches = new LinkedHashMap<PullEvaluator,
+                List<RedhatPullRequest>>();
+        for (Map.Entry<PullEvaluator, List<RedhatPullRequest>> batch : batches.entrySet()) {
+            if (!(batch.getKey() instanceof BatchAwarePullEvaluator))
+                continue;
+            final DataNeeds needs = ((BatchAwarePullEvaluator) batch.getKey()).getDataNeeds(batch.getValue());
+            if (needs.isNeeded(DataNeeds.Kind.ISSUES)) {
+                for (RedhatPullRequest pull : batch.getValue()) {
+                    for (String number : pull.getReferencedIssueNumbers()) {
+                        // Jira keys are not numeric
+                        if (number.matches("\\d+"))
+                            bugIds.add(Integer.valueOf(number));
+                        else
+                            jiraKeys.add(number);
+                    }
+                }
+            }
+            if (needs.isNeeded(DataNeeds.Kind.PARENT_BUGS))
+                bugIds.addAll(needs.getParentBugs());
+            if (needs.isNeeded(DataNeeds.Kind.UPSTREAM_PULL_REQUESTS))
+                upstreamBatches.put(batch.getKey(), batch.getValue());
+        }
+
+        try {
+            helper.prefetchBugs(bugIds);
+        } catch (RuntimeException e) {
+            System.err.printf("Cannot prefetch bugs %s: %s\n", bugIds, e);
+            e.printStackTrace(System.err);
+        }
+        if (!jiraKeys.isEmpty()) {
+            try {
+                helper.prefetchJiraIssues(jiraKeys);
+            } catch (RuntimeException e) {
+                System.err.printf("Cannot prefetch Jira issues %s: %s\n", jiraKeys, e);
+                e.printStackTrace(System.err);
+            }
+        }
+
+        for (Map.Entry<PullEvaluator, List<RedhatPullRequest>> batch : upstreamBatches.entrySet()) {
+            for (RedhatPullRequest pull : batch.getValue()) {
+                try {
+                    for (RedhatPullRequest upstreamPull : batch.getKey().getUpstreamPullRequest(pull)) {
+                        upstreamPull.isMerged();
+                    }
+                } catch (RuntimeException e) {
+                    System.err.printf("Cannot prefetch upstream pull requests of the pull request %d: %s\n",
+                            pull.getNumber(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Receives the results of a batch evaluation as they are available.
+     */
+    public interface ResultListener {
+        /**
+         * Called from the thread which has started the batch evaluation, once for every pull request.
+         */
+        void evaluated(RedhatPullRequest pull, PullEvaluator.Result result);
+    }
+
+    /**
+     * Evaluates the pull requests, see {@link #isMergeable(Collection, ResultListener)}.
+     */
+    public Map<RedhatPullRequest, PullEvaluator.Result> isMergeable(final Collection<RedhatPullRequest> pulls) {
+        return isMergeable(pulls, null);
+    }
+
+    /**
+     * Evaluates the pull requests in parallel, using at most {@code evaluator.threads} threads (4 by default), after
+     * prefetching the data their evaluators need. The pull requests are grouped by target branch. A pull request which
+     * cannot be evaluated, e.g. because its evaluator fails, gets a negative result describing the failure, the others are
+     * evaluated anyway.
+     *
+     * @param pulls the pull requests to evaluate
+     * @param listener notified about every result as soon as it is available, may be {@code null}
+     * @return the results in the order of the given pull requests
+     */
+    public Map<RedhatPullRequest, PullEvaluator.Result> isMergeable(final Collection<RedhatPullRequest> pulls,
+            final ResultListener listener) {
+        final Map<RedhatPullRequest, PullEvaluator.Result> results = new LinkedHashMap<RedhatPullRequest, PullEvaluator.Result>();
+        for (RedhatPullRequest pull : pulls) {
+            results.put(pull, null);
+        }
+        if (results.isEmpty())
+            return results;
+
+        prefetch(results.keySet());
+
+        // pull requests of the same branch share the most data, evaluate them close together
+        final List<RedhatPullRequest> ordered = new ArrayList<RedhatPullRequest>(results.size());
+        for (List<RedhatPullRequest> batch : groupByEvaluator(results.keySet()).values()) {
+            ordered.addAll(batch);
+        }
+        for (RedhatPullRequest pull : results.keySet()) {
+            if (!evaluators.containsKey(pull.getTargetBranchTitle()))
+                ordered.add(pull);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, ordered.size()), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "pull-evaluator-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            final CompletionService<RedhatPullRequest> completion = new ExecutorCompletionService<RedhatPullRequest>(executor);
+            for (final RedhatPullRequest pull : ordered) {
+                completion.submit(new Callable<RedhatPullRequest>() {
+                    @Override
+                    public RedhatPullRequest call() {
+                        final PullEvaluator.Result result = isMergeableOrFailure(pull);
+                        synchronized (results) {
+                            results.put(pull, result);
+                        }
+                        return pull;
+                    }
+                });
+            }
+
+            for (int i = 0; i < ordered.size(); i++) {
+                final RedhatPullRequest pull = completion.take().get();
+                if (listener == null)
+                    continue;
+                final PullEvaluator.Result result;
+                synchronized (results) {
+                    result = results.get(pull);
+                }
+                try {
+                    listener.evaluated(pull, result);
+                } catch (RuntimeException e) {
+                    System.err.printf("Result listener %s failed: %s\n", listener, e);
+                    e.printStackTrace(System.err);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating pull requests", e);
+        } catch (ExecutionException e) {
+            // the tasks do not throw
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private PullEvaluator.Result isMergeableOrFailure(final RedhatPullRequest pull) {
+        try {
+            return isMergeable(pull);
+        } catch (RuntimeException e) {
+            System.err.printf("Cannot evaluate the pull request %d: %s\n", pull.getNumber(), e);
+            e.printStackTrace(System.err);
+            return new PullEvaluator.Result(false, "- Cannot evaluate the pull request: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Groups the pull requests by the evaluator of their target branch, pull requests without any evaluator are left out.
+     */
+    private Map<PullEvaluator, List<RedhatPullRequest>> groupByEvaluator(final Collection<RedhatPullRequest> pulls) {
+        final Map<PullEvaluator, List<RedhatPullRequest>> batches = new LinkedHashMap<PullEvaluator, List<RedhatPullRequest>>();
+        for (RedhatPullRequest pull : pulls) {
+            final PullEvaluator evaluator = evaluators.get(pull.getTargetBranchTitle());
+            if (evaluator == null)
+                continue;
+            List<RedhatPullRequest> batch = batches.get(evaluator);
+            if (batch == null) {
+                batch = new ArrayList<RedhatPullRequest>();
+                batches.put(evaluator, batch);
+            }
+            batch.add(pull);
+        }
+        return batches;
+    }
+
+    /**
+     * Evaluates the pull request, or returns the result of a previous evaluation if its inputs have not changed since
+     * (see {@link #getFingerprint(PullEvaluator, RedhatPullRequest)}) and it is not older than
+     * {@code evaluator.cache.ttl} seconds (10 minutes by default, 0 disables the cache).
+     */
     public PullEvaluator.Result isMergeable(final RedhatPullRequest pull) {
         final PullEvaluator evaluator = getPullEvaluator(pull);
-        return evaluator.isMergeable(pull);
+        if (cache == null)
+            return evaluator.isMergeable(pull);
+
+        final String key = pull.getOrganization() + "/" + pull.getRepository() + "#" + pull.getNumber();
+        final String fingerprint;
+        try {
+            fingerprint = getFingerprint(evaluator, pull);
+        } catch (RuntimeException e) {
+            System.err.printf("Cannot fingerprint the pull request %d, evaluating it: %s\n", pull.getNumber(), e);
+            cache.invalidate(key);
+            return evaluator.isMergeable(pull);
+        }
+
+        final PullEvaluator.Result cached = cache.get(key, fingerprint);
+        if (cached != null)
+            return cached;
+
+        final PullEvaluator.Result result = evaluator.isMergeable(pull);
+        cache.put(key, fingerprint, result);
+        return result;
+    }
+
+    /**
+     * Computes a fingerprint of the inputs of the evaluation from what is known without asking the trackers: the head
+     * commit and the update time of the pull request, which changes with every new comment including merge requests,
+     * the referenced issues with the update times of the prefetched Jira issues, the high-water mark of the Bugzilla
+     * change feed, which moves whenever a watched bug changes, and the merged states known for the referenced upstream
+     * pull requests. An upstream pull request found not merged is looked up again once that answer expires, which
+     * changes the fingerprint as well.
+     */
+    String getFingerprint(final PullEvaluator evaluator, final RedhatPullRequest pull) {
+        final StringBuilder inputs = new StringBuilder();
+        inputs.append(evaluator.getTargetBranch()).append('|').append(pull.getSourceBranchSha()).append('|')
+                .append(pull.getGithubUpdatedAt() == null ? "" : pull.getGithubUpdatedAt().getTime());
+        for (String number : new TreeSet<String>(pull.getReferencedIssueNumbers())) {
+            inputs.append('|').append(number);
+            if (!Character.isDigit(number.charAt(0))) {
+                final Date updated = helper.getPrefetchedJiraIssueUpdate(number);
+                inputs.append('@').append(updated == null ? "" : updated.getTime());
+            }
+        }
+        final Date bugChangeMark = helper.getBugChangeHighWaterMark();
+        inputs.append('|').append(bugChangeMark == null ? "" : bugChangeMark.getTime());
+        inputs.append('|').append(pull.getKnownRelatedMergedStates());
+
+        return DigestUtils.sha1Hex(inputs.toString());
     }
 
     public List<? extends Issue> getIssue(final RedhatPullRequest pull) {
@@ -0,0 +1,540 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.jboss.pull.shared.Util;
+
+/**
+ * Queues writes to remote systems, e.g. comments and commit statuses, and applies them from a background worker, so that
+ * the caller neither waits for them nor loses them while the remote system is down.
+ * <p>
+ * A write is addressed to a target, e.g. a pull request or a bug, and has a kind which selects the {@link Handler}
+ * applying it. The writes to the same target are applied in the order they have been queued; a write is only tried once
+ * the previous one to its target has been applied or given up. Ready writes of the same kind to different targets are
+ * handed to their handler together, which may apply them with a single request. A failed write is retried with an
+ * exponential backoff and given up after a number of attempts.
+ * <p>
+ * Every write has an idempotency key derived from its target, kind and arguments; a write is not queued again while the
+ * same write is pending. When a file is given, queued and finished writes are appended to it, so the pending writes
+ * survive a restart. The file is compacted on startup and once enough finished writes have accumulated.
+ */
+public class Outbox {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 50;
+    public static final long DEFAULT_BASE_BACKOFF = 1000;
+    public static final long DEFAULT_MAX_BACKOFF = 30 * 60 * 1000;
+
+    // finished writes logged before the file is compacted
+    static final int COMPACT_THRESHOLD = 1000;
+    // longest sleep of the worker when nothing is due
+    private static final long IDLE_WAIT = 60 * 1000;
+
+    /**
+     * Applies writes of a kind.
+     */
+    public interface Handler {
+        /**
+         * Applies the writes, which are of the same kind and to different targets, at most as many as the batch size the
+         * handler has been registered with. Throwing fails all of them, they are tried again later.
+         */
+        void apply(List<Write> writes) throws Exception;
+    }
+
+    private final File file;
+    private final int maxAttempts;
+    private final long baseBackoff;
+    private final long maxBackoff;
+
+    private final Map<String, Handler> handlers = new HashMap<String, Handler>();
+    private final Map<String, Integer> batchSizes = new HashMap<String, Integer>();
+    // pending writes per target, in the order they have been queued
+    private final Map<String, LinkedList<Write>> pending = new LinkedHashMap<String, LinkedList<Write>>();
+    private final Set<String> pendingKeys = new HashSet<String>();
+    private long sequence;
+    private int finished;
+
+    private final Object flushLock = new Object();
+    private Thread worker;
+    private volatile boolean running;
+
+    /**
+     * @param file where the writes are kept, or {@code null} to keep them in memory only
+     * @param maxAttempts how many times a write is tried before it is given up
+     * @param baseBackoff delay before the second attempt, in milliseconds, it doubles with every further attempt
+     * @param maxBackoff longest delay between two attempts, in milliseconds
+     */
+    public Outbox(final File file, final int maxAttempts, final long baseBackoff, final long maxBackoff) {
+        this.file = file;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+        if (file != null && file.exists()) {
+            load();
+            compact();
+        }
+    }
+
+    /**
+     * Creates the outbox configured by {@code <prefix>.outbox.file}, {@code <prefix>.outbox.max.attempts} (50 by default)
+     * and {@code <prefix>.outbox.backoff.max} (1800 seconds by default).
+     *
+     * @return the outbox or {@code null} if no file is configured, the writes are to be applied inline then
+     */
+    public static Outbox create(final Properties configuration, final String prefix) {
+        final String file = Util.get(configuration, prefix + ".outbox.file");
+        if (file == null)
+            return null;
+        final int maxAttempts = Integer.parseInt(Util.get(configuration, prefix + ".outbox.max.attempts",
+                Integer.toString(DEFAULT_MAX_ATTEMPTS)).trim());
+        final long maxBackoff = Long.parseLong(Util.get(configuration, prefix + ".outbox.backoff.max",
+                Long.toString(TimeUnit.MILLISECONDS.toSeconds(DEFAULT_MAX_BACKOFF))).trim());
+        return new Outbox(new File(file.trim()), maxAttempts, DEFAULT_BASE_BACKOFF, TimeUnit.SECONDS.toMillis(maxBackoff));
+    }
+
+    /**
+     * Registers the handler of a kind of writes, which applies one write at a time. The handlers have to be registered
+     * before the writes are flushed.
+     */
+    public void register(final String kind, final Handler handler) {
+        register(kind, handler, 1);
+    }
+
+    /**
+     * Registers the handler of a kind of writes, which can apply several writes at once, e.g. with a single request.
+     *
+     * @param batchSize maximal number of writes handed to the handler at once
+     */
+    public synchronized void register(final String kind, final Handler handler, final int batchSize) {
+        handlers.put(kind, handler);
+        batchSizes.put(kind, batchSize);
+    }
+
+    /**
+     * Queues a write.
+     *
+     * @param target what the write is addressed to, the writes to the same target are applied in order
+     * @param kind selects the handler
+     * @param args the arguments of the handler, any strings
+     * @return false if the same write is already pending
+     */
+    public synchronized boolean enqueue(final String target, final String kind, final String... args) {
+        final Write write = new Write(++sequence, key(target, kind, args), target, kind, Arrays.asList(args));
+        if (!pendingKeys.add(write.key))
+            return false;
+
+        if (file != null)
+            append(write.toLine());
+        add(write);
+        notifyAll();
+        return true;
+    }
+
+    public synchronized int size() {
+        return pendingKeys.size();
+    }
+
+    /**
+     * Applies all the writes which are due, in the calling thread.
+     *
+     * @return the number of writes applied
+     */
+    public int flush() {
+        // the writes being applied are still pending, they must not be picked by another flush
+        synchronized (flushLock) {
+            int applied = 0;
+            while (true) {
+                final Map<String, List<Write>> due = getDue();
+                int round = 0;
+                for (Map.Entry<String, List<Write>> kind : due.entrySet()) {
+                    final List<Write> writes = kind.getValue();
+                    final int batchSize = getBatchSize(kind.getKey());
+                    for (int from = 0; from < writes.size(); from += batchSize) {
+                        final List<Write> batch = writes.subList(from, Math.min(from + batchSize, writes.size()));
+                        if (apply(kind.getKey(), batch))
+                            round += batch.size();
+                    }
+                }
+                // the writes following the applied ones may be due now
+                if (round == 0)
+                    return applied;
+                applied += round;
+            }
+        }
+    }
+
+    /**
+     * Starts the worker flushing the writes in the background.
+     */
+    public synchronized void start(final String name) {
+        if (worker != null)
+            return;
+        running = true;
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                work();
+            }
+        }, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stops the worker, the pending writes are kept.
+     */
+    public void stop() {
+        final Thread stopped;
+        synchronized (this) {
+            running = false;
+            notifyAll();
+            stopped = worker;
+            worker = null;
+        }
+        if (stopped != null && stopped != Thread.currentThread()) {
+            try {
+                stopped.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private void work() {
+        while (running) {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                System.err.printf("Cannot flush the outbox: %s\n", e);
+                e.printStackTrace(System.err);
+            }
+            synchronized (this) {
+                final long wait = Math.min(IDLE_WAIT, getNextAttemptAt() - currentTimeMillis());
+                if (running && wait > 0) {
+                    try {
+                        wait(wait);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    // the first pending write of every target which is due, grouped by kind
+    private synchronized Map<String, List<Write>> getDue() {
+        final long now = currentTimeMillis();
+        final Map<String, List<Write>> due = new LinkedHashMap<String, List<Write>>();
+        for (LinkedList<Write> writes : pending.values()) {
+            final Write write = writes.getFirst();
+            if (write.nextAttemptAt > now)
+                continue;
+            if (!handlers.containsKey(write.kind)) {
+                // registered later, or by a previous version
+                continue;
+            }
+            List<Write> ofKind = due.get(write.kind);
+            if (ofKind == null) {
+                ofKind = new ArrayList<Write>();
+                due.put(write.kind, ofKind);
+            }
+            ofKind.add(write);
+        }
+        return due;
+    }
+
+    private synchronized int getBatchSize(final String kind) {
+        return batchSizes.get(kind);
+    }
+
+    private synchronized long getNextAttemptAt() {
+        long next = Long.MAX_VALUE;
+        for (LinkedList<Write> writes : pending.values()) {
+            final Write write = writes.getFirst();
+            if (handlers.containsKey(write.kind))
+                next = Math.min(next, write.nextAttemptAt);
+        }
+        return next;
+    }
+
+    private boolean apply(final String kind, final List<Write> batch) {
+        final Handler handler;
+        synchronized (this) {
+            handler = handlers.get(kind);
+        }
+        try {
+            handler.apply(Collections.unmodifiableList(batch));
+        } catch (Exception e) {
+            failed(batch, e);
+            return false;
+        }
+        synchronized (this) {
+            for (Write write : batch) {
+                finish(write);
+            }
+        }
+        return true;
+    }
+
+    private synchronized void failed(final List<Write> batch, final Exception e) {
+        final long now = currentTimeMillis();
+        for (Write write : batch) {
+            write.attempts++;
+            if (write.attempts >= maxAttempts) {
+                System.err.printf("Giving up %s to %s after %d attempts: %s\n", write.kind, write.target, write.attempts, e);
+                e.printStackTrace(System.err);
+                finish(write);
+            } else {
+                // 2^attempts overflows quickly, the shift is bounded
+                final long backoff = baseBackoff << Math.min(write.attempts - 1, 30);
+                write.nextAttemptAt = now + Math.min(maxBackoff, backoff);
+                System.err.printf("Cannot apply %s to %s, attempt %d: %s\n", write.kind, write.target, write.attempts, e);
+            }
+        }
+    }
+
+    private void finish(final Write write) {
+        final LinkedList<Write> writes = pending.get(write.target);
+        if (writes == null || !writes.remove(write))
+            return;
+        if (writes.isEmpty())
+            pending.remove(write.target);
+        pendingKeys.remove(write.key);
+        if (file != null) {
+            append("D\t" + write.sequence + "\t" + write.key);
+            if (++finished >= COMPACT_THRESHOLD)
+                compact();
+        }
+    }
+
+    private void add(final Write write) {
+        LinkedList<Write> writes = pending.get(write.target);
+        if (writes == null) {
+            writes = new LinkedList<Write>();
+            pending.put(write.target, writes);
+        }
+        writes.add(write);
+    }
+
+    private void load() {
+        final Map<Long, Write> writes = new LinkedHashMap<Long, Write>();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split("\t", -1);
+                // the last line may have been cut short by a crash, it does not match its idempotency key then
+                try {
+                    if (fields[0].equals("A") && fields.length >= 5) {
+                        final Write write = Write.parse(fields);
+                        writes.put(write.sequence, write);
+                        sequence = Math.max(sequence, write.sequence);
+                    } else if (fields[0].equals("D") && fields.length == 3) {
+                        final Write write = writes.get(Long.valueOf(fields[1]));
+                        if (write != null && write.key.equals(fields[2]))
+                            writes.remove(write.sequence);
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.err.printf("Skipping the damaged record of %s: %s\n", file, line);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load " + file, e);
+        } finally {
+            Util.safeClose(reader);
+        }
+
+        for (Write write : writes.values()) {
+            if (pendingKeys.add(write.key))
+                add(write);
+        }
+    }
+
+    // rewrites the file with the pending writes only
+    private synchronized void compact() {
+        final File tmp = new File(file.getPath() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            for (LinkedList<Write> writes : pending.values()) {
+                for (Write write : writes) {
+                    out.write((write.toLine() + "\n").getBytes("UTF-8"));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot store " + file, e);
+        } finally {
+            Util.safeClose(out);
+        }
+        if (!tmp.renameTo(file)) {
+            // some platforms do not allow to rename over an existing file
+            file.delete();
+            if (!tmp.renameTo(file))
+                throw new IllegalStateException("Cannot replace " + file + " with " + tmp);
+        }
+        finished = 0;
+    }
+
+    private void append(final String line) {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists())
+            parent.mkdirs();
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(file, true);
+            out.write((line + "\n").getBytes("UTF-8"));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot append to " + file, e);
+        } finally {
+            Util.safeClose(out);
+        }
+    }
+
+    static String key(final String target, final String kind, final String... args) {
+        final StringBuilder key = new StringBuilder(target).append('\n').append(kind);
+        for (String arg : args) {
+            key.append('\n').append(arg);
+        }
+        return DigestUtils.sha1Hex(key.toString());
+    }
+
+    /**
+     * A queued write.
+     */
+    public static class Write {
+        private final long sequence;
+        private final String key;
+        private final String target;
+        private final String kind;
+        private final List<String> args;
+        private int attempts;
+        private long nextAttemptAt;
+
+        private Write(final long sequence, final String key, final String target, final String kind,
+                final List<String> args) {
+            this.sequence = sequence;
+            this.key = key;
+            this.target = target;
+            this.kind = kind;
+            this.args = args;
+        }
+
+        /**
+         * Returns the idempotency key of the write, the same for the same target, kind and arguments.
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public String getArg(final int index) {
+            return args.get(index);
+        }
+
+        public List<String> getArgs() {
+            return args;
+        }
+
+        /**
+         * Returns how many times the write has been tried and failed.
+         */
+        public int getAttempts() {
+            return attempts;
+        }
+
+        private String toLine() {
+            final StringBuilder line = new StringBuilder("A\t").append(sequence).append('\t').append(key).append('\t')
+                    .append(encode(target)).append('\t').append(encode(kind));
+            for (String arg : args) {
+                line.append('\t').append(encode(arg));
+            }
+            return line.toString();
+        }
+
+        /**
+         * @throws IllegalArgumentException if the record is damaged, e.g. it does not match its idempotency key
+         */
+        private static Write parse(final String[] fields) {
+            final String target = decode(fields[3]);
+            final String kind = decode(fields[4]);
+            final String[] args = new String[fields.length - 5];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = decode(fields[i + 5]);
+            }
+            final String key = key(target, kind, args);
+            if (!key.equals(fields[2]))
+                throw new IllegalArgumentException("Record does not match its key " + fields[2]);
+            return new Write(Long.parseLong(fields[1]), key, target, kind, Arrays.asList(args));
+        }
+
+        private static String encode(final String value) {
+            try {
+                return URLEncoder.encode(value, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static String decode(final String value) {
+            try {
+                return URLDecoder.decode(value, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
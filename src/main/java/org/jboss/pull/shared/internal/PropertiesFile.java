@@ -0,0 +1,108 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.Set;
+
+import org.jboss.pull.shared.Util;
+
+/**
+ * A small persistent key/value store kept in a properties file. Writes go to a temporary file which then replaces the
+ * original one, so a crash while storing never leaves a truncated file behind.
+ */
+public class PropertiesFile {
+    private final File file;
+    private final Properties properties = new Properties();
+
+    public PropertiesFile(final File file) {
+        this.file = file;
+        if (file.exists()) {
+            InputStream in = null;
+            try {
+                in = new FileInputStream(file);
+                properties.load(in);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot load " + file, e);
+            } finally {
+                Util.safeClose(in);
+            }
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized String get(final String key) {
+        return properties.getProperty(key);
+    }
+
+    public synchronized String get(final String key, final String defaultValue) {
+        return properties.getProperty(key, defaultValue);
+    }
+
+    public synchronized void put(final String key, final String value) {
+        properties.setProperty(key, value);
+    }
+
+    public synchronized void remove(final String key) {
+        properties.remove(key);
+    }
+
+    public synchronized Set<String> keys() {
+        return properties.stringPropertyNames();
+    }
+
+    /**
+     * Writes the current content to disk.
+     */
+    public synchronized void store() {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists())
+            parent.mkdirs();
+
+        final File tmp = new File(file.getPath() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            properties.store(out, null);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot store " + file, e);
+        } finally {
+            Util.safeClose(out);
+        }
+
+        if (!tmp.renameTo(file)) {
+            // some platforms do not allow to rename over an existing file
+            file.delete();
+            if (!tmp.renameTo(file))
+                throw new IllegalStateException("Cannot replace " + file + " with " + tmp);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.spi;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jboss.pull.shared.connectors.RedhatPullRequest;
+
+/**
+ * A {@link PullEvaluator} which declares the data it needs before a batch of pull requests is evaluated. The facade
+ * checks for this interface; the data of other evaluators is fetched lazily by their evaluation.
+ */
+public interface BatchAwarePullEvaluator extends PullEvaluator {
+
+    /**
+     * Declares the data the evaluation of the given pull requests will need, so that it can be fetched in bulk before the
+     * pull requests are evaluated one by one. Anything not declared is still fetched lazily by the evaluation.
+     *
+     * @param pulls the pull requests of the branch this evaluator is dedicated to which are about to be evaluated
+     * @return the data needed, never {@code null}
+     */
+    DataNeeds getDataNeeds(final List<RedhatPullRequest> pulls);
+
+    /**
+     * Data an evaluator needs to evaluate a batch of pull requests, see {@link BatchAwarePullEvaluator#getDataNeeds(List)}.
+     */
+    public class DataNeeds {
+        public enum Kind {
+            /** the Bugzilla bugs and Jira issues referenced by the pull requests */
+            ISSUES,
+            /** the upstream pull requests and whether they have been merged */
+            UPSTREAM_PULL_REQUESTS,
+            /** the Bugzilla bugs given by {@link DataNeeds#getParentBugs()} */
+            PARENT_BUGS
+        }
+
+        private final Set<Kind> kinds = EnumSet.noneOf(Kind.class);
+        private final Set<Integer> parentBugs = new HashSet<Integer>();
+
+        public DataNeeds need(final Kind... kinds) {
+            this.kinds.addAll(Arrays.asList(kinds));
+            return this;
+        }
+
+        public DataNeeds needParentBugs(final Collection<Integer> parentBugs) {
+            kinds.add(Kind.PARENT_BUGS);
+            this.parentBugs.addAll(parentBugs);
+            return this;
+        }
+
+        public boolean isNeeded(final Kind kind) {
+            return kinds.contains(kind);
+        }
+
+        public Set<Integer> getParentBugs() {
+            return parentBugs;
+        }
+    }
+}
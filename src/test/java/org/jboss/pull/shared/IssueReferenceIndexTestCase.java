@@ -0,0 +1,58 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.testng.annotations.Test;
+
+public class IssueReferenceIndexTestCase {
+    @Test
+    public void testUpdateReplacesReferences() {
+        final IssueReferenceIndex index = new IssueReferenceIndex();
+        index.update(1, Arrays.asList("953471", "eap6-77"));
+        index.update(2, Arrays.asList("953471"));
+
+        assertEquals(index.getPullRequests("953471"), new HashSet<Integer>(Arrays.asList(1, 2)));
+        assertEquals(index.getPullRequests("EAP6-77"), Collections.singleton(1));
+
+        // description edited, the Jira reference has gone
+        index.update(1, Arrays.asList("953471"));
+        assertTrue(index.getPullRequests("EAP6-77").isEmpty());
+    }
+
+    @Test
+    public void testRetainDropsClosedPullRequests() {
+        final IssueReferenceIndex index = new IssueReferenceIndex();
+        index.update(1, Arrays.asList("100"));
+        index.update(2, Arrays.asList("100", "200"));
+
+        index.retain(Arrays.asList(2));
+        assertEquals(index.getPullRequests(Arrays.asList("100", "200")), Collections.singleton(2));
+        assertTrue(index.getIssues(1).isEmpty());
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.testng.annotations.Test;
+
+public class PullStateStoreTestCase {
+
+    @Test
+    public void testStateIsKeptAcrossRestarts() throws IOException {
+        final File file = File.createTempFile("pull-state", ".properties");
+        file.delete();
+        final File log = new File(file.getPath() + ".log");
+        try {
+            final PullStateStore store = new PullStateStore(file, 100);
+            assertNull(store.get("wildfly", "wildfly", 100));
+            store.put("wildfly", "wildfly", 100, entry(ProcessorPullState.INCOMPLETE, 10, null));
+            store.put("wildfly", "wildfly", 101, entry(ProcessorPullState.NEW, 11, null));
+            store.put("wildfly", "wildfly", 100, entry(ProcessorPullState.MERGEABLE, 12, "admin"));
+            store.remove("wildfly", "wildfly", 101);
+            assertTrue(log.exists());
+            assertFalse(file.exists());
+
+            final PullStateStore restarted = new PullStateStore(file, 100);
+            final PullStateStore.Entry entry = restarted.get("WildFly", "WildFly", 100);
+            assertEquals(entry.getState(), ProcessorPullState.MERGEABLE);
+            assertEquals(entry.getLastCommentId(), 12);
+            assertEquals(entry.getForceMergedBy(), "admin");
+            assertEquals(entry.getHeadSha(), "3a0d9e2c");
+            assertEquals(entry.getUpdatedAt(), new Date(12000));
+            assertNull(restarted.get("wildfly", "wildfly", 101));
+            // the log has been compacted into the snapshot
+            assertTrue(file.exists());
+            assertFalse(log.exists());
+        } finally {
+            file.delete();
+            log.delete();
+        }
+    }
+
+    @Test
+    public void testLogIsCompacted() throws IOException {
+        final File file = File.createTempFile("pull-state", ".properties");
+        file.delete();
+        final File log = new File(file.getPath() + ".log");
+        try {
+            final PullStateStore store = new PullStateStore(file, 3);
+            for (int i = 0; i < 3; i++) {
+                store.put("wildfly", "wildfly", 100 + i, entry(ProcessorPullState.NEW, i, null));
+            }
+            assertFalse(log.exists());
+            assertEquals(new PullStateStore(file, 3).size(), 3);
+        } finally {
+            file.delete();
+            log.delete();
+        }
+    }
+
+    @Test
+    public void testTruncatedLogLineIsIgnored() throws IOException {
+        final File file = File.createTempFile("pull-state", ".properties");
+        file.delete();
+        final File log = new File(file.getPath() + ".log");
+        try {
+            new PullStateStore(file, 100).put("wildfly", "wildfly", 100, entry(ProcessorPullState.FINISHED, 10, null));
+            final OutputStream out = new FileOutputStream(log, true);
+            try {
+                out.write("wildfly/wildfly#101\tNEW,NE".getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+
+            final PullStateStore restarted = new PullStateStore(file, 100);
+            assertEquals(restarted.get("wildfly", "wildfly", 100).getState(), ProcessorPullState.FINISHED);
+            assertNull(restarted.get("wildfly", "wildfly", 101));
+        } finally {
+            file.delete();
+            log.delete();
+        }
+    }
+
+    @Test
+    public void testPullRequestsNoLongerOpenAreForgotten() throws IOException {
+        final File file = File.createTempFile("pull-state", ".properties");
+        file.delete();
+        final File log = new File(file.getPath() + ".log");
+        try {
+            final PullStateStore store = new PullStateStore(file, 100);
+            for (int i = 0; i < 3; i++) {
+                store.put("wildfly", "wildfly", 100 + i, entry(ProcessorPullState.NEW, i, null));
+            }
+            store.put("wildfly", "wildfly-core", 100, entry(ProcessorPullState.NEW, 3, null));
+
+            store.retain("WildFly", "WildFly", Arrays.asList(101));
+            assertNull(store.get("wildfly", "wildfly", 100));
+            assertEquals(store.get("wildfly", "wildfly", 101).getLastCommentId(), 1);
+            // another repository
+            assertEquals(store.get("wildfly", "wildfly-core", 100).getLastCommentId(), 3);
+
+            final PullStateStore restarted = new PullStateStore(file, 100);
+            assertEquals(restarted.size(), 2);
+            assertNull(restarted.get("wildfly", "wildfly", 102));
+        } finally {
+            file.delete();
+            log.delete();
+        }
+    }
+
+    @Test
+    public void testUpToDate() {
+        final PullStateStore.Entry entry = entry(ProcessorPullState.NEW, 10, null);
+        assertTrue(entry.isUpToDate(new Date(10000)));
+        assertFalse(entry.isUpToDate(new Date(10001)));
+        assertFalse(entry.isUpToDate(null));
+    }
+
+    private static PullStateStore.Entry entry(final ProcessorPullState state, final long lastCommentId,
+            final String forceMergedBy) {
+        return new PullStateStore.Entry(state, state, lastCommentId, forceMergedBy, "3a0d9e2c", new Date(lastCommentId * 1000));
+    }
+}
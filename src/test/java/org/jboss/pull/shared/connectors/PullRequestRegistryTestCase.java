@@ -0,0 +1,131 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.jboss.pull.shared.connectors.bugzilla.BZHelper;
+import org.jboss.pull.shared.connectors.github.GithubHelper;
+import org.jboss.pull.shared.connectors.jira.JiraHelper;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class PullRequestRegistryTestCase {
+    private GithubHelper ghHelper;
+    private PullRequestRegistry registry;
+
+    @BeforeMethod
+    public void setUp() {
+        ghHelper = mock(GithubHelper.class);
+        registry = new PullRequestRegistry(mock(BZHelper.class), mock(JiraHelper.class), ghHelper);
+    }
+
+    @Test
+    public void testUpstreamIsFetchedOnce() {
+        final PullRequest upstream = pull("wildfly", "wildfly", 100, "Upstream of the backports");
+        when(ghHelper.getPullRequest("wildfly", "wildfly", 100)).thenReturn(upstream);
+
+        final List<RedhatPullRequest> backports = new ArrayList<RedhatPullRequest>();
+        for (int i = 1; i <= 20; i++) {
+            backports.add(registry.register(pull("jbossas", "jboss-eap", i,
+                    "Upstream: https://github.com/wildfly/wildfly/pull/100")));
+        }
+
+        final RedhatPullRequest first = backports.get(0).getRelatedPullRequests().get(0);
+        for (RedhatPullRequest backport : backports) {
+            assertEquals(backport.getRelatedPullRequests().size(), 1);
+            assertSame(backport.getRelatedPullRequests().get(0), first);
+        }
+        verify(ghHelper, times(1)).getPullRequest("wildfly", "wildfly", 100);
+    }
+
+    @Test
+    public void testMutualReferencesDoNotLoop() {
+        when(ghHelper.getPullRequest("jbossas", "jboss-eap", 2)).thenReturn(
+                pull("jbossas", "jboss-eap", 2, "Follows https://github.com/jbossas/jboss-eap/pull/1"));
+        final RedhatPullRequest first = registry.register(pull("jbossas", "jboss-eap", 1,
+                "Needs https://github.com/jbossas/jboss-eap/pull/2"));
+
+        final RedhatPullRequest second = first.getRelatedPullRequests().get(0);
+        assertEquals(second.getNumber(), 2);
+        // the reference back resolves to the registered instance
+        assertSame(second.getRelatedPullRequests().get(0), first);
+
+        assertEquals(registry.getRelatedPullRequests(first, 10).size(), 1);
+        assertTrue(registry.getRelatedPullRequests(first, 10).contains(second));
+        verify(ghHelper, times(0)).getPullRequest("jbossas", "jboss-eap", 1);
+    }
+
+    @Test
+    public void testDepthIsBounded() {
+        for (int i = 2; i <= 4; i++) {
+            when(ghHelper.getPullRequest("jbossas", "jboss-eap", i)).thenReturn(
+                    pull("jbossas", "jboss-eap", i, "Next https://github.com/jbossas/jboss-eap/pull/" + (i + 1)));
+        }
+        final RedhatPullRequest root = registry.register(pull("jbossas", "jboss-eap", 1,
+                "Next https://github.com/jbossas/jboss-eap/pull/2"));
+
+        final List<Integer> numbers = new ArrayList<Integer>();
+        for (RedhatPullRequest related : registry.getRelatedPullRequests(root, 2)) {
+            numbers.add(related.getNumber());
+        }
+        assertEquals(numbers, Arrays.asList(2, 3));
+        verify(ghHelper, times(0)).getPullRequest("jbossas", "jboss-eap", 4);
+    }
+
+    @Test
+    public void testKnownMergedStatesAreNotFetched() {
+        when(ghHelper.getKnownMergedState("wildfly", "wildfly", 100)).thenReturn(Boolean.TRUE);
+        final RedhatPullRequest backport = registry.register(pull("jbossas", "jboss-eap", 1,
+                "Upstream: https://github.com/wildfly/wildfly/pull/100\nDepends on #2"));
+
+        final Map<String, Boolean> expected = new HashMap<String, Boolean>();
+        expected.put("wildfly/wildfly#100", Boolean.TRUE);
+        expected.put("jbossas/jboss-eap#2", null);
+        assertEquals(backport.getKnownRelatedMergedStates(), expected);
+        verify(ghHelper, never()).getPullRequest("wildfly", "wildfly", 100);
+        verify(ghHelper, never()).getPullRequest("jbossas", "jboss-eap", 2);
+    }
+
+    private static PullRequest pull(final String organization, final String repository, final int number,
+            final String body) {
+        final PullRequest pullRequest = new PullRequest();
+        pullRequest.setNumber(number);
+        pullRequest.setUrl("https://api.github.com/repos/" + organization + "/" + repository + "/pulls/" + number);
+        pullRequest.setBody(body);
+        return pullRequest;
+    }
+}
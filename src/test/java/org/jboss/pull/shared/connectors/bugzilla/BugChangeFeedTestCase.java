@@ -0,0 +1,163 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.bugzilla;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.pull.shared.internal.PropertiesFile;
+import org.testng.annotations.Test;
+
+public class BugChangeFeedTestCase {
+    private static final long NOW = TimeUnit.SECONDS.toMillis(1400000000L);
+    private static final long CHANGED = NOW - TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void testEqualLastChangeTimesAreReportedOnce() {
+        final StubBugsClient client = new StubBugsClient();
+        final BugChangeFeed feed = new BugChangeFeed(client, null, NOW);
+        feed.setTrackedIds(Arrays.asList(1, 2, 3));
+
+        client.respond(bug(1, CHANGED), bug(2, CHANGED));
+        assertEquals(feed.poll().keySet(), ids("1", "2"));
+        assertEquals(feed.getHighWaterMark(), new Date(CHANGED));
+
+        // the lower bound is inclusive, bugs at the mark come again
+        client.respond(bug(1, CHANGED), bug(2, CHANGED), bug(3, CHANGED));
+        assertEquals(feed.poll().keySet(), ids("3"));
+        assertEquals(client.searchedSince.get(1), new Date(CHANGED));
+
+        client.respond(bug(1, CHANGED), bug(2, CHANGED), bug(3, CHANGED + 1000));
+        assertEquals(feed.poll().keySet(), ids("3"));
+        assertEquals(feed.getHighWaterMark(), new Date(CHANGED + 1000));
+
+        // only bug 3 is at the new mark
+        client.respond(bug(1, CHANGED + 1000), bug(3, CHANGED + 1000));
+        assertEquals(feed.poll().keySet(), ids("1"));
+    }
+
+    @Test
+    public void testRestartContinuesFromStateFile() throws IOException {
+        final File file = File.createTempFile("bugzilla-feed", ".properties");
+        file.delete();
+        try {
+            final StubBugsClient client = new StubBugsClient();
+            final BugChangeFeed feed = new BugChangeFeed(client, new PropertiesFile(file), NOW);
+            feed.setTrackedIds(Arrays.asList(1, 2, 3));
+            client.respond(bug(1, CHANGED), bug(2, CHANGED));
+            feed.poll();
+
+            final BugChangeFeed restarted = new BugChangeFeed(client, new PropertiesFile(file), NOW);
+            restarted.setTrackedIds(Arrays.asList(1, 2, 3));
+            assertEquals(restarted.getHighWaterMark(), new Date(CHANGED));
+
+            client.respond(bug(1, CHANGED), bug(2, CHANGED), bug(3, CHANGED));
+            assertEquals(restarted.poll().keySet(), ids("3"));
+            assertEquals(client.searchedSince.get(1), new Date(CHANGED));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testEmptyResult() {
+        final StubBugsClient client = new StubBugsClient();
+        final BugChangeFeed feed = new BugChangeFeed(client, null, NOW);
+        final List<Map<String, Bug>> notified = new ArrayList<Map<String, Bug>>();
+        feed.addListener(new BugChangeFeed.Listener() {
+            @Override
+            public void bugsChanged(final Map<String, Bug> changed) {
+                notified.add(changed);
+            }
+        });
+
+        // nothing tracked, nothing searched
+        assertTrue(feed.poll().isEmpty());
+        assertTrue(client.searchedSince.isEmpty());
+
+        feed.setTrackedIds(Arrays.asList(1));
+        final Date mark = feed.getHighWaterMark();
+        assertEquals(mark, new Date(NOW - TimeUnit.DAYS.toMillis(1)));
+        client.respond();
+        assertTrue(feed.poll().isEmpty());
+        assertEquals(client.searchedSince, Arrays.asList(mark));
+        assertEquals(feed.getHighWaterMark(), mark);
+        assertTrue(notified.isEmpty());
+    }
+
+    private static Set<String> ids(final String... ids) {
+        return new HashSet<String>(Arrays.asList(ids));
+    }
+
+    private static Bug bug(final int id, final long lastChangeTime) {
+        final Map<String, Object> struct = new HashMap<String, Object>();
+        struct.put("id", id);
+        struct.put("last_change_time", new Date(lastChangeTime));
+        struct.put("status", Bug.Status.NEW.name());
+        for (String array : Arrays.asList("alias", "component", "version", "flags", "groups", "depends_on", "blocks",
+                "target_release")) {
+            struct.put(array, new Object[0]);
+        }
+        return new Bug(struct);
+    }
+
+    /**
+     * Answers the searches with the given bugs, in the order they were added.
+     */
+    private static class StubBugsClient extends BugsClient {
+        private final LinkedList<Map<String, Bug>> results = new LinkedList<Map<String, Bug>>();
+        private final List<Date> searchedSince = new ArrayList<Date>();
+
+        private StubBugsClient() {
+            super("https://bugzilla.redhat.com/", null, null);
+        }
+
+        void respond(final Bug... bugs) {
+            final Map<String, Bug> result = new HashMap<String, Bug>();
+            for (Bug bug : bugs) {
+                result.put(bug.getNumber(), bug);
+            }
+            results.add(result);
+        }
+
+        @Override
+        public Map<String, Bug> searchBugs(final Date lastChangeTime, final Collection<String> products,
+                final Collection<Integer> ids) {
+            searchedSince.add(lastChangeTime);
+            return results.removeFirst();
+        }
+    }
+}
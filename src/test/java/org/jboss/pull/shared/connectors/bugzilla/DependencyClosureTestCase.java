@@ -0,0 +1,129 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.bugzilla;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+public class DependencyClosureTestCase {
+
+    @Test
+    public void testBlockersAreFoundTransitively() {
+        final GraphClosure closure = new GraphClosure(Arrays.asList(1), DependencyClosure.DEFAULT_MAX_DEPTH);
+        // 1 <- 2 (tracker) <- 3 <- 4, 5 <- 6 is unrelated
+        closure.dependsOn(1, 2);
+        closure.dependsOn(2, 3);
+        closure.dependsOn(3, 4);
+        closure.dependsOn(5, 6);
+        closure.refresh();
+
+        assertEquals(closure.size(), 4);
+        assertTrue(closure.contains(1));
+        assertTrue(closure.contains(4));
+        assertFalse(closure.contains(5));
+        assertTrue(closure.containsAny(Arrays.asList(7, 3)));
+        assertFalse(closure.containsAny(Arrays.asList(5, 6)));
+        // one bulk request per level
+        assertEquals(closure.requests, 4);
+    }
+
+    @Test
+    public void testDepthIsLimited() {
+        final GraphClosure closure = new GraphClosure(Arrays.asList(1), 2);
+        closure.dependsOn(1, 2);
+        closure.dependsOn(2, 3);
+        closure.dependsOn(3, 4);
+        closure.refresh();
+
+        assertTrue(closure.contains(3));
+        assertFalse(closure.contains(4));
+    }
+
+    @Test
+    public void testCyclesAreWalkedOnce() {
+        final GraphClosure closure = new GraphClosure(Arrays.asList(1), 10);
+        closure.dependsOn(1, 2);
+        closure.dependsOn(2, 1);
+        closure.refresh();
+
+        assertEquals(closure.size(), 2);
+        assertEquals(closure.requests, 2);
+    }
+
+    @Test
+    public void testLargeLevelsAreSplit() {
+        final GraphClosure closure = new GraphClosure(Arrays.asList(1), 2);
+        for (int i = 2; i < DependencyClosure.BATCH_SIZE + 12; i++) {
+            closure.dependsOn(1, i);
+        }
+        closure.refresh();
+
+        assertEquals(closure.size(), DependencyClosure.BATCH_SIZE + 11);
+        assertEquals(closure.requests, 3);
+        for (Integer size : closure.sizes) {
+            assertTrue(size <= DependencyClosure.BATCH_SIZE);
+        }
+    }
+
+    private static class GraphClosure extends DependencyClosure {
+        private final Map<Integer, Set<Integer>> graph = new HashMap<Integer, Set<Integer>>();
+        private final List<Integer> sizes = new ArrayList<Integer>();
+        private int requests;
+
+        private GraphClosure(final List<Integer> roots, final int maxDepth) {
+            super(roots, maxDepth, 0);
+        }
+
+        private void dependsOn(final int bug, final int dependency) {
+            Set<Integer> dependencies = graph.get(bug);
+            if (dependencies == null) {
+                dependencies = new HashSet<Integer>();
+                graph.put(bug, dependencies);
+            }
+            dependencies.add(dependency);
+        }
+
+        @Override
+        protected Map<Integer, Set<Integer>> loadDependencies(final Set<Integer> ids) {
+            requests++;
+            sizes.add(ids.size());
+            final Map<Integer, Set<Integer>> result = new HashMap<Integer, Set<Integer>>();
+            for (Integer id : ids) {
+                final Set<Integer> dependencies = graph.get(id);
+                result.put(id, dependencies == null ? Collections.<Integer> emptySet() : dependencies);
+            }
+            return result;
+        }
+    }
+}
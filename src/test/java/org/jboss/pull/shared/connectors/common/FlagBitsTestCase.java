@@ -0,0 +1,82 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.common;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class FlagBitsTestCase {
+
+    @Test
+    public void testOnlyPositiveFlagsCount() {
+        final FlagBits required = FlagBits.of(Arrays.asList("pm_ack", "devel_ack", "qa_ack"));
+        final FlagBits positive = FlagBits.positiveOf(Arrays.asList(flag("pm_ack", Flag.Status.POSITIVE),
+                flag("devel_ack", Flag.Status.POSITIVE), flag("qa_ack", Flag.Status.UNSET)));
+
+        assertFalse(positive.containsAll(required));
+        assertEquals(positive.getMissing(required), Arrays.asList("qa_ack"));
+        assertTrue(positive.contains("pm_ack"));
+        assertFalse(positive.contains("qa_ack"));
+    }
+
+    @Test
+    public void testAllRequiredFlags() {
+        final FlagBits required = FlagBits.of(Arrays.asList("pm_ack", "jboss-eap-6.4.0"));
+        final FlagBits positive = FlagBits.positiveOf(Arrays.asList(flag("jboss-eap-6.4.0", Flag.Status.POSITIVE),
+                flag("pm_ack", Flag.Status.POSITIVE), flag("blocker", Flag.Status.POSITIVE)));
+
+        assertTrue(positive.containsAll(required));
+        assertTrue(positive.getMissing(required).isEmpty());
+        assertTrue(positive.containsAll(FlagBits.EMPTY));
+        assertFalse(FlagBits.EMPTY.containsAll(required));
+    }
+
+    @Test
+    public void testManyFlags() {
+        // more flags than fit into a single word
+        final List<String> names = new ArrayList<String>();
+        final List<Flag> flags = new ArrayList<Flag>();
+        for (int i = 0; i < 150; i++) {
+            names.add("flag-" + i);
+            flags.add(flag("flag-" + i, Flag.Status.POSITIVE));
+        }
+        final FlagBits required = FlagBits.of(names);
+        assertTrue(FlagBits.positiveOf(flags).containsAll(required));
+
+        flags.remove(140);
+        flags.remove(3);
+        assertEquals(FlagBits.positiveOf(flags).getMissing(required), Arrays.asList("flag-3", "flag-140"));
+        assertTrue(FlagBits.positiveOf(Collections.<Flag> emptyList()).isEmpty());
+    }
+
+    private static Flag flag(final String name, final Flag.Status status) {
+        return new Flag(name, "someone@redhat.com", status);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.git;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Runs against a local repository standing in for GitHub, no network is needed.
+ */
+public class GitMirrorTestCase {
+    private File root;
+    private File upstream;
+    private GitMirror mirror;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        root = File.createTempFile("git-mirror", "");
+        root.delete();
+        upstream = new File(root, "upstream");
+        upstream.mkdirs();
+
+        git("init", "--quiet");
+        git("config", "user.name", "Test");
+        git("config", "user.email", "test@example.org");
+        git("checkout", "--quiet", "-b", "master");
+        commit("initial");
+        // a pull request the way GitHub publishes it
+        git("checkout", "--quiet", "-b", "feature");
+        commit("fix");
+        git("update-ref", "refs/pull/1/head", "feature");
+        git("checkout", "--quiet", "master");
+
+        mirror = new GitMirror(new File(root, "mirror"), upstream.getAbsolutePath(), 0);
+        mirror.refresh();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        delete(root);
+    }
+
+    @Test
+    public void testUnmergedPullRequest() {
+        assertTrue(mirror.getPullRequestHead(1) != null);
+        assertFalse(mirror.isPullRequestMerged(1, "master"));
+        assertTrue(mirror.isPullRequestMerged(1, "feature"));
+    }
+
+    @Test
+    public void testMergeIsSeenAfterRefresh() throws Exception {
+        git("merge", "--quiet", "--no-ff", "-m", "Merge pull request #1", "feature");
+        assertFalse(mirror.isPullRequestMerged(1, "master"));
+
+        mirror.refreshIfStale();
+        assertTrue(mirror.isPullRequestMerged(1, "master"));
+        assertTrue(mirror.isCommitMerged(mirror.getPullRequestHead(1).substring(0, 10), "master"));
+    }
+
+    @Test
+    public void testUnknownReferences() {
+        assertNull(mirror.getPullRequestHead(2));
+        assertFalse(mirror.isPullRequestMerged(2, "master"));
+        assertFalse(mirror.isCommitMerged("0123456789abcdef0123456789abcdef01234567", "master"));
+    }
+
+    @Test
+    public void testMirrorIsShared() {
+        final File directory = new File(root, "shared");
+        assertEquals(GitMirror.forDirectory(directory, upstream.getAbsolutePath(), 0),
+                GitMirror.forDirectory(directory, upstream.getAbsolutePath(), 0));
+    }
+
+    private void commit(final String message) throws Exception {
+        git("commit", "--quiet", "--allow-empty", "-m", message);
+    }
+
+    private void git(final String... args) throws IOException, InterruptedException {
+        final String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+        final ProcessBuilder builder = new ProcessBuilder(command).directory(upstream).redirectErrorStream(true);
+        final Process process = builder.start();
+        while (process.getInputStream().read() != -1) {
+        }
+        if (process.waitFor() != 0)
+            throw new IllegalStateException("Failed: " + Arrays.asList(command));
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.eclipse.egit.github.core.Comment;
+import org.jboss.pull.shared.BuildResult;
+import org.testng.annotations.Test;
+
+public class BuildOutcomeIndexTestCase {
+    private static final String FIRST_HEAD = "3a0d9e2c11f4b5a6c7d8e9f0a1b2c3d4e5f6a7b8";
+    private static final String SECOND_HEAD = "8f3c1f4a21d2b0d5a4b6e1f7c9a2d3e4f5a6b7c8";
+
+    @Test
+    public void testOutcomesByCommit() {
+        final BuildOutcomeIndex index = new BuildOutcomeIndex();
+        index.add(Arrays.asList(comment(1, "Build 12 outcome was **FAILURE** using a merge of 3a0d9e2c"),
+                comment(2, "retest this please"),
+                comment(3, "Build 13 outcome was SUCCESS using a merge of 8f3c1f4a21d2")), new Date(3000));
+
+        assertEquals(index.getLatest(), BuildResult.SUCCESS);
+        assertEquals(index.get(FIRST_HEAD), BuildResult.FAILURE);
+        assertEquals(index.get(SECOND_HEAD), BuildResult.SUCCESS);
+        assertEquals(index.get("0000000000000000000000000000000000000000"), BuildResult.UNKNOWN);
+    }
+
+    @Test
+    public void testIncrementalUpdate() {
+        final BuildOutcomeIndex index = new BuildOutcomeIndex();
+        index.add(Arrays.asList(comment(1, "Build 12 outcome was FAILURE using a merge of 3a0d9e2c")), new Date(1000));
+        assertTrue(index.isUpToDate(new Date(1000)));
+        assertFalse(index.isUpToDate(new Date(2000)));
+        assertEquals(index.getLastCommentAt(), new Date(1000));
+
+        // the fetch since the last comment returns it again
+        index.add(Arrays.asList(comment(1, "Build 12 outcome was FAILURE using a merge of 3a0d9e2c"),
+                comment(2, "Build 14 outcome was ABORTED using a merge of 3a0d9e2c")), new Date(2000));
+        assertEquals(index.get(FIRST_HEAD), BuildResult.ABORTED);
+        assertTrue(index.isUpToDate(new Date(2000)));
+    }
+
+    @Test
+    public void testMostSpecificAbbreviationWins() {
+        final BuildOutcomeIndex index = new BuildOutcomeIndex();
+        index.add(Arrays.asList(comment(1, "Build 12 outcome was SUCCESS using a merge of 3a0d9e2c11f4"),
+                comment(2, "Build 13 outcome was FAILURE using a merge of 3a0d9e2c"),
+                comment(3, "Build 14 outcome was ABORTED using a merge of 3a0dffff")), new Date(3000));
+
+        assertEquals(index.get(FIRST_HEAD), BuildResult.SUCCESS);
+        assertEquals(index.get("3a0d9e2c"), BuildResult.FAILURE);
+        // both abbreviations are as long, the latest reported wins
+        assertEquals(index.get("3a0d"), BuildResult.ABORTED);
+    }
+
+    private static Comment comment(final long id, final String body) {
+        final Comment comment = new Comment();
+        comment.setId(id);
+        comment.setBody(body);
+        comment.setCreatedAt(new Date(id * 1000));
+        return comment;
+    }
+}
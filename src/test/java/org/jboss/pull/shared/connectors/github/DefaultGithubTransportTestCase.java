@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPOutputStream;
+
+import org.testng.annotations.Test;
+
+public class DefaultGithubTransportTestCase {
+
+    @Test
+    public void testGzipResponseIsDecoded() throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        final GZIPOutputStream out = new GZIPOutputStream(compressed);
+        out.write("{\"number\":1}".getBytes("UTF-8"));
+        out.close();
+
+        final InputStream stream = new DefaultGithubTransport().getResponseStream(response("gzip"),
+                new ByteArrayInputStream(compressed.toByteArray()));
+        assertEquals(read(stream), "{\"number\":1}");
+    }
+
+    @Test
+    public void testPlainAndEmptyResponses() throws IOException {
+        final DefaultGithubTransport transport = new DefaultGithubTransport();
+        assertEquals(read(transport.getResponseStream(response(null), new ByteArrayInputStream("[]".getBytes("UTF-8")))),
+                "[]");
+        assertEquals(read(transport.getResponseStream(response("gzip"), new ByteArrayInputStream(new byte[0]))), "");
+    }
+
+    @Test
+    public void testRequestAsksForGzip() throws IOException {
+        final HttpURLConnection connection = new DefaultGithubTransport().openConnection(new URL(
+                "https://api.github.com/repos/wildfly/wildfly/pulls"), "POST");
+        assertEquals(connection.getRequestMethod(), "POST");
+        assertEquals(connection.getRequestProperty("Accept-Encoding"), "gzip");
+    }
+
+    private static HttpURLConnection response(final String contentEncoding) throws IOException {
+        return new HttpURLConnection(new URL("https://api.github.com/")) {
+            @Override
+            public String getContentEncoding() {
+                return contentEncoding;
+            }
+
+            @Override
+            public void connect() {
+            }
+
+            @Override
+            public void disconnect() {
+            }
+
+            @Override
+            public boolean usingProxy() {
+                return false;
+            }
+        };
+    }
+
+    private static String read(final InputStream stream) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,435 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import org.eclipse.egit.github.core.Issue;
+import org.eclipse.egit.github.core.Label;
+import org.eclipse.egit.github.core.Milestone;
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.RepositoryBranch;
+import org.eclipse.egit.github.core.client.GsonUtils;
+import org.testng.annotations.Test;
+
+/**
+ * Stress tests of the state a {@link GithubHelper} shares between the threads processing pull requests.
+ */
+public class GithubConcurrencyTestCase {
+    private static final int THREADS = 16;
+    private static final int ITERATIONS = 500;
+    // each one a few requests
+    private static final int MUTATIONS = 50;
+
+    @Test
+    public void testMergedStates() throws Throwable {
+        final MergedStateStore store = new MergedStateStore(null, 60000);
+        runConcurrently(new Task() {
+            @Override
+            public void run(final int thread) {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    final int number = thread * ITERATIONS + i;
+                    store.put("wildfly/wildfly", number, false);
+                    store.put("wildfly/wildfly", number, i % 2 == 0);
+                    // another thread's pull request
+                    store.get("wildfly/wildfly", (number + ITERATIONS) % (THREADS * ITERATIONS));
+                }
+            }
+        });
+
+        for (int number = 0; number < THREADS * ITERATIONS; number++) {
+            assertEquals(store.get("wildfly/wildfly", number), Boolean.valueOf(number % ITERATIONS % 2 == 0));
+        }
+    }
+
+    @Test
+    public void testWriteCache() throws Throwable {
+        final GithubWriteCache cache = new GithubWriteCache(null);
+        runConcurrently(new Task() {
+            @Override
+            public void run(final int thread) {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    cache.statusPosted("wildfly/wildfly", "sha" + thread, "default", "pending", null);
+                    cache.statusPosted("wildfly/wildfly", "sha" + thread, "default", "state" + i, null);
+                    cache.commentPosted("wildfly/wildfly", thread, "comment " + i);
+                    assertTrue(cache.isCommentPosted("wildfly/wildfly", thread, "comment " + i));
+                }
+            }
+        });
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            assertTrue(cache.isStatusPosted("wildfly/wildfly", "sha" + thread, "default", "state" + (ITERATIONS - 1),
+                    null));
+        }
+    }
+
+    @Test
+    public void testMetadataInvalidatedWhileRead() throws Throwable {
+        final AtomicInteger loads = new AtomicInteger();
+        final RepositoryMetadataCache cache = new RepositoryMetadataCache(60000) {
+            @Override
+            protected List<RepositoryBranch> loadBranches() throws IOException {
+                return new ArrayList<RepositoryBranch>();
+            }
+
+            @Override
+            protected List<Milestone> loadMilestones() throws IOException {
+                return new ArrayList<Milestone>();
+            }
+
+            @Override
+            protected List<Label> loadLabels() throws IOException {
+                loads.incrementAndGet();
+                final List<Label> labels = new ArrayList<Label>();
+                labels.add(new Label().setName("needs review"));
+                return labels;
+            }
+        };
+        runConcurrently(new Task() {
+            @Override
+            public void run(final int thread) {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    if (thread == 0 && i % 10 == 0)
+                        cache.invalidateLabels();
+                    assertNotNull(cache.getLabel("needs review"));
+                }
+            }
+        });
+
+        assertTrue(loads.get() > 1);
+        assertTrue(loads.get() <= ITERATIONS / 10 + 1);
+    }
+
+    @Test
+    public void testMutationsOfTheSameIssue() throws Throwable {
+        StubGithubTransport.reset(1);
+        final GithubHelper helper = createHelper();
+        final PullRequest pullRequest = pullRequest(1);
+        runConcurrently(new Task() {
+            @Override
+            public void run(final int thread) {
+                for (int i = 0; i < MUTATIONS; i++) {
+                    assertNotNull(helper.mutate(pullRequest).addLabel("added-" + thread)
+                            .setMilestone(milestone(thread + 1)).apply());
+                    assertNotNull(helper.mutate(pullRequest).removeLabel("added-" + thread).apply());
+                }
+                assertNotNull(helper.mutate(pullRequest).addLabel("kept-" + thread).apply());
+            }
+        });
+
+        final Set<String> expected = new HashSet<String>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            expected.add("kept-" + thread);
+        }
+        final Issue issue = StubGithubTransport.getIssue(1);
+        assertEquals(labelNames(issue), expected);
+        assertNotNull(issue.getMilestone());
+        assertSameState(helper.mutate(pullRequest).apply(), issue);
+    }
+
+    @Test
+    public void testMutationsOfDifferentIssues() throws Throwable {
+        // the issues of threads 0 and 2, 1 and 3 and so on share a lock
+        final int[] numbers = new int[THREADS];
+        for (int thread = 0; thread < THREADS; thread++) {
+            numbers[thread] = 1 + thread * 32;
+        }
+        StubGithubTransport.reset(numbers);
+        final GithubHelper helper = createHelper();
+        runConcurrently(new Task() {
+            @Override
+            public void run(final int thread) {
+                final PullRequest pullRequest = pullRequest(numbers[thread]);
+                for (int i = 0; i < MUTATIONS; i++) {
+                    assertNotNull(helper.mutate(pullRequest).addLabel("added").setMilestone(milestone(i % 3 + 1))
+                            .apply());
+                    assertNotNull(helper.mutate(pullRequest).removeLabel("added").apply());
+                }
+                assertNotNull(helper.mutate(pullRequest).addLabel("kept").setMilestone(milestone(MUTATIONS)).apply());
+            }
+        });
+
+        for (int number : numbers) {
+            final Issue issue = StubGithubTransport.getIssue(number);
+            assertEquals(labelNames(issue), new HashSet<String>(Arrays.asList("kept")));
+            assertEquals(issue.getMilestone().getNumber(), MUTATIONS);
+            assertSameState(helper.mutate(pullRequest(number)).apply(), issue);
+        }
+    }
+
+    /**
+     * Checks that the issue as cached by the helper is the one GitHub has, so that no later change is skipped.
+     */
+    private static void assertSameState(final Issue cached, final Issue issue) {
+        assertNotNull(cached);
+        assertEquals(labelNames(cached), labelNames(issue));
+        assertEquals(cached.getMilestone() == null ? 0 : cached.getMilestone().getNumber(),
+                issue.getMilestone() == null ? 0 : issue.getMilestone().getNumber());
+    }
+
+    private static Set<String> labelNames(final Issue issue) {
+        final Set<String> names = new HashSet<String>();
+        for (Label label : issue.getLabels()) {
+            names.add(label.getName());
+        }
+        return names;
+    }
+
+    private static PullRequest pullRequest(final int number) {
+        return new PullRequest().setNumber(number).setUpdatedAt(StubGithubTransport.CREATED)
+                .setIssueUrl("https://api.github.com/repos/jbossas/jboss-eap/issues/" + number);
+    }
+
+    private static Milestone milestone(final int number) {
+        return new Milestone().setNumber(number);
+    }
+
+    private static GithubHelper createHelper() throws Exception {
+        final Properties configuration = new Properties();
+        configuration.setProperty("github.organization", "jbossas");
+        configuration.setProperty("github.repo", "jboss-eap");
+        configuration.setProperty("github.login", "jbossas-bot");
+        configuration.setProperty("github.token", "a1b2c3");
+        configuration.setProperty("github.scheduler.write.interval", "0");
+        configuration.setProperty("github.transport.factory", StubGithubTransport.class.getName());
+
+        final File file = File.createTempFile("github", ".properties");
+        try {
+            final OutputStream out = new FileOutputStream(file);
+            try {
+                configuration.store(out, null);
+            } finally {
+                out.close();
+            }
+            return new GithubHelper("github.stress.configuration", file.getPath());
+        } finally {
+            file.delete();
+        }
+    }
+
+    private interface Task {
+        void run(int thread) throws Exception;
+    }
+
+    /**
+     * Runs the task in {@link #THREADS} threads started together and rethrows the first failure.
+     */
+    private static void runConcurrently(final Task task) throws Throwable {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < THREADS; i++) {
+            final int thread = i;
+            threads.add(new Thread("stress-" + i) {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        task.run(thread);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null)
+            throw failure.get();
+    }
+
+    /**
+     * Keeps the labels and milestones of the issues and answers the requests of
+     * {@link GithubHelper#apply(IssueMutation)} as GitHub does. Created by the helper, hence the state is static.
+     */
+    public static class StubGithubTransport implements GithubTransport {
+        static final Date CREATED = new Date(1400000000000L);
+        private static final Pattern ISSUE = Pattern.compile(
+                "/repos/jbossas/jboss-eap/issues/(\\d+)(/labels(/(.+))?)?");
+
+        private static final Map<Integer, Issue> issues = new HashMap<Integer, Issue>();
+        private static final Set<String> labels = new HashSet<String>();
+        private static int changes;
+
+        static synchronized void reset(final int... numbers) {
+            issues.clear();
+            labels.clear();
+            for (int number : numbers) {
+                issues.put(number, new Issue().setNumber(number).setLabels(new ArrayList<Label>())
+                        .setUpdatedAt(CREATED));
+            }
+        }
+
+        static synchronized Issue getIssue(final int number) {
+            return issues.get(number);
+        }
+
+        @Override
+        public void init(final Properties configuration) {
+        }
+
+        @Override
+        public HttpURLConnection openConnection(final URL url, final String method) throws IOException {
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            final HttpURLConnection connection = new HttpURLConnection(url) {
+                private int code;
+                private byte[] content;
+
+                @Override
+                public void connect() {
+                }
+
+                @Override
+                public void disconnect() {
+                }
+
+                @Override
+                public boolean usingProxy() {
+                    return false;
+                }
+
+                @Override
+                public OutputStream getOutputStream() {
+                    return body;
+                }
+
+                @Override
+                public int getResponseCode() throws IOException {
+                    if (content == null) {
+                        final Object[] response = respond(getRequestMethod(), url.getPath(),
+                                body.toString("UTF-8"));
+                        code = (Integer) response[0];
+                        content = ((String) response[1]).getBytes("UTF-8");
+                    }
+                    return code;
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    getResponseCode();
+                    return new ByteArrayInputStream(content);
+                }
+
+                @Override
+                public InputStream getErrorStream() {
+                    return new ByteArrayInputStream(content);
+                }
+            };
+            connection.setRequestMethod(method);
+            return connection;
+        }
+
+        @Override
+        public InputStream getResponseStream(final HttpURLConnection connection, final InputStream stream) {
+            return stream;
+        }
+
+        private static synchronized Object[] respond(final String method, final String path, final String body) {
+            if ("GET".equals(method) && path.equals("/repos/jbossas/jboss-eap/labels")) {
+                final List<Label> known = new ArrayList<Label>();
+                for (String name : labels) {
+                    known.add(new Label().setName(name));
+                }
+                return new Object[] { 200, GsonUtils.toJson(known) };
+            }
+
+            final Matcher matcher = ISSUE.matcher(path);
+            final Issue issue = matcher.matches() ? issues.get(Integer.parseInt(matcher.group(1))) : null;
+            if (issue == null)
+                return new Object[] { 404, "{\"message\":\"Not Found\"}" };
+
+            final List<Label> issueLabels = new ArrayList<Label>(issue.getLabels());
+            if (matcher.group(2) == null) {
+                if ("POST".equals(method)) {
+                    final JsonElement milestone = new JsonParser().parse(body).getAsJsonObject().get("milestone");
+                    issue.setMilestone(milestone == null || milestone.isJsonNull() ? null : milestone(milestone
+                            .getAsInt()));
+                    changed(issue);
+                }
+                return new Object[] { 200, GsonUtils.toJson(issue) };
+            }
+
+            if ("POST".equals(method)) {
+                for (String name : GsonUtils.fromJson(body, String[].class)) {
+                    labels.add(name);
+                    if (!labelNames(issue).contains(name))
+                        issueLabels.add(new Label().setName(name));
+                }
+                issue.setLabels(issueLabels);
+                changed(issue);
+                return new Object[] { 200, GsonUtils.toJson(issueLabels) };
+            }
+
+            if ("DELETE".equals(method) && matcher.group(4) != null) {
+                for (Label label : issue.getLabels()) {
+                    if (label.getName().equals(matcher.group(4))) {
+                        issueLabels.remove(label);
+                        issue.setLabels(issueLabels);
+                        changed(issue);
+                        return new Object[] { 204, "" };
+                    }
+                }
+                return new Object[] { 404, "{\"message\":\"Label does not exist\"}" };
+            }
+            return new Object[] { 404, "{\"message\":\"Not Found\"}" };
+        }
+
+        private static void changed(final Issue issue) {
+            issue.setUpdatedAt(new Date(CREATED.getTime() + TimeUnit.SECONDS.toMillis(++changes)));
+        }
+    }
+}
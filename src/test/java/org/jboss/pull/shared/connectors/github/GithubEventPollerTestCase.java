@@ -0,0 +1,215 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Polls recorded responses of the repository events API.
+ */
+public class GithubEventPollerTestCase {
+
+    private RecordedTransport transport;
+    private GithubEventPoller poller;
+    private long now;
+
+    @BeforeMethod
+    public void setUp() {
+        transport = new RecordedTransport();
+        now = 1000000;
+        final ScheduledGitHubClient client = new ScheduledGitHubClient(new GithubTokenPool(Arrays.asList("a1b2c3"), 10,
+                0), transport);
+        poller = new GithubEventPoller(client, "jbossas", "jboss-eap") {
+            @Override
+            protected long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void testFirstPollEstablishesBaseline() throws IOException {
+        transport.respond(200, "events.json", "\"a1\"");
+
+        assertTrue(poller.poll().isEmpty());
+        assertTrue(poller.hasMissedEvents());
+        assertEquals(transport.url.getPath(), "/repos/jbossas/jboss-eap/events");
+        assertNull(transport.ifNoneMatch);
+    }
+
+    @Test
+    public void testNotModified() throws IOException {
+        transport.respond(200, "events.json", "\"a1\"");
+        poller.poll();
+
+        // GitHub asked to wait for a minute
+        now += 59000;
+        assertTrue(poller.poll().isEmpty());
+        assertEquals(transport.requests, 1);
+
+        now += 1000;
+        transport.respond(304, null, "\"a1\"");
+        assertTrue(poller.poll().isEmpty());
+        assertFalse(poller.hasMissedEvents());
+        assertEquals(transport.requests, 2);
+        assertEquals(transport.ifNoneMatch, "\"a1\"");
+    }
+
+    @Test
+    public void testPollStopsAtPreviousEvent() throws IOException {
+        transport.respond(200, "events.json", "\"a1\"");
+        poller.poll();
+
+        now += 60000;
+        transport.respond(200, "events_newer.json", "\"a2\"");
+        final List<PullRequestChange> changes = poller.poll();
+        assertFalse(poller.hasMissedEvents());
+        assertEquals(describe(changes), Arrays.asList("7422 OPENED", "7421 CLOSED", "7422 COMMENTED"));
+        assertEquals(transport.ifNoneMatch, "\"a1\"");
+    }
+
+    @Test
+    public void testOverflowIsReportedAsMissedEvents() throws IOException {
+        transport.respond(200, "events.json", "\"a1\"");
+        poller.poll();
+
+        now += 60000;
+        transport.respond(200, "events_overflow.json", "\"a3\"");
+        final List<PullRequestChange> changes = poller.poll();
+        assertTrue(poller.hasMissedEvents());
+        assertEquals(describe(changes), Arrays.asList("7423 SYNCHRONIZED", "7423 COMMENTED", "7424 OPENED"));
+    }
+
+    @Test
+    public void testQuietRepository() throws IOException {
+        transport.respond(200, "events_empty.json", "\"a0\"");
+        assertTrue(poller.poll().isEmpty());
+        assertTrue(poller.hasMissedEvents());
+
+        now += 60000;
+        transport.respond(304, null, "\"a0\"");
+        poller.poll();
+        assertFalse(poller.hasMissedEvents());
+
+        // everything since the empty first poll is new
+        now += 60000;
+        transport.respond(200, "events.json", "\"a1\"");
+        final List<PullRequestChange> changes = poller.poll();
+        assertFalse(poller.hasMissedEvents());
+        assertEquals(describe(changes), Arrays.asList("7421 OPENED", "7421 COMMENTED"));
+    }
+
+    private static List<String> describe(final List<PullRequestChange> changes) {
+        final List<String> descriptions = new ArrayList<String>();
+        for (PullRequestChange change : changes) {
+            descriptions.add(change.getNumber() + " " + change.getType());
+        }
+        return descriptions;
+    }
+
+    /**
+     * Answers the requests with the recorded responses, in the order they were added.
+     */
+    private static class RecordedTransport implements GithubTransport {
+        private final LinkedList<Object[]> responses = new LinkedList<Object[]>();
+        private URL url;
+        private String ifNoneMatch;
+        private int requests;
+
+        void respond(final int code, final String resource, final String etag) {
+            responses.add(new Object[] { code, resource, etag });
+        }
+
+        @Override
+        public void init(final Properties configuration) {
+        }
+
+        @Override
+        public HttpURLConnection openConnection(final URL url, final String method) throws IOException {
+            this.url = url;
+            requests++;
+            final Object[] response = responses.removeFirst();
+            final int code = (Integer) response[0];
+            final String resource = (String) response[1];
+            final String etag = (String) response[2];
+            return new HttpURLConnection(url) {
+                @Override
+                public void connect() {
+                    ifNoneMatch = getRequestProperty("If-None-Match");
+                }
+
+                @Override
+                public void disconnect() {
+                }
+
+                @Override
+                public boolean usingProxy() {
+                    return false;
+                }
+
+                @Override
+                public int getResponseCode() {
+                    connect();
+                    return code;
+                }
+
+                @Override
+                public String getHeaderField(final String name) {
+                    if ("ETag".equalsIgnoreCase(name))
+                        return etag;
+                    if ("X-Poll-Interval".equalsIgnoreCase(name))
+                        return "60";
+                    return null;
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    if (resource == null)
+                        return new ByteArrayInputStream(new byte[0]);
+                    return GithubEventPollerTestCase.class.getResourceAsStream("/events/" + resource);
+                }
+            };
+        }
+
+        @Override
+        public InputStream getResponseStream(final HttpURLConnection connection, final InputStream stream) {
+            return stream;
+        }
+    }
+}
@@ -21,11 +21,34 @@
  */
 package org.jboss.pull.shared.connectors.github;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.eclipse.egit.github.core.Comment;
+import org.eclipse.egit.github.core.CommitStatus;
 import org.eclipse.egit.github.core.Label;
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.PullRequestMarker;
+import org.eclipse.egit.github.core.User;
+import org.eclipse.egit.github.core.client.GsonUtils;
 import org.jboss.pull.shared.PullHelper;
 import org.testng.annotations.Test;
 
@@ -40,4 +63,187 @@ public class GithubHelperTestCase {
         final Label label = helper.getLabel("with a space");
         assertNotNull(label);
     }
+
+    @Test
+    public void testLabelPathSegment() {
+        assertEquals(GithubHelper.encodePathSegment("with a space"), "with%20a%20space");
+        assertEquals(GithubHelper.encodePathSegment("a/b#c?d%e+f"), "a%2Fb%23c%3Fd%25e%2Bf");
+        assertEquals(GithubHelper.encodePathSegment("caf\u00e9"), "caf%C3%A9");
+    }
+
+    @Test
+    public void testCommentIsPostedAgainAfterSomebodyElseCommented() throws Exception {
+        RecordedGithubTransport.reset();
+        final GithubHelper helper = createHelper();
+        final PullRequest pull = new PullRequest().setNumber(7);
+
+        helper.postGithubComment(pull, "Build started");
+        helper.postGithubComment(pull, "Build started");
+        assertEquals(RecordedGithubTransport.getComments(), Arrays.asList("jbossas-bot: Build started"));
+
+        RecordedGithubTransport.comment("someone", "Retest please");
+        helper.postGithubComment(pull, "Build started");
+        assertEquals(RecordedGithubTransport.getComments(), Arrays.asList("jbossas-bot: Build started",
+                "someone: Retest please", "jbossas-bot: Build started"));
+    }
+
+    @Test
+    public void testStatusIsPostedAgainAfterSomebodyElsePostedOne() throws Exception {
+        RecordedGithubTransport.reset();
+        final GithubHelper helper = createHelper();
+        final PullRequest pull = new PullRequest().setNumber(7).setHead(new PullRequestMarker().setSha("3a0d9e2c"));
+
+        helper.postGithubStatus(pull, "http://ci/1", "pending");
+        helper.postGithubStatus(pull, "http://ci/1", "pending");
+        assertEquals(RecordedGithubTransport.getStatuses(), Arrays.asList("jbossas-bot: pending"));
+
+        RecordedGithubTransport.status("someone", "failure");
+        helper.postGithubStatus(pull, "http://ci/1", "pending");
+        assertEquals(RecordedGithubTransport.getStatuses(), Arrays.asList("jbossas-bot: pending", "someone: failure",
+                "jbossas-bot: pending"));
+    }
+
+    private static GithubHelper createHelper() throws Exception {
+        final Properties configuration = new Properties();
+        configuration.setProperty("github.organization", "jbossas");
+        configuration.setProperty("github.repo", "jboss-eap");
+        configuration.setProperty("github.login", "jbossas-bot");
+        configuration.setProperty("github.token", "a1b2c3");
+        configuration.setProperty("github.scheduler.write.interval", "0");
+        configuration.setProperty("github.transport.factory", RecordedGithubTransport.class.getName());
+
+        final File file = File.createTempFile("github", ".properties");
+        try {
+            final OutputStream out = new FileOutputStream(file);
+            try {
+                configuration.store(out, null);
+            } finally {
+                out.close();
+            }
+            return new GithubHelper("github.writes.configuration", file.getPath());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Keeps the comments of pull request 7 and the statuses of commit {@code 3a0d9e2c} as GitHub does, whoever posts
+     * them. Created by the helper, hence the state is static.
+     */
+    public static class RecordedGithubTransport implements GithubTransport {
+        private static final String COMMENTS = "/repos/jbossas/jboss-eap/issues/7/comments";
+        private static final String STATUSES = "/repos/jbossas/jboss-eap/commits/3a0d9e2c/statuses";
+        private static final String NEW_STATUS = "/repos/jbossas/jboss-eap/statuses/3a0d9e2c";
+
+        // the oldest first
+        private static final List<Comment> comments = new ArrayList<Comment>();
+        // the newest first
+        private static final LinkedList<CommitStatus> statuses = new LinkedList<CommitStatus>();
+
+        static synchronized void reset() {
+            comments.clear();
+            statuses.clear();
+        }
+
+        static synchronized void comment(final String login, final String body) {
+            comments.add(new Comment().setId(comments.size() + 1).setUser(new User().setLogin(login)).setBody(body));
+        }
+
+        static synchronized void status(final String login, final String state) {
+            statuses.addFirst(new CommitStatus().setCreator(new User().setLogin(login)).setState(state));
+        }
+
+        static synchronized List<String> getComments() {
+            final List<String> posted = new ArrayList<String>();
+            for (Comment comment : comments) {
+                posted.add(comment.getUser().getLogin() + ": " + comment.getBody());
+            }
+            return posted;
+        }
+
+        static synchronized List<String> getStatuses() {
+            final List<String> posted = new ArrayList<String>();
+            for (CommitStatus status : statuses) {
+                posted.add(0, status.getCreator().getLogin() + ": " + status.getState());
+            }
+            return posted;
+        }
+
+        @Override
+        public void init(final Properties configuration) {
+        }
+
+        @Override
+        public HttpURLConnection openConnection(final URL url, final String method) throws IOException {
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            final HttpURLConnection connection = new HttpURLConnection(url) {
+                private int code;
+                private byte[] content;
+
+                @Override
+                public void connect() {
+                }
+
+                @Override
+                public void disconnect() {
+                }
+
+                @Override
+                public boolean usingProxy() {
+                    return false;
+                }
+
+                @Override
+                public OutputStream getOutputStream() {
+                    return body;
+                }
+
+                @Override
+                public int getResponseCode() throws IOException {
+                    if (content == null) {
+                        final String response = respond(getRequestMethod(), url.getPath(), body.toString("UTF-8"));
+                        code = response == null ? 404 : 200;
+                        content = (response == null ? "{\"message\":\"Not Found\"}" : response).getBytes("UTF-8");
+                    }
+                    return code;
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    getResponseCode();
+                    return new ByteArrayInputStream(content);
+                }
+
+                @Override
+                public InputStream getErrorStream() {
+                    return new ByteArrayInputStream(content);
+                }
+            };
+            connection.setRequestMethod(method);
+            return connection;
+        }
+
+        @Override
+        public InputStream getResponseStream(final HttpURLConnection connection, final InputStream stream) {
+            return stream;
+        }
+
+        private static synchronized String respond(final String method, final String path, final String body) {
+            if (path.equals(COMMENTS)) {
+                if ("POST".equals(method))
+                    comment("jbossas-bot", new JsonParser().parse(body).getAsJsonObject().get("body").getAsString());
+                return GsonUtils.toJson("POST".equals(method) ? comments.get(comments.size() - 1) : comments);
+            }
+            if (path.equals(STATUSES) && "GET".equals(method))
+                return GsonUtils.toJson(statuses);
+            if (path.equals(NEW_STATUS) && "POST".equals(method)) {
+                final JsonObject params = new JsonParser().parse(body).getAsJsonObject();
+                status("jbossas-bot", params.get("state").getAsString());
+                statuses.getFirst().setTargetUrl(
+                        params.has("target_url") ? params.get("target_url").getAsString() : null);
+                return GsonUtils.toJson(statuses.getFirst());
+            }
+            return null;
+        }
+    }
 }
@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+public class GithubRequestSchedulerTestCase {
+    private static final long NOW = TimeUnit.SECONDS.toMillis(1400000000L);
+    private static final long RESET = 1400000000L + 3600;
+
+    @Test
+    public void testUnknownQuotaIsNotDelayed() {
+        final GithubRequestScheduler scheduler = new FixedTimeScheduler(10, 1000);
+        assertEquals(scheduler.delay(false, NOW), 0);
+        assertEquals(scheduler.delay(true, NOW), 0);
+    }
+
+    @Test
+    public void testReadsAreNotPacedWhileQuotaIsPlentiful() {
+        final GithubRequestScheduler scheduler = new FixedTimeScheduler(10, 1000);
+        scheduler.update(4000, 5000, RESET);
+        scheduler.reserve(false, NOW);
+        assertEquals(scheduler.delay(false, NOW), 0);
+    }
+
+    @Test
+    public void testReadsArePacedOverTheWindow() {
+        final GithubRequestScheduler scheduler = new FixedTimeScheduler(10, 1000);
+        scheduler.update(1211, 5000, RESET);
+        scheduler.reserve(false, NOW);
+        // 1200 reads left for one hour
+        assertEquals(scheduler.delay(false, NOW), 3000);
+        assertEquals(scheduler.delay(false, NOW + 3000), 0);
+    }
+
+    @Test
+    public void testReserveIsKeptForWrites() {
+        final GithubRequestScheduler scheduler = new FixedTimeScheduler(10, 1000);
+        scheduler.update(10, 5000, RESET);
+        assertEquals(scheduler.delay(false, NOW), TimeUnit.HOURS.toMillis(1));
+        assertEquals(scheduler.delay(true, NOW), 0);
+
+        scheduler.reserve(true, NOW);
+        assertEquals(scheduler.delay(true, NOW), 1000);
+        assertEquals(scheduler.getRemaining(), 9);
+    }
+
+    @Test
+    public void testExhaustedQuotaWaitsForReset() {
+        final GithubRequestScheduler scheduler = new FixedTimeScheduler(10, 1000);
+        scheduler.update(0, 5000, RESET);
+        assertEquals(scheduler.delay(true, NOW), TimeUnit.HOURS.toMillis(1));
+        // a new window has started
+        assertEquals(scheduler.delay(true, NOW + TimeUnit.HOURS.toMillis(1)), 0);
+        assertEquals(scheduler.delay(false, NOW + TimeUnit.HOURS.toMillis(1)), 0);
+    }
+
+    @Test
+    public void testOutOfOrderResponsesKeepLowestCount() {
+        final GithubRequestScheduler scheduler = new FixedTimeScheduler(10, 1000);
+        scheduler.update(100, 5000, RESET);
+        scheduler.update(120, 5000, RESET);
+        assertEquals(scheduler.getRemaining(), 100);
+    }
+
+    @Test
+    public void testSecondaryLimitBlocksEverything() {
+        final GithubRequestScheduler scheduler = new FixedTimeScheduler(10, 1000);
+        scheduler.backOff(30000);
+        assertEquals(scheduler.delay(true, NOW), 30000);
+        assertEquals(scheduler.delay(false, NOW + 10000), 20000);
+        assertEquals(scheduler.delay(false, NOW + 30000), 0);
+    }
+
+    @Test
+    public void testAcquireDoesNotWaitWithPlentifulQuota() throws InterruptedException {
+        final GithubRequestScheduler scheduler = new GithubRequestScheduler();
+        final long start = System.currentTimeMillis();
+        scheduler.acquire(false);
+        scheduler.acquire(false);
+        scheduler.acquire(true);
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    private static class FixedTimeScheduler extends GithubRequestScheduler {
+        FixedTimeScheduler(final int writeReserve, final long writeInterval) {
+            super(writeReserve, writeInterval);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return NOW;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.testng.annotations.Test;
+
+public class GithubTokenPoolTestCase {
+    private static final long RESET = System.currentTimeMillis() / 1000 + 3600;
+
+    @Test
+    public void testSplit() {
+        assertEquals(GithubTokenPool.split(" a, b,c "), Arrays.asList("a", "b", "c"));
+        assertEquals(GithubTokenPool.split(null), Collections.emptyList());
+    }
+
+    @Test
+    public void testNoTokenIsAnonymous() {
+        final GithubTokenPool pool = new GithubTokenPool(Collections.<String> emptyList(), 10, 0);
+        assertEquals(pool.size(), 1);
+        assertNull(pool.select().getValue());
+    }
+
+    @Test
+    public void testTokenWithMostQuotaIsSelected() {
+        final GithubTokenPool pool = new GithubTokenPool(Arrays.asList("a", "b", "c"), 10, 0);
+        pool.getTokens().get(0).getScheduler().update(100, 5000, RESET);
+        pool.getTokens().get(1).getScheduler().update(4000, 5000, RESET);
+        // quota of c is not known yet, most likely unused
+        assertEquals(pool.select().getValue(), "c");
+
+        pool.getTokens().get(2).getScheduler().update(50, 5000, RESET);
+        assertEquals(pool.select().getValue(), "b");
+    }
+
+    @Test
+    public void testRevokedTokenIsSkipped() {
+        final GithubTokenPool pool = new GithubTokenPool(Arrays.asList("a", "b"), 10, 0);
+        pool.getTokens().get(0).getScheduler().update(4000, 5000, RESET);
+        pool.getTokens().get(1).getScheduler().update(100, 5000, RESET);
+        pool.revoke(pool.getTokens().get(0));
+        assertEquals(pool.select().getValue(), "b");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testAllTokensRevoked() {
+        final GithubTokenPool pool = new GithubTokenPool(Arrays.asList("a"), 10, 0);
+        pool.revoke(pool.getTokens().get(0));
+        pool.select();
+    }
+}
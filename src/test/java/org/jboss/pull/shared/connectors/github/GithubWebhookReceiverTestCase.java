@@ -0,0 +1,196 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Hex;
+import org.jboss.pull.shared.PullRequestWorkQueue;
+import org.jboss.pull.shared.Util;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class GithubWebhookReceiverTestCase {
+    private static final String SECRET = "It's a Secret to Everybody";
+
+    private PullRequestWorkQueue queue;
+    private GithubWebhookReceiver receiver;
+
+    @BeforeMethod
+    public void startReceiver() throws IOException {
+        queue = new PullRequestWorkQueue();
+        receiver = new GithubWebhookReceiver(new InetSocketAddress("127.0.0.1", 0), SECRET, queue);
+        receiver.start();
+    }
+
+    @AfterMethod
+    public void stopReceiver() {
+        receiver.stop();
+    }
+
+    @Test
+    public void testPullRequestEvent() throws Exception {
+        assertEquals(deliver("pull_request", "pull_request.json", sign(load("pull_request.json"))), 202);
+
+        final PullRequestChange change = queue.poll(1, TimeUnit.SECONDS);
+        assertEquals(change.getNumber(), 7421);
+        assertEquals(change.getType(), PullRequestChange.Type.SYNCHRONIZED);
+    }
+
+    @Test
+    public void testCommentsAreCoalesced() throws Exception {
+        final byte[] body = load("issue_comment.json");
+        assertEquals(deliver("issue_comment", "issue_comment.json", sign(body)), 202);
+        assertEquals(deliver("issue_comment", "issue_comment.json", sign(body)), 202);
+
+        assertEquals(queue.size(), 1);
+        final PullRequestChange change = queue.poll(1, TimeUnit.SECONDS);
+        assertEquals(change.getNumber(), 7421);
+        assertEquals(change.getType(), PullRequestChange.Type.COMMENTED);
+    }
+
+    @Test
+    public void testCommentOnPlainIssueIsIgnored() throws Exception {
+        assertEquals(deliver("issue_comment", "issue_comment_plain_issue.json",
+                sign(load("issue_comment_plain_issue.json"))), 204);
+        assertEquals(queue.size(), 0);
+    }
+
+    @Test
+    public void testStatusEvent() throws Exception {
+        assertEquals(deliver("status", "status.json", sign(load("status.json"))), 202);
+
+        final PullRequestChange change = queue.poll(1, TimeUnit.SECONDS);
+        assertEquals(change.getNumber(), -1);
+        assertEquals(change.getSha(), "8f3c1f4a21d2b0d5a4b6e1f7c9a2d3e4f5a6b7c8");
+        assertEquals(change.getType(), PullRequestChange.Type.STATUS);
+    }
+
+    @Test
+    public void testInvalidSignatureIsRejected() throws Exception {
+        assertEquals(deliver("pull_request", "pull_request.json", "sha256=" + Hex.encodeHexString(new byte[32])), 401);
+        assertEquals(deliver("pull_request", "pull_request.json", null), 401);
+        assertNull(queue.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testSignatureCheck() throws Exception {
+        final byte[] body = load("status.json");
+        assertTrue(receiver.isSignatureValid(body, sign(body), null));
+        assertFalse(receiver.isSignatureValid(body, null, null));
+        assertFalse(receiver.isSignatureValid(body, "md5=" + sign(body).substring(7), null));
+    }
+
+    @Test
+    public void testOversizedBodyIsRejected() throws Exception {
+        final GithubWebhookReceiver small = new GithubWebhookReceiver(new InetSocketAddress("127.0.0.1", 0), SECRET,
+                queue, 64);
+        small.start();
+        try {
+            // declared by Content-Length
+            assertTooLarge(small, false);
+            // found while reading a chunked body
+            assertTooLarge(small, true);
+            assertNull(queue.poll(100, TimeUnit.MILLISECONDS));
+        } finally {
+            small.stop();
+        }
+    }
+
+    private static void assertTooLarge(final GithubWebhookReceiver receiver, final boolean chunked) throws Exception {
+        final String signature = sign(load("pull_request.json"));
+        try {
+            assertEquals(deliver(receiver, "pull_request", "pull_request.json", signature, chunked), 413);
+        } catch (SocketException e) {
+            // the receiver does not read the rest of the body, so it may reset the connection before the client reads
+            // the response
+        }
+    }
+
+    private int deliver(final String event, final String resource, final String signature) throws IOException {
+        return deliver(receiver, event, resource, signature, false);
+    }
+
+    private static int deliver(final GithubWebhookReceiver receiver, final String event, final String resource,
+            final String signature, final boolean chunked) throws IOException {
+        final URL url = new URL("http://127.0.0.1:" + receiver.getPort() + GithubWebhookReceiver.CONTEXT_PATH);
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        if (chunked)
+            connection.setChunkedStreamingMode(16);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setRequestProperty("X-GitHub-Event", event);
+        if (signature != null)
+            connection.setRequestProperty("X-Hub-Signature-256", signature);
+
+        final OutputStream out = connection.getOutputStream();
+        try {
+            out.write(load(resource));
+        } finally {
+            Util.safeClose(out);
+        }
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String sign(final byte[] body) throws Exception {
+        final Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes("UTF-8"), "HmacSHA256"));
+        return "sha256=" + Hex.encodeHexString(mac.doFinal(body));
+    }
+
+    private static byte[] load(final String resource) throws IOException {
+        final InputStream in = GithubWebhookReceiverTestCase.class.getResourceAsStream("/webhook/" + resource);
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            Util.safeClose(in);
+        }
+    }
+}
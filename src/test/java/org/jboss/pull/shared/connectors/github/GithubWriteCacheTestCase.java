@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.jboss.pull.shared.internal.PropertiesFile;
+import org.testng.annotations.Test;
+
+public class GithubWriteCacheTestCase {
+
+    @Test
+    public void testSameStatusIsPostedOnce() {
+        final GithubWriteCache cache = new GithubWriteCache(null);
+        assertFalse(cache.isStatusPosted("wildfly/wildfly", "3a0d9e2c", "default", "pending", null));
+        cache.statusPosted("wildfly/wildfly", "3a0d9e2c", "default", "pending", null);
+
+        assertTrue(cache.isStatusPosted("WildFly/WildFly", "3a0d9e2c", "default", "pending", null));
+        assertFalse(cache.isStatusPosted("wildfly/wildfly", "3a0d9e2c", "default", "pending", "http://ci/1"));
+        assertFalse(cache.isStatusPosted("wildfly/wildfly", "3a0d9e2c", "default", "success", null));
+        assertFalse(cache.isStatusPosted("wildfly/wildfly", "3a0d9e2c", "ci", "pending", null));
+        assertFalse(cache.isStatusPosted("wildfly/wildfly", "b7e1f4a0", "default", "pending", null));
+    }
+
+    @Test
+    public void testOnlyLastCommentIsCompared() {
+        final GithubWriteCache cache = new GithubWriteCache(null);
+        cache.commentPosted("wildfly/wildfly", 1, "Pull request is mergeable");
+        assertTrue(cache.isCommentPosted("wildfly/wildfly", 1, "Pull request is mergeable"));
+        assertFalse(cache.isCommentPosted("wildfly/wildfly", 2, "Pull request is mergeable"));
+
+        cache.commentPosted("wildfly/wildfly", 1, "Pull request is not mergeable");
+        assertFalse(cache.isCommentPosted("wildfly/wildfly", 1, "Pull request is mergeable"));
+    }
+
+    @Test
+    public void testEntriesSurviveRestart() throws IOException {
+        final File file = File.createTempFile("github-writes", ".properties");
+        file.delete();
+        try {
+            final PropertiesFile stale = new PropertiesFile(file);
+            stale.put("comment.wildfly/wildfly#2", (System.currentTimeMillis() - GithubWriteCache.MAX_AGE) + ",0a1b");
+            stale.store();
+
+            final GithubWriteCache cache = new GithubWriteCache(new PropertiesFile(file));
+            cache.commentPosted("wildfly/wildfly", 1, "Build started");
+            cache.flush();
+
+            final GithubWriteCache restarted = new GithubWriteCache(new PropertiesFile(file));
+            assertTrue(restarted.isCommentPosted("wildfly/wildfly", 1, "Build started"));
+            assertNull(new PropertiesFile(file).get("comment.wildfly/wildfly#2"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testFileIsWrittenOncePerInterval() throws IOException {
+        final File file = File.createTempFile("github-writes", ".properties");
+        file.delete();
+        try {
+            final GithubWriteCache cache = new GithubWriteCache(new PropertiesFile(file), 60000);
+            cache.commentPosted("wildfly/wildfly", 1, "Build started");
+            cache.statusPosted("wildfly/wildfly", "3a0d9e2c", "default", "pending", null);
+            assertFalse(file.exists());
+
+            cache.flush();
+            assertTrue(new GithubWriteCache(new PropertiesFile(file)).isStatusPosted("wildfly/wildfly", "3a0d9e2c",
+                    "default", "pending", null));
+
+            // due right away
+            new GithubWriteCache(new PropertiesFile(file), 0).commentPosted("wildfly/wildfly", 2, "Build started");
+            assertTrue(new GithubWriteCache(new PropertiesFile(file)).isCommentPosted("wildfly/wildfly", 2,
+                    "Build started"));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.egit.github.core.Issue;
+import org.eclipse.egit.github.core.Label;
+import org.eclipse.egit.github.core.Milestone;
+import org.testng.annotations.Test;
+
+public class IssueMutationTestCase {
+
+    @Test
+    public void testLabelsInEffectAreSkipped() {
+        final Issue issue = issue("needs review", "7.0.x");
+        final IssueMutation mutation = new IssueMutation(null, null).addLabel("7.0.x").addLabel("merged")
+                .removeLabel("needs review").removeLabel("on hold");
+
+        assertEquals(mutation.getLabelsToAdd(issue), Arrays.asList("merged"));
+        assertEquals(mutation.getLabelsToRemove(issue), Arrays.asList("needs review"));
+    }
+
+    @Test
+    public void testLastLabelChangeWins() {
+        final IssueMutation mutation = new IssueMutation(null, null).addLabel("merged").removeLabel("merged");
+
+        assertTrue(mutation.getLabelsToAdd(issue()).isEmpty());
+        assertEquals(mutation.getLabelsToRemove(issue("merged")), Arrays.asList("merged"));
+    }
+
+    @Test
+    public void testMilestoneChange() {
+        final Issue issue = issue();
+        assertFalse(new IssueMutation(null, null).isMilestoneChanged(issue));
+        assertFalse(new IssueMutation(null, null).setMilestone(null).isMilestoneChanged(issue));
+        assertTrue(new IssueMutation(null, null).setMilestone(milestone(3)).isMilestoneChanged(issue));
+
+        issue.setMilestone(milestone(3));
+        assertFalse(new IssueMutation(null, null).setMilestone(milestone(3)).isMilestoneChanged(issue));
+        assertTrue(new IssueMutation(null, null).setMilestone(milestone(4)).isMilestoneChanged(issue));
+        assertTrue(new IssueMutation(null, null).setMilestone(null).isMilestoneChanged(issue));
+    }
+
+    private static Issue issue(final String... labelNames) {
+        final List<Label> labels = new ArrayList<Label>();
+        for (String name : labelNames) {
+            labels.add(new Label().setName(name));
+        }
+        return new Issue().setLabels(labels);
+    }
+
+    private static Milestone milestone(final int number) {
+        return new Milestone().setNumber(number);
+    }
+}
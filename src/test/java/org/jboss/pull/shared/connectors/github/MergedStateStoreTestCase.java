@@ -0,0 +1,63 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.jboss.pull.shared.internal.PropertiesFile;
+import org.testng.annotations.Test;
+
+public class MergedStateStoreTestCase {
+    @Test
+    public void testMergedIsKeptAcrossRestarts() throws IOException {
+        final File file = File.createTempFile("merged", ".properties");
+        file.delete();
+        try {
+            final MergedStateStore store = new MergedStateStore(new PropertiesFile(file), 60000);
+            assertNull(store.get("wildfly/wildfly", 100));
+            store.put("wildfly/wildfly", 100, true);
+
+            final MergedStateStore restarted = new MergedStateStore(new PropertiesFile(file), 60000);
+            assertEquals(restarted.get("WildFly/WildFly", 100), Boolean.TRUE);
+            assertNull(restarted.get("wildfly/wildfly", 101));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testNotMergedExpires() throws InterruptedException {
+        final MergedStateStore store = new MergedStateStore(null, 50);
+        store.put("wildfly/wildfly", 100, false);
+        assertEquals(store.get("wildfly/wildfly", 100), Boolean.FALSE);
+
+        Thread.sleep(100);
+        assertNull(store.get("wildfly/wildfly", 100));
+
+        store.put("wildfly/wildfly", 100, true);
+        assertEquals(store.get("wildfly/wildfly", 100), Boolean.TRUE);
+    }
+}
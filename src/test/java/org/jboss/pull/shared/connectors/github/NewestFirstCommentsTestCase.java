@@ -0,0 +1,125 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.egit.github.core.Comment;
+import org.testng.annotations.Test;
+
+public class NewestFirstCommentsTestCase {
+
+    @Test
+    public void testStopsAtFirstMatch() {
+        final PagedComments comments = new PagedComments(7, 3, 3);
+        final Iterator<Comment> iterator = comments.iterator();
+        assertEquals(iterator.next().getId(), 7);
+        // only the last page has been fetched
+        assertEquals(comments.fetched, 1);
+    }
+
+    @Test
+    public void testAllComments() {
+        final PagedComments comments = new PagedComments(7, 3, 3);
+        assertEquals(ids(comments), "7654321");
+        assertEquals(comments.fetched, 3);
+    }
+
+    @Test
+    public void testCommentsAddedSinceCounted() {
+        // the last page was computed when there were only 5 comments
+        final PagedComments comments = new PagedComments(8, 3, 2);
+        assertEquals(ids(comments), "87654321");
+    }
+
+    @Test
+    public void testDeletedCommentsAreNotRepeated() {
+        final PagedComments comments = new PagedComments(6, 3, 2) {
+            @Override
+            protected List<Comment> fetchPage(int page) throws IOException {
+                if (page > 1)
+                    return super.fetchPage(page);
+                // comment 2 deleted after the last page has been fetched, comment 4 moves to the first page
+                final List<Comment> result = new ArrayList<Comment>();
+                result.add(comment(1));
+                result.add(comment(3));
+                result.add(comment(4));
+                return result;
+            }
+        };
+        assertEquals(ids(comments), "65431");
+    }
+
+    @Test
+    public void testNoComments() {
+        assertFalse(new PagedComments(0, 3, 0).iterator().hasNext());
+    }
+
+    private static String ids(final Iterable<Comment> comments) {
+        final StringBuilder ids = new StringBuilder();
+        for (Comment comment : comments) {
+            ids.append(comment.getId());
+        }
+        return ids.toString();
+    }
+
+    private static Comment comment(final long id) {
+        final Comment comment = new Comment();
+        comment.setId(id);
+        return comment;
+    }
+
+    private static class PagedComments extends NewestFirstComments {
+        private final int count;
+        private final int pageSize;
+        private final int lastPage;
+        private int fetched;
+
+        private PagedComments(final int count, final int pageSize, final int lastPage) {
+            super(pageSize);
+            this.count = count;
+            this.pageSize = pageSize;
+            this.lastPage = lastPage;
+        }
+
+        @Override
+        protected int getLastPage() {
+            return lastPage;
+        }
+
+        @Override
+        protected List<Comment> fetchPage(int page) throws IOException {
+            fetched++;
+            final List<Comment> comments = new ArrayList<Comment>();
+            for (int id = (page - 1) * pageSize + 1; id <= Math.min(count, page * pageSize); id++) {
+                comments.add(comment(id));
+            }
+            return comments;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.egit.github.core.Label;
+import org.eclipse.egit.github.core.Milestone;
+import org.eclipse.egit.github.core.RepositoryBranch;
+import org.testng.annotations.Test;
+
+public class RepositoryMetadataCacheTestCase {
+
+    @Test
+    public void testSnapshotIsServedUntilTtl() {
+        final CountingCache cache = new CountingCache();
+        final List<RepositoryBranch> branches = cache.getBranches();
+        cache.now = 999;
+        assertSame(cache.getBranches(), branches);
+        assertEquals(cache.loads.get(), 1);
+
+        cache.now = 1000;
+        cache.getBranches();
+        assertEquals(cache.loads.get(), 2);
+    }
+
+    @Test
+    public void testInvalidationLoadsAgain() {
+        final CountingCache cache = new CountingCache();
+        cache.getMilestones();
+        cache.getBranches();
+        cache.invalidateMilestones();
+        cache.getMilestones();
+        cache.getBranches();
+        assertEquals(cache.loads.get(), 3);
+    }
+
+    @Test
+    public void testFailedLoadServesPreviousSnapshot() {
+        final CountingCache cache = new CountingCache();
+        final List<Milestone> milestones = cache.getMilestones();
+        cache.failing = true;
+        cache.invalidateMilestones();
+        assertSame(cache.getMilestones(), milestones);
+
+        cache.failing = false;
+        cache.getMilestones();
+        assertEquals(cache.loads.get(), 3);
+    }
+
+    @Test
+    public void testConcurrentReadersLoadOnce() throws InterruptedException {
+        final CountingCache cache = new CountingCache();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<Thread>();
+        final AtomicInteger missing = new AtomicInteger();
+        for (int i = 0; i < 16; i++) {
+            final Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < 1000; j++) {
+                        if (cache.getLabel("Needs Review") == null)
+                            missing.incrementAndGet();
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(missing.get(), 0);
+        assertEquals(cache.loads.get(), 1);
+        assertTrue(cache.getLabel("merged") == null);
+    }
+
+    private static class CountingCache extends RepositoryMetadataCache {
+        private final AtomicInteger loads = new AtomicInteger();
+        private volatile long now;
+        private volatile boolean failing;
+
+        private CountingCache() {
+            super(1000);
+        }
+
+        @Override
+        protected List<RepositoryBranch> loadBranches() throws IOException {
+            load();
+            return new ArrayList<RepositoryBranch>();
+        }
+
+        @Override
+        protected List<Milestone> loadMilestones() throws IOException {
+            load();
+            return new ArrayList<Milestone>();
+        }
+
+        @Override
+        protected List<Label> loadLabels() throws IOException {
+            load();
+            final List<Label> labels = new ArrayList<Label>();
+            labels.add(new Label().setName("needs review"));
+            return labels;
+        }
+
+        private void load() throws IOException {
+            loads.incrementAndGet();
+            if (failing)
+                throw new IOException("GitHub is down");
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.testng.annotations.Test;
+
+public class ScheduledGitHubClientTestCase {
+
+    @Test
+    public void testConnectionIsConfigured() throws IOException {
+        final RecordingTransport transport = new RecordingTransport();
+        final ScheduledGitHubClient client = new ScheduledGitHubClient(new GithubTokenPool(Arrays.asList("a1b2c3"), 10,
+                0), transport);
+
+        final HttpURLConnection connection = client.createConnection("/repos/wildfly/wildfly/pulls", "POST");
+        assertEquals(connection.getRequestMethod(), "POST");
+        assertEquals(connection.getURL(), transport.url);
+        assertEquals(connection.getRequestProperty("Authorization"), "token a1b2c3");
+        assertNotNull(connection.getRequestProperty("User-Agent"));
+        // set by egit, so the media type of the API is asked for
+        assertTrue(connection.getRequestProperty("Accept").startsWith("application/vnd.github"));
+    }
+
+    @Test
+    public void testSecondaryLimitWithoutRetryAfterBacksOff() throws IOException {
+        final SecondaryLimitTransport transport = new SecondaryLimitTransport();
+        final GithubTokenPool pool = new GithubTokenPool(Arrays.asList("a1b2c3", "d4e5f6"), 10, 0);
+        final ScheduledGitHubClient client = new ScheduledGitHubClient(pool, transport);
+
+        client.get(new GitHubRequest().setUri("/repos/wildfly/wildfly/pulls"));
+
+        assertEquals(transport.requests, 2);
+        // the first token is blocked for the default minute, the request has been sent again with the other one
+        assertTrue(pool.getTokens().get(0).getScheduler().delay(false, System.currentTimeMillis()) > 50000);
+        assertEquals(pool.getTokens().get(1).getScheduler().delay(false, System.currentTimeMillis()), 0);
+    }
+
+    /**
+     * Rejects the first request by a secondary rate limit, reported only by the message of the body, and accepts the
+     * others.
+     */
+    private static class SecondaryLimitTransport implements GithubTransport {
+        private int requests;
+
+        @Override
+        public void init(final Properties configuration) {
+        }
+
+        @Override
+        public HttpURLConnection openConnection(final URL url, final String method) throws IOException {
+            final boolean limited = requests++ == 0;
+            return new HttpURLConnection(url) {
+                @Override
+                public void connect() {
+                }
+
+                @Override
+                public void disconnect() {
+                }
+
+                @Override
+                public boolean usingProxy() {
+                    return false;
+                }
+
+                @Override
+                public int getResponseCode() {
+                    return limited ? HTTP_FORBIDDEN : HTTP_OK;
+                }
+
+                @Override
+                public String getHeaderField(final String name) {
+                    if ("X-RateLimit-Remaining".equalsIgnoreCase(name))
+                        return "4000";
+                    if ("X-RateLimit-Limit".equalsIgnoreCase(name))
+                        return "5000";
+                    if ("X-RateLimit-Reset".equalsIgnoreCase(name))
+                        return Long.toString(System.currentTimeMillis() / 1000 + 3600);
+                    return null;
+                }
+
+                @Override
+                public InputStream getInputStream() {
+                    return new ByteArrayInputStream("[]".getBytes());
+                }
+
+                @Override
+                public InputStream getErrorStream() {
+                    return new ByteArrayInputStream(("{\"message\":\"You have exceeded a secondary rate limit. Please "
+                            + "wait a few minutes before you try again.\"}").getBytes());
+                }
+            };
+        }
+
+        @Override
+        public InputStream getResponseStream(final HttpURLConnection connection, final InputStream stream) {
+            return stream;
+        }
+    }
+
+    private static class RecordingTransport implements GithubTransport {
+        private URL url;
+
+        @Override
+        public void init(final Properties configuration) {
+        }
+
+        @Override
+        public HttpURLConnection openConnection(final URL url, final String method) throws IOException {
+            this.url = url;
+            // keeps the request properties where they can be read, including Authorization
+            final HttpURLConnection connection = new HttpURLConnection(url) {
+                @Override
+                public void connect() {
+                }
+
+                @Override
+                public void disconnect() {
+                }
+
+                @Override
+                public boolean usingProxy() {
+                    return false;
+                }
+            };
+            connection.setRequestMethod(method);
+            return connection;
+        }
+
+        @Override
+        public InputStream getResponseStream(final HttpURLConnection connection, final InputStream stream) {
+            return stream;
+        }
+    }
+}
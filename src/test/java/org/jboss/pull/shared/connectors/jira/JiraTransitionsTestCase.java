@@ -0,0 +1,105 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.jira;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+
+public class JiraTransitionsTestCase {
+
+    @Test
+    public void testTransitionIsFoundOncePerWorkflowAndStatus() {
+        final RecordingTransitions transitions = new RecordingTransitions(new Properties());
+
+        assertEquals(transitions.getTransitionId(issue("JBEAP-1", "Bug", "OPEN"), JiraIssue.IssueStatus.RESOLVED),
+                Integer.valueOf(5));
+        assertEquals(transitions.getTransitionId(issue("JBEAP-2", "Bug", "OPEN"), JiraIssue.IssueStatus.RESOLVED),
+                Integer.valueOf(5));
+        assertEquals(transitions.loads, 1);
+
+        // another workflow
+        transitions.getTransitionId(issue("JBEAP-3", "Task", "OPEN"), JiraIssue.IssueStatus.RESOLVED);
+        // another status
+        transitions.getTransitionId(issue("JBEAP-4", "Bug", "CODING_IN_PROGRESS"), JiraIssue.IssueStatus.RESOLVED);
+        assertEquals(transitions.loads, 3);
+    }
+
+    @Test
+    public void testTransitionNameCanBeConfigured() {
+        final Properties configuration = new Properties();
+        configuration.setProperty("jira.transition.resolved", "Resolve");
+        final RecordingTransitions transitions = new RecordingTransitions(configuration);
+
+        assertEquals(transitions.getTransitionId(issue("JBEAP-1", "Bug", "OPEN"), JiraIssue.IssueStatus.RESOLVED),
+                Integer.valueOf(711));
+        assertEquals(transitions.getTransitionId(issue("JBEAP-1", "Bug", "OPEN"), JiraIssue.IssueStatus.READY_FOR_QA),
+                Integer.valueOf(10));
+        assertNull(transitions.getTransitionId(issue("JBEAP-1", "Bug", "OPEN"), JiraIssue.IssueStatus.VERIFIED));
+    }
+
+    @Test
+    public void testInvalidatedTransitionIsFoundAgain() {
+        final RecordingTransitions transitions = new RecordingTransitions(new Properties());
+        final JiraIssue issue = issue("JBEAP-1", "Bug", "OPEN");
+
+        transitions.getTransitionId(issue, JiraIssue.IssueStatus.RESOLVED);
+        transitions.available.put("Resolve Issue", 6);
+        transitions.invalidate(issue, JiraIssue.IssueStatus.RESOLVED);
+
+        assertEquals(transitions.getTransitionId(issue, JiraIssue.IssueStatus.RESOLVED), Integer.valueOf(6));
+        assertEquals(transitions.loads, 2);
+    }
+
+    private static JiraIssue issue(final String key, final String type, final String status) {
+        final JiraIssue issue = mock(JiraIssue.class);
+        when(issue.getNumber()).thenReturn(key);
+        when(issue.getType()).thenReturn(type);
+        when(issue.getStatus()).thenReturn(status);
+        return issue;
+    }
+
+    private static class RecordingTransitions extends JiraTransitions {
+        private final Map<String, Integer> available = new HashMap<String, Integer>();
+        private int loads;
+
+        private RecordingTransitions(final Properties configuration) {
+            super(configuration);
+            available.put("Resolve Issue", 5);
+            available.put("Resolve", 711);
+            available.put("Ready for QA", 10);
+        }
+
+        @Override
+        protected Map<String, Integer> loadTransitions(final JiraIssue issue) {
+            loads++;
+            return new HashMap<String, Integer>(available);
+        }
+    }
+}
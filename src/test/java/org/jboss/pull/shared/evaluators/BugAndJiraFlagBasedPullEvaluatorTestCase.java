@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.evaluators;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import com.atlassian.jira.rest.client.domain.BasicStatus;
+import com.atlassian.jira.rest.client.domain.Field;
+import com.atlassian.jira.rest.client.domain.Version;
+
+import org.jboss.pull.shared.PullHelper;
+import org.jboss.pull.shared.connectors.RedhatPullRequest;
+import org.jboss.pull.shared.connectors.common.Issue;
+import org.jboss.pull.shared.connectors.jira.JiraIssue;
+import org.jboss.pull.shared.spi.PullEvaluator.Result;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BugAndJiraFlagBasedPullEvaluatorTestCase {
+    private BugAndJiraFlagBasedPullEvaluator evaluator;
+
+    @BeforeMethod
+    public void setUp() {
+        final Properties configuration = new Properties();
+        configuration.setProperty("eap6.issue.fix.version", "6.4.0");
+        configuration.setProperty("eap6.github.branch", "6.x");
+        configuration.setProperty("eap6.github.organization.upstream", "wildfly");
+        configuration.setProperty("eap6.github.repo.upstream", "wildfly");
+        configuration.setProperty("eap6.github.branch.upstream", "master");
+        configuration.setProperty("eap6.required.flags", "release");
+
+        evaluator = new BugAndJiraFlagBasedPullEvaluator();
+        evaluator.init(mock(PullHelper.class), configuration, "eap6");
+    }
+
+    @Test
+    public void testJiraIssueWithFlagsIsAccepted() {
+        final RedhatPullRequest pull = pull(jiraIssue("JBEAP-1", "6.4.0", "+", "+", "+", "+"));
+
+        final Result result = evaluator.isMergeableByIssues(pull);
+
+        assertTrue(result.isMergeable());
+        assertEquals(result.getDescription(), Arrays.asList("+ Bugzilla and Jira are OK"));
+    }
+
+    @Test
+    public void testMissingJiraFlagsAreReported() {
+        final RedhatPullRequest pull = pull(jiraIssue("JBEAP-1", "6.4.0", "+", "+", "+", "?"));
+
+        final Result result = evaluator.isMergeableByIssues(pull);
+
+        assertFalse(result.isMergeable());
+        assertEquals(result.getDescription(), Arrays.asList("- Issue JBEAP-1 is missing flags qa_ack"));
+    }
+
+    @Test
+    public void testJiraIssueOfOtherVersionIsIgnored() {
+        final RedhatPullRequest pull = pull(jiraIssue("JBEAP-1", "7.0.0", "+", "+", "+", "+"));
+
+        final Result result = evaluator.isMergeableByIssues(pull);
+
+        assertFalse(result.isMergeable());
+        assertEquals(result.getDescription(), Arrays.asList("- Missing any bugzilla bug or jira issue"));
+    }
+
+    private static RedhatPullRequest pull(final Issue... issues) {
+        final RedhatPullRequest pull = mock(RedhatPullRequest.class);
+        when(pull.getNumber()).thenReturn(1);
+        when(pull.getIssues()).thenReturn(new ArrayList<Issue>(Arrays.asList(issues)));
+        return pull;
+    }
+
+    private static JiraIssue jiraIssue(final String key, final String fixVersion, final String release, final String pmAck,
+            final String develAck, final String qaAck) {
+        final com.atlassian.jira.rest.client.domain.Issue issue = mock(com.atlassian.jira.rest.client.domain.Issue.class);
+        when(issue.getKey()).thenReturn(key);
+        final BasicStatus status = mock(BasicStatus.class);
+        when(status.getName()).thenReturn("Open");
+        when(issue.getStatus()).thenReturn(status);
+        final Version version = mock(Version.class);
+        when(version.getName()).thenReturn(fixVersion);
+        final List<Version> fixVersions = Arrays.asList(version);
+        when(issue.getFixVersions()).thenReturn(fixVersions);
+
+        final Field targetRelease = field("Target Release", null);
+        when(issue.getFieldByName("Target Release")).thenReturn(targetRelease);
+        final Field releaseFlag = field("CDW release", release);
+        when(issue.getFieldByName("CDW release")).thenReturn(releaseFlag);
+        final Field pmAckFlag = field("CDW pm_ack", pmAck);
+        when(issue.getFieldByName("CDW pm_ack")).thenReturn(pmAckFlag);
+        final Field develAckFlag = field("CDW devel_ack", develAck);
+        when(issue.getFieldByName("CDW devel_ack")).thenReturn(develAckFlag);
+        final Field qaAckFlag = field("CDW qa_ack", qaAck);
+        when(issue.getFieldByName("CDW qa_ack")).thenReturn(qaAckFlag);
+        // CDW blocker and CDW exception are not used by the project
+        return new JiraIssue(issue);
+    }
+
+    private static Field field(final String name, final String value) {
+        final Field field = mock(Field.class);
+        when(field.getName()).thenReturn(name);
+        when(field.getValue()).thenReturn(value);
+        return field;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.evaluators;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import org.jboss.pull.shared.spi.PullEvaluator.Result;
+import org.testng.annotations.Test;
+
+public class EvaluationCacheTestCase {
+
+    @Test
+    public void testResultIsReusedWhileFingerprintIsUnchanged() {
+        final ManualClockCache cache = new ManualClockCache(1000, 10);
+        cache.put("wildfly/wildfly#1", "a", new Result(true, "+ Pull request has been reviewed"));
+
+        final Result cached = cache.get("wildfly/wildfly#1", "a");
+        assertTrue(cached.isMergeable());
+        assertEquals(cached.getDescription().size(), 1);
+
+        assertNull(cache.get("wildfly/wildfly#1", "b"));
+        // a changed fingerprint drops the result
+        assertNull(cache.get("wildfly/wildfly#1", "a"));
+    }
+
+    @Test
+    public void testResultExpires() {
+        final ManualClockCache cache = new ManualClockCache(1000, 10);
+        cache.put("wildfly/wildfly#1", "a", new Result(false));
+        cache.now = 999;
+        assertFalse(cache.get("wildfly/wildfly#1", "a").isMergeable());
+        cache.now = 1000;
+        assertNull(cache.get("wildfly/wildfly#1", "a"));
+    }
+
+    @Test
+    public void testCopiesAreHandedOut() {
+        final ManualClockCache cache = new ManualClockCache(1000, 10);
+        final Result result = new Result(true, "+ Upstream pull request is OK");
+        cache.put("wildfly/wildfly#1", "a", result);
+        result.changeResult(false, "- Pull request has not been reviewed yet");
+
+        final Result cached = cache.get("wildfly/wildfly#1", "a");
+        cached.and(new Result(false, "- Missing any upstream pull request"));
+
+        final Result again = cache.get("wildfly/wildfly#1", "a");
+        assertTrue(again.isMergeable());
+        assertEquals(again.getDescription().size(), 1);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsDropped() {
+        final ManualClockCache cache = new ManualClockCache(1000, 2);
+        cache.put("wildfly/wildfly#1", "a", new Result(true));
+        cache.put("wildfly/wildfly#2", "a", new Result(true));
+        cache.get("wildfly/wildfly#1", "a");
+        cache.put("wildfly/wildfly#3", "a", new Result(true));
+
+        assertEquals(cache.size(), 2);
+        assertNull(cache.get("wildfly/wildfly#2", "a"));
+        assertTrue(cache.get("wildfly/wildfly#1", "a").isMergeable());
+    }
+
+    private static class ManualClockCache extends EvaluationCache {
+        private long now;
+
+        private ManualClockCache(final long ttl, final int capacity) {
+            super(ttl, capacity);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+}
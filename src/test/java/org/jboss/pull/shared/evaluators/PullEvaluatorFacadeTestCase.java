@@ -0,0 +1,274 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.evaluators;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.pull.shared.PullHelper;
+import org.jboss.pull.shared.connectors.RedhatPullRequest;
+import org.jboss.pull.shared.connectors.common.Issue;
+import org.jboss.pull.shared.spi.BatchAwarePullEvaluator;
+import org.jboss.pull.shared.spi.PullEvaluator;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class PullEvaluatorFacadeTestCase {
+    private PullHelper helper;
+
+    @BeforeMethod
+    public void setUp() {
+        helper = mock(PullHelper.class);
+        RecordingEvaluator.batches.clear();
+        RecordingEvaluator.evaluations.set(0);
+    }
+
+    @Test
+    public void testBugsArePrefetchedWithOneRequest() {
+        final PullEvaluatorFacade facade = new PullEvaluatorFacade(helper, configuration(0));
+        final List<RedhatPullRequest> pulls = new ArrayList<RedhatPullRequest>();
+        pulls.add(pull(1, "6.x", "1", "JBEAP-1"));
+        pulls.add(pull(2, "6.x", "2"));
+        // no evaluator for the branch
+        pulls.add(pull(3, "7.x", "3"));
+
+        facade.prefetch(pulls);
+
+        assertEquals(RecordingEvaluator.batches, Arrays.asList(2));
+        verify(helper).prefetchBugs(new HashSet<Integer>(Arrays.asList(1, 2, 10)));
+        verify(helper).prefetchJiraIssues(new HashSet<String>(Arrays.asList("JBEAP-1")));
+    }
+
+    @Test
+    public void testPlainEvaluatorNeedsNothing() {
+        final Properties configuration = configuration(0);
+        configuration.setProperty("versions", "eap6, eap7");
+        configuration.setProperty("eap7." + BasePullEvaluator.EVALUATOR_PROPERTY, PlainEvaluator.class.getName());
+        final PullEvaluatorFacade facade = new PullEvaluatorFacade(helper, configuration);
+
+        facade.prefetch(Arrays.asList(pull(1, "7.x", "1", "JBEAP-1")));
+
+        assertTrue(RecordingEvaluator.batches.isEmpty());
+        verify(helper).prefetchBugs(new HashSet<Integer>());
+        assertTrue(facade.isMergeable(pull(1, "7.x", "1")).isMergeable());
+    }
+
+    @Test
+    public void testResultIsReusedUntilPullRequestIsUpdated() {
+        final PullEvaluatorFacade facade = new PullEvaluatorFacade(helper, configuration(600));
+        final RedhatPullRequest pull = pull(1, "6.x", "1");
+        when(pull.getGithubUpdatedAt()).thenReturn(new Date(1000));
+
+        assertTrue(facade.isMergeable(pull).isMergeable());
+        assertTrue(facade.isMergeable(pull).isMergeable());
+        assertEquals(RecordingEvaluator.evaluations.get(), 1);
+
+        when(pull.getGithubUpdatedAt()).thenReturn(new Date(2000));
+        facade.isMergeable(pull);
+        assertEquals(RecordingEvaluator.evaluations.get(), 2);
+    }
+
+    @Test
+    public void testResultIsReusedUntilWatchedBugsChange() {
+        final PullEvaluatorFacade facade = new PullEvaluatorFacade(helper, configuration(600));
+        final RedhatPullRequest pull = pull(1, "6.x", "1");
+        when(helper.getBugChangeHighWaterMark()).thenReturn(new Date(1000));
+
+        facade.isMergeable(pull);
+        facade.isMergeable(pull);
+        assertEquals(RecordingEvaluator.evaluations.get(), 1);
+
+        when(helper.getBugChangeHighWaterMark()).thenReturn(new Date(2000));
+        facade.isMergeable(pull);
+        assertEquals(RecordingEvaluator.evaluations.get(), 2);
+        // the fingerprint itself does not look the issues up
+        verify(pull, never()).getIssues();
+    }
+
+    @Test
+    public void testResultIsReusedUntilJiraIssueOrUpstreamChanges() {
+        final PullEvaluatorFacade facade = new PullEvaluatorFacade(helper, configuration(600));
+        final RedhatPullRequest pull = pull(1, "6.x", "1", "JBEAP-1");
+        when(helper.getPrefetchedJiraIssueUpdate("JBEAP-1")).thenReturn(new Date(1000));
+        when(pull.getKnownRelatedMergedStates()).thenReturn(
+                Collections.<String, Boolean> singletonMap("wildfly/wildfly#7", Boolean.FALSE));
+
+        facade.isMergeable(pull);
+        facade.isMergeable(pull);
+        assertEquals(RecordingEvaluator.evaluations.get(), 1);
+
+        when(helper.getPrefetchedJiraIssueUpdate("JBEAP-1")).thenReturn(new Date(2000));
+        facade.isMergeable(pull);
+        assertEquals(RecordingEvaluator.evaluations.get(), 2);
+
+        when(pull.getKnownRelatedMergedStates()).thenReturn(
+                Collections.<String, Boolean> singletonMap("wildfly/wildfly#7", Boolean.TRUE));
+        facade.isMergeable(pull);
+        assertEquals(RecordingEvaluator.evaluations.get(), 3);
+        verify(pull, never()).getIssues();
+        verify(pull, never()).getRelatedPullRequests();
+    }
+
+    @Test
+    public void testBatchKeepsGoingWhenEvaluationFails() {
+        final PullEvaluatorFacade facade = new PullEvaluatorFacade(helper, configuration(0));
+        final List<RedhatPullRequest> pulls = new ArrayList<RedhatPullRequest>();
+        for (int i = 1; i <= 10; i++) {
+            pulls.add(pull(i, "6.x", Integer.toString(i)));
+        }
+        pulls.add(pull(RecordingEvaluator.FAILING, "6.x"));
+        pulls.add(pull(11, "7.x"));
+
+        final List<RedhatPullRequest> notified = new ArrayList<RedhatPullRequest>();
+        final Map<RedhatPullRequest, PullEvaluator.Result> results = facade.isMergeable(pulls,
+                new PullEvaluatorFacade.ResultListener() {
+                    @Override
+                    public void evaluated(RedhatPullRequest pull, PullEvaluator.Result result) {
+                        notified.add(pull);
+                    }
+                });
+
+        assertEquals(new ArrayList<RedhatPullRequest>(results.keySet()), pulls);
+        assertEquals(notified.size(), pulls.size());
+        assertEquals(RecordingEvaluator.evaluations.get(), 11);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(results.get(pulls.get(i)).isMergeable());
+        }
+        assertFalse(results.get(pulls.get(10)).isMergeable());
+        assertFalse(results.get(pulls.get(11)).isMergeable());
+    }
+
+    private static Properties configuration(final long cacheTtl) {
+        final Properties configuration = new Properties();
+        configuration.setProperty("versions", "eap6");
+        configuration.setProperty("eap6." + BasePullEvaluator.EVALUATOR_PROPERTY, RecordingEvaluator.class.getName());
+        configuration.setProperty("evaluator.cache.ttl", Long.toString(cacheTtl));
+        return configuration;
+    }
+
+    private static RedhatPullRequest pull(final int number, final String branch, final String... issues) {
+        final RedhatPullRequest pull = mock(RedhatPullRequest.class);
+        when(pull.getNumber()).thenReturn(number);
+        when(pull.getOrganization()).thenReturn("jbossas");
+        when(pull.getRepository()).thenReturn("jboss-eap");
+        when(pull.getTargetBranchTitle()).thenReturn(branch);
+        when(pull.getSourceBranchSha()).thenReturn("3a0d9e2c");
+        when(pull.getReferencedIssueNumbers()).thenReturn(new HashSet<String>(Arrays.asList(issues)));
+        when(pull.getIssues()).thenReturn(new ArrayList<Issue>());
+        return pull;
+    }
+
+    /**
+     * Implements only the original SPI, as the evaluators written before {@link BatchAwarePullEvaluator} do.
+     */
+    public static class PlainEvaluator implements PullEvaluator {
+        @Override
+        public void init(final PullHelper helper, final Properties configuration, final String version) {
+        }
+
+        @Override
+        public String getTargetBranch() {
+            return "7.x";
+        }
+
+        @Override
+        public Result isMergeable(final RedhatPullRequest pull) {
+            return new Result(true);
+        }
+
+        @Override
+        public List<? extends Issue> getIssue(final RedhatPullRequest pull) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<RedhatPullRequest> getUpstreamPullRequest(final RedhatPullRequest pull) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean updateIssueAsMerged(final RedhatPullRequest pull) {
+            return false;
+        }
+    }
+
+    public static class RecordingEvaluator implements BatchAwarePullEvaluator {
+        static final int FAILING = 666;
+        static final List<Integer> batches = new ArrayList<Integer>();
+        static final AtomicInteger evaluations = new AtomicInteger();
+
+        @Override
+        public void init(final PullHelper helper, final Properties configuration, final String version) {
+        }
+
+        @Override
+        public String getTargetBranch() {
+            return "6.x";
+        }
+
+        @Override
+        public Result isMergeable(final RedhatPullRequest pull) {
+            evaluations.incrementAndGet();
+            if (pull.getNumber() == FAILING)
+                throw new IllegalStateException("Bugzilla is down");
+            return new Result(true, "+ Pull request has been reviewed");
+        }
+
+        @Override
+        public DataNeeds getDataNeeds(final List<RedhatPullRequest> pulls) {
+            batches.add(pulls.size());
+            final Set<Integer> parents = Collections.singleton(10);
+            return new DataNeeds().need(DataNeeds.Kind.ISSUES).needParentBugs(parents);
+        }
+
+        @Override
+        public List<? extends Issue> getIssue(final RedhatPullRequest pull) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<RedhatPullRequest> getUpstreamPullRequest(final RedhatPullRequest pull) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean updateIssueAsMerged(final RedhatPullRequest pull) {
+            return false;
+        }
+    }
+}
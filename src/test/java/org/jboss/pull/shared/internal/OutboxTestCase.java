@@ -0,0 +1,187 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (c) 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class OutboxTestCase {
+
+    @Test
+    public void testWritesToTargetAreAppliedInOrder() {
+        final ManualClockOutbox outbox = new ManualClockOutbox(null);
+        final RecordingHandler handler = new RecordingHandler();
+        outbox.register("comment", handler, 10);
+        outbox.enqueue("wildfly/wildfly#1", "comment", "first");
+        outbox.enqueue("wildfly/wildfly#2", "comment", "other");
+        outbox.enqueue("wildfly/wildfly#1", "comment", "second");
+
+        assertEquals(outbox.flush(), 3);
+        assertEquals(handler.applied, Arrays.asList("first", "other", "second"));
+        // the heads of both targets in one batch, then the second write of the first target
+        assertEquals(handler.batches, Arrays.asList(2, 1));
+        assertEquals(outbox.size(), 0);
+    }
+
+    @Test
+    public void testPendingWriteIsNotQueuedTwice() {
+        final ManualClockOutbox outbox = new ManualClockOutbox(null);
+        assertTrue(outbox.enqueue("wildfly/wildfly#1", "comment", "Build started"));
+        assertFalse(outbox.enqueue("wildfly/wildfly#1", "comment", "Build started"));
+        assertTrue(outbox.enqueue("wildfly/wildfly#2", "comment", "Build started"));
+        assertEquals(outbox.size(), 2);
+    }
+
+    @Test
+    public void testFailedWriteIsRetriedWithBackoff() {
+        final ManualClockOutbox outbox = new ManualClockOutbox(null);
+        final RecordingHandler handler = new RecordingHandler();
+        outbox.register("comment", handler);
+        outbox.enqueue("wildfly/wildfly#1", "comment", "first");
+        outbox.enqueue("wildfly/wildfly#1", "comment", "second");
+
+        handler.failing = true;
+        assertEquals(outbox.flush(), 0);
+        handler.failing = false;
+        // the second write waits for the first one
+        assertEquals(outbox.flush(), 0);
+        outbox.now = 999;
+        assertEquals(outbox.flush(), 0);
+        outbox.now = 1000;
+        assertEquals(outbox.flush(), 2);
+        assertEquals(handler.applied, Arrays.asList("first", "second"));
+    }
+
+    @Test
+    public void testWriteIsGivenUp() {
+        final ManualClockOutbox outbox = new ManualClockOutbox(null);
+        final RecordingHandler handler = new RecordingHandler();
+        outbox.register("comment", handler);
+        outbox.enqueue("wildfly/wildfly#1", "comment", "first");
+        outbox.enqueue("wildfly/wildfly#1", "comment", "second");
+
+        handler.failing = true;
+        outbox.flush();
+        outbox.now = 1000;
+        outbox.flush();
+        outbox.now = 3000;
+        outbox.flush();
+        assertEquals(outbox.size(), 1);
+
+        handler.failing = false;
+        outbox.flush();
+        assertEquals(handler.applied, Arrays.asList("second"));
+    }
+
+    @Test
+    public void testPendingWritesSurviveRestart() throws IOException {
+        final File file = File.createTempFile("outbox", ".log");
+        file.delete();
+        try {
+            final ManualClockOutbox outbox = new ManualClockOutbox(file);
+            final RecordingHandler handler = new RecordingHandler();
+            outbox.register("comment", handler);
+            outbox.enqueue("wildfly/wildfly#1", "comment", "applied");
+            outbox.flush();
+            outbox.enqueue("wildfly/wildfly#1", "comment", "tab\tand\nnew line");
+            outbox.enqueue("wildfly/wildfly#2", "status", "3a0d9e2c", "success");
+
+            final ManualClockOutbox restarted = new ManualClockOutbox(file);
+            final RecordingHandler restartedHandler = new RecordingHandler();
+            restarted.register("comment", restartedHandler);
+            restarted.register("status", restartedHandler);
+            assertEquals(restarted.size(), 2);
+            assertFalse(restarted.enqueue("wildfly/wildfly#2", "status", "3a0d9e2c", "success"));
+
+            assertEquals(restarted.flush(), 2);
+            assertEquals(restartedHandler.applied, Arrays.asList("tab\tand\nnew line", "3a0d9e2c"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRecordCutShortIsSkipped() throws IOException {
+        final File file = File.createTempFile("outbox", ".log");
+        file.delete();
+        try {
+            final ManualClockOutbox outbox = new ManualClockOutbox(file);
+            outbox.enqueue("wildfly/wildfly#1", "comment", "first");
+            outbox.enqueue("wildfly/wildfly#2", "comment", "Build 42 merging 3a0d9e2c has been triggered");
+            // a crash while the last record was being appended, the newline and the end of the comment are lost
+            final RandomAccessFile log = new RandomAccessFile(file, "rw");
+            try {
+                log.setLength(log.length() - 12);
+            } finally {
+                log.close();
+            }
+
+            final ManualClockOutbox restarted = new ManualClockOutbox(file);
+            final RecordingHandler handler = new RecordingHandler();
+            restarted.register("comment", handler);
+            assertEquals(restarted.size(), 1);
+            restarted.flush();
+            assertEquals(handler.applied, Arrays.asList("first"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static class ManualClockOutbox extends Outbox {
+        private long now;
+
+        private ManualClockOutbox(final File file) {
+            super(file, 3, 1000, 60000);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private static class RecordingHandler implements Outbox.Handler {
+        private final List<String> applied = new ArrayList<String>();
+        private final List<Integer> batches = new ArrayList<Integer>();
+        private boolean failing;
+
+        @Override
+        public void apply(final List<Outbox.Write> writes) throws IOException {
+            if (failing)
+                throw new IOException("GitHub is down");
+            batches.add(writes.size());
+            for (Outbox.Write write : writes) {
+                applied.add(write.getArg(0));
+            }
+        }
+    }
+}